@@ -0,0 +1,290 @@
+package com.xceptance.xlt.webdav.actions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.entity.ByteArrayEntity;
+import org.junit.Assert;
+
+import com.xceptance.xlt.webdav.impl.AbstractWebDavAction;
+import com.xceptance.xlt.webdav.impl.GeneratedContentEntity;
+import com.xceptance.xlt.webdav.impl.ParallelTaskRunner;
+import com.xceptance.xlt.webdav.util.GeneratedContent;
+import com.xceptance.xlt.webdav.util.MetadataCache;
+import com.xceptance.xlt.webdav.util.WebDavStreamUtils;
+import com.xceptance.xlt.webdav.util.WebDavValidationUtils;
+
+/**
+ * Performs many small operations on a WebDAV server as a single action. Use this action if a scenario consists of
+ * thousands of operations like existence checks, uploads or deletions, where creating and validating an action for
+ * each of them would be a considerable overhead, or if you want to measure how a client performs a batch as a whole.
+ * <p>
+ * The operations are added via {@link #exists(String, boolean)}, {@link #get(String)}, {@link #put(String, byte[])},
+ * {@link #put(String, GeneratedContent)}, {@link #createDirectory(String)} and {@link #delete(String)}. They are
+ * executed back-to-back in the order given, or with several connections in parallel if configured via
+ * {@link #concurrency(int)}. In the latter case, the order is not guaranteed, so do not make operations depend on each
+ * other. The batch stops at the first failing operation. Each request is still logged separately. Additionally, the
+ * throughput is reported as custom value "&lt;timer name&gt; Throughput [operations/s]". The {@link MetadataCache} of
+ * the user, if enabled, is updated just like by the corresponding single actions.
+ * <p>
+ * Each operation running in parallel needs a connection. The user's connection pool is enlarged to the concurrency if
+ * needed. If the shared connection pool is enabled instead, the action fails up front when the concurrency exceeds the
+ * pool's connections per server.
+ * <p>
+ * All paths are relative to the WebDAV base directory as configured in {@link WebDavConnect}.
+ * <p>
+ * The default action name in the test results will be "{@literal WebDavBatch}". Use {@link #timerName(String)} to
+ * specify a different name.
+ */
+public class WebDavBatch extends AbstractWebDavAction<WebDavBatch>
+{
+    /**
+     * The operations to perform.
+     */
+    private final List<Operation> operations = new ArrayList<>();
+
+    /**
+     * The maximum number of operations running in parallel.
+     */
+    private int concurrency = 1;
+
+    /**
+     * The number of operations performed.
+     */
+    private final AtomicInteger operationsPerformed = new AtomicInteger();
+
+    /**
+     * The number of existence checks that did not meet the expectation.
+     */
+    private final AtomicInteger unexpectedResults = new AtomicInteger();
+
+    /**
+     * Action with standard action name listed in the results, without any operation yet
+     */
+    public WebDavBatch()
+    {
+        super();
+    }
+
+    /**
+     * Adds an existence check using the HEAD request method.
+     *
+     * @param relativePath
+     *            the resource path relative to your WebDAV base directory
+     * @param shouldExist
+     *            whether the resource is expected to exist
+     * @return this action
+     */
+    public WebDavBatch exists(final String relativePath, final boolean shouldExist)
+    {
+        final String url = getUrl(relativePath);
+
+        return add(() -> {
+            final boolean exists = getSardine().exists(url);
+            if (exists != shouldExist)
+            {
+                unexpectedResults.incrementAndGet();
+            }
+
+            updateMetadataCache(cache -> cache.existenceChecked(url, exists));
+        });
+    }
+
+    /**
+     * Adds a download using the GET request method. The content is discarded.
+     *
+     * @param relativePath
+     *            the resource path relative to your WebDAV base directory
+     * @return this action
+     */
+    public WebDavBatch get(final String relativePath)
+    {
+        final String url = getUrl(relativePath);
+
+        return add(() -> {
+            try (final InputStream is = getSardine().get(url))
+            {
+                WebDavStreamUtils.drain(is, null);
+            }
+        });
+    }
+
+    /**
+     * Adds an upload using the PUT request method.
+     *
+     * @param relativePath
+     *            the resource path relative to your WebDAV base directory
+     * @param fileContent
+     *            the file content to upload
+     * @return this action
+     */
+    public WebDavBatch put(final String relativePath, final byte[] fileContent)
+    {
+        final String url = getUrl(relativePath);
+
+        return add(() -> {
+            getCustomizedSardine().put(url, new ByteArrayEntity(fileContent), false);
+            updateMetadataCache(cache -> cache.modified(url));
+        });
+    }
+
+    /**
+     * Adds an upload of generated content using the PUT request method.
+     *
+     * @param relativePath
+     *            the resource path relative to your WebDAV base directory
+     * @param generatedContent
+     *            the description of the content to generate and upload
+     * @return this action
+     */
+    public WebDavBatch put(final String relativePath, final GeneratedContent generatedContent)
+    {
+        final String url = getUrl(relativePath);
+
+        return add(() -> {
+            getCustomizedSardine().put(url, new GeneratedContentEntity(generatedContent), false);
+            updateMetadataCache(cache -> cache.modified(url));
+        });
+    }
+
+    /**
+     * Adds the creation of a directory using the MKCOL request method.
+     *
+     * @param relativePath
+     *            the directory path relative to your WebDAV base directory
+     * @return this action
+     */
+    public WebDavBatch createDirectory(final String relativePath)
+    {
+        final String url = getUrl(relativePath);
+
+        return add(() -> {
+            getSardine().createDirectory(url);
+            updateMetadataCache(cache -> cache.modified(url));
+        });
+    }
+
+    /**
+     * Adds a deletion using the DELETE request method.
+     *
+     * @param relativePath
+     *            the resource path relative to your WebDAV base directory
+     * @return this action
+     */
+    public WebDavBatch delete(final String relativePath)
+    {
+        final String url = getUrl(relativePath);
+
+        return add(() -> {
+            getSardine().delete(url);
+            updateMetadataCache(cache -> cache.deleted(url));
+        });
+    }
+
+    /**
+     * Sets the maximum number of operations running in parallel. Defaults to 1, i.e. the operations are performed one
+     * after the other.
+     *
+     * @param concurrency
+     *            the maximum number of operations running in parallel
+     * @return this action
+     */
+    public WebDavBatch concurrency(final int concurrency)
+    {
+        this.concurrency = concurrency;
+
+        return this;
+    }
+
+    /**
+     * Adds the given operation.
+     *
+     * @param operation
+     *            the operation
+     * @return this action
+     */
+    private WebDavBatch add(final Operation operation)
+    {
+        operations.add(operation);
+
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void preValidate()
+    {
+        WebDavValidationUtils.validateAction(this);
+
+        Assert.assertFalse("No operations to perform", operations.isEmpty());
+        Assert.assertTrue("Concurrency must be positive", concurrency > 0);
+        ensureConnections(concurrency);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void execute() throws Exception
+    {
+        final long startTime = System.currentTimeMillis();
+
+        ParallelTaskRunner.forEach(operations.iterator(), concurrency, operation -> {
+            operation.perform();
+            operationsPerformed.incrementAndGet();
+        });
+
+        final double elapsedSeconds = Math.max(1, System.currentTimeMillis() - startTime) / 1000.0;
+        logCustomValue("Throughput [operations/s]", operationsPerformed.get() / elapsedSeconds);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void postValidate()
+    {
+        // failing requests have raised an exception already, so only the expectations are left
+        Assert.assertEquals("Existence checks not meeting the expectation", 0, unexpectedResults.get());
+    }
+
+    /**
+     * Returns the number of operations added.
+     *
+     * @return the number of operations
+     */
+    public int getOperationCount()
+    {
+        return operations.size();
+    }
+
+    /**
+     * Returns the number of operations performed successfully.
+     *
+     * @return the number of operations
+     */
+    public int getOperationsPerformed()
+    {
+        return operationsPerformed.get();
+    }
+
+    /**
+     * A single operation of the batch.
+     */
+    @FunctionalInterface
+    private interface Operation
+    {
+        /**
+         * Performs the operation.
+         *
+         * @throws IOException
+         *             if anything goes wrong
+         */
+        void perform() throws IOException;
+    }
+}
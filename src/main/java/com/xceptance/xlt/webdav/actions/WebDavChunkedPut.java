@@ -0,0 +1,582 @@
+package com.xceptance.xlt.webdav.actions;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.junit.Assert;
+
+import com.github.sardine.impl.SardineException;
+import com.github.sardine.impl.handler.VoidResponseHandler;
+import com.github.sardine.impl.methods.HttpMkCol;
+import com.github.sardine.impl.methods.HttpMove;
+import com.xceptance.xlt.api.util.XltRandom;
+import com.xceptance.xlt.webdav.impl.AbstractWebDavAction;
+import com.xceptance.xlt.webdav.impl.FileChannelEntity;
+import com.xceptance.xlt.webdav.impl.GeneratedContentEntity;
+import com.xceptance.xlt.webdav.impl.ParallelTaskRunner;
+import com.xceptance.xlt.webdav.util.GeneratedContent;
+import com.xceptance.xlt.webdav.util.WebDavValidationUtils;
+
+/**
+ * Uploads a large file to a WebDAV server in chunks, each sent with a separate PUT request. Chunks can be uploaded in
+ * parallel, and a chunk that failed on the network layer is retried a configurable number of times, so a short network
+ * hiccup does not throw away the whole upload.
+ * <p>
+ * There is no standard way to upload a resource in chunks, so the protocol has to be chosen explicitly:
+ * <ul>
+ * <li>{@link Protocol#CONTENT_RANGE}: each chunk is PUT to the target resource with a <code>Content-Range</code>
+ * header. Only a few servers support partial updates this way, all others have to reject such requests with status
+ * code 400 (see RFC 7231, section 4.3.4). The first chunk is uploaded on its own to create the resource, the remaining
+ * ones in parallel. Use {@link #contentRangeChunking()} to choose this protocol.</li>
+ * <li>{@link Protocol#NEXTCLOUD}: the chunked upload protocol (v2) of Nextcloud/ownCloud. The chunks are uploaded to a
+ * temporary collection below the user's uploads directory and finally assembled by moving the virtual file ".file" to
+ * the target location. Use {@link #nextcloudChunking(String)} to choose this protocol. Such an upload can be resumed
+ * by a later action, see {@link #resumeTransfer(String)}.</li>
+ * </ul>
+ * Each chunk is logged as a separate request, the action timer covers the whole upload. Additionally, the aggregate
+ * throughput in bytes/s is reported as custom value "&lt;timer name&gt; Throughput [bytes/s]". Each chunk uploaded in
+ * parallel needs a connection. The user's connection pool is enlarged to the concurrency if needed. If the shared
+ * connection pool is enabled instead, the action fails up front when the concurrency exceeds the pool's connections
+ * per server.
+ * <p>
+ * The target location has to be given as path (relative to the WebDAV base directory as configured in
+ * {@link WebDavConnect}).
+ * <p>
+ * The default action name in the test results will be "{@literal WebDavChunkedPut}". Use {@link #timerName(String)}
+ * to specify a different name.
+ */
+public class WebDavChunkedPut extends AbstractWebDavAction<WebDavChunkedPut>
+{
+    /**
+     * The supported chunking protocols.
+     */
+    public enum Protocol
+    {
+        /**
+         * Each chunk is PUT to the target resource with a Content-Range header.
+         */
+        CONTENT_RANGE,
+
+        /**
+         * The chunks are uploaded and assembled according to Nextcloud's chunked upload protocol v2.
+         */
+        NEXTCLOUD
+    }
+
+    /**
+     * The URL of the resource to be created/replaced.
+     */
+    private final String url;
+
+    /**
+     * The file to upload, <code>null</code> if generated content is uploaded.
+     */
+    private final File file;
+
+    /**
+     * The content to upload, <code>null</code> if a file is uploaded.
+     */
+    private final GeneratedContent generatedContent;
+
+    /**
+     * The size of a chunk in bytes.
+     */
+    private final long chunkSize;
+
+    /**
+     * The maximum number of chunks to upload in parallel.
+     */
+    private int concurrency = 1;
+
+    /**
+     * How often to retry a chunk that failed on the network layer.
+     */
+    private int retries = 2;
+
+    /**
+     * The chunking protocol, <code>null</code> if not chosen yet.
+     */
+    private Protocol protocol;
+
+    /**
+     * The URL of the user's uploads directory (Nextcloud protocol only).
+     */
+    private String uploadsUrl;
+
+    /**
+     * The name of the temporary collection taking the chunks below the uploads directory (Nextcloud protocol only).
+     */
+    private String transferId;
+
+    /**
+     * The number of chunks the content was split into.
+     */
+    private int chunkCount;
+
+    /**
+     * The number of chunks skipped since they had been uploaded before.
+     */
+    private int skippedChunks;
+
+    /**
+     * The number of chunk uploads that were retried.
+     */
+    private final AtomicInteger retriedChunks = new AtomicInteger();
+
+    /**
+     * Creates a new action that uploads the given file in chunks.
+     *
+     * @param relativePath
+     *            the resource path relative to your WebDAV base directory
+     * @param file
+     *            the file to upload
+     * @param chunkSize
+     *            the size of a chunk in bytes
+     * @throws FileNotFoundException
+     *             if the file could not be found
+     */
+    public WebDavChunkedPut(final String relativePath, final File file, final long chunkSize) throws FileNotFoundException
+    {
+        super();
+
+        if (!file.isFile())
+        {
+            throw new FileNotFoundException(file.getAbsolutePath());
+        }
+
+        url = getUrl(relativePath);
+        this.file = file;
+        generatedContent = null;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Creates a new action that uploads the given generated content in chunks.
+     *
+     * @param relativePath
+     *            the resource path relative to your WebDAV base directory
+     * @param generatedContent
+     *            the description of the content to generate and upload
+     * @param chunkSize
+     *            the size of a chunk in bytes
+     */
+    public WebDavChunkedPut(final String relativePath, final GeneratedContent generatedContent, final long chunkSize)
+    {
+        super();
+
+        url = getUrl(relativePath);
+        file = null;
+        this.generatedContent = generatedContent;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Sets the maximum number of chunks to upload in parallel. Defaults to 1.
+     *
+     * @param concurrency
+     *            the number of parallel uploads
+     * @return this action
+     */
+    public WebDavChunkedPut concurrency(final int concurrency)
+    {
+        this.concurrency = concurrency;
+
+        return this;
+    }
+
+    /**
+     * Sets how often a chunk is retried when uploading it failed on the network layer. Defaults to 2.
+     *
+     * @param retries
+     *            the number of retries per chunk
+     * @return this action
+     */
+    public WebDavChunkedPut retries(final int retries)
+    {
+        this.retries = retries;
+
+        return this;
+    }
+
+    /**
+     * Uploads the chunks with Content-Range requests to the target resource. Choose this protocol only if the server is
+     * known to support partial updates this way.
+     *
+     * @return this action
+     */
+    public WebDavChunkedPut contentRangeChunking()
+    {
+        protocol = Protocol.CONTENT_RANGE;
+        uploadsUrl = null;
+
+        return this;
+    }
+
+    /**
+     * Uploads the chunks according to Nextcloud's chunked upload protocol (v2).
+     *
+     * @param uploadsPath
+     *            the absolute path of the user's uploads directory on the host, for example
+     *            "/remote.php/dav/uploads/&lt;user&gt;"
+     * @return this action
+     */
+    public WebDavChunkedPut nextcloudChunking(final String uploadsPath)
+    {
+        protocol = Protocol.NEXTCLOUD;
+        uploadsUrl = getAbsoluteUrl(uploadsPath);
+
+        return this;
+    }
+
+    /**
+     * Resumes an upload that was started by an earlier action but did not finish, for instance because of a network
+     * failure (Nextcloud protocol only). The chunks already present in the transfer collection with the expected length
+     * are skipped, all others are uploaded. If the collection does not exist anymore, the upload starts from scratch.
+     *
+     * @param transferId
+     *            the name of the transfer collection as returned by {@link #getTransferId()} of the earlier action
+     * @return this action
+     */
+    public WebDavChunkedPut resumeTransfer(final String transferId)
+    {
+        this.transferId = transferId;
+
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void preValidate()
+    {
+        WebDavValidationUtils.validateAction(this);
+
+        Assert.assertTrue("Chunk size must be positive", chunkSize > 0);
+        Assert.assertTrue("Concurrency must be positive", concurrency > 0);
+        ensureConnections(concurrency);
+        Assert.assertTrue("Retries must not be negative", retries >= 0);
+        Assert.assertNotNull("No chunking protocol chosen, use contentRangeChunking() or nextcloudChunking()", protocol);
+        Assert.assertTrue("Only uploads using the Nextcloud protocol can be resumed",
+                          transferId == null || protocol == Protocol.NEXTCLOUD);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void execute() throws Exception
+    {
+        final long totalLength = (file != null) ? file.length() : generatedContent.getLength();
+        final long startTime = System.currentTimeMillis();
+
+        if (protocol == Protocol.NEXTCLOUD)
+        {
+            uploadNextcloudChunks(totalLength);
+        }
+        else if (totalLength == 0)
+        {
+            // nothing to split
+            chunkCount = 1;
+            uploadChunk(url, createChunkEntity(0, 0), null);
+        }
+        else
+        {
+            uploadContentRangeChunks(totalLength);
+        }
+
+        updateMetadataCache(cache -> cache.modified(url));
+
+        final long elapsedTime = Math.max(1, System.currentTimeMillis() - startTime);
+        logCustomValue("Throughput [bytes/s]", totalLength * 1000.0 / elapsedTime);
+    }
+
+    /**
+     * Uploads the content in chunks using Content-Range requests.
+     *
+     * @param totalLength
+     *            the length of the content
+     * @throws Exception
+     *             if anything goes wrong
+     */
+    private void uploadContentRangeChunks(final long totalLength) throws Exception
+    {
+        // upload the first chunk on its own, so the parallel requests do not race to create the resource
+        final long firstLength = Math.min(chunkSize, totalLength);
+        uploadChunk(url, createChunkEntity(0, firstLength), "bytes 0-" + (firstLength - 1) + "/" + totalLength);
+
+        final List<Callable<Void>> tasks = new ArrayList<>();
+        for (long offset = firstLength; offset < totalLength; offset += chunkSize)
+        {
+            final long start = offset;
+            final long length = Math.min(chunkSize, totalLength - offset);
+            final String contentRange = "bytes " + start + "-" + (start + length - 1) + "/" + totalLength;
+
+            tasks.add(new Callable<Void>()
+            {
+                @Override
+                public Void call() throws Exception
+                {
+                    uploadChunk(url, createChunkEntity(start, length), contentRange);
+
+                    return null;
+                }
+            });
+        }
+
+        chunkCount = tasks.size() + 1;
+        ParallelTaskRunner.run(tasks, concurrency);
+    }
+
+    /**
+     * Uploads the content in chunks using Nextcloud's chunked upload protocol.
+     *
+     * @param totalLength
+     *            the length of the content
+     * @throws Exception
+     *             if anything goes wrong
+     */
+    private void uploadNextcloudChunks(final long totalLength) throws Exception
+    {
+        final Map<String, Long> uploadedChunks;
+        if (transferId == null)
+        {
+            transferId = "xlt-" + Long.toHexString(XltRandom.nextLong() & Long.MAX_VALUE);
+            uploadedChunks = null;
+        }
+        else
+        {
+            uploadedChunks = listUploadedChunks(uploadsUrl + "/" + transferId);
+        }
+
+        final String transferUrl = uploadsUrl + "/" + transferId;
+        final String totalLengthValue = String.valueOf(totalLength);
+
+        if (uploadedChunks == null)
+        {
+            // create the temporary collection that takes the chunks
+            final HttpMkCol mkcol = new HttpMkCol(transferUrl);
+            mkcol.setHeader("Destination", url);
+            getCustomizedSardine().execute(mkcol, new VoidResponseHandler());
+        }
+
+        // upload the chunks not present yet, which are numbered starting with 1
+        final List<Callable<Void>> tasks = new ArrayList<>();
+        long offset = 0;
+        do
+        {
+            final long start = offset;
+            final long length = Math.min(chunkSize, totalLength - offset);
+            final String chunkName = String.format("%05d", ++chunkCount);
+            final String chunkUrl = transferUrl + "/" + chunkName;
+
+            offset += length;
+
+            final Long uploadedLength = (uploadedChunks == null) ? null : uploadedChunks.get(chunkName);
+            if (uploadedLength != null && uploadedLength == length)
+            {
+                skippedChunks++;
+                continue;
+            }
+
+            tasks.add(new Callable<Void>()
+            {
+                @Override
+                public Void call() throws Exception
+                {
+                    final HttpPut put = new HttpPut(chunkUrl);
+                    put.setHeader("Destination", url);
+                    put.setHeader("OC-Total-Length", totalLengthValue);
+                    put.setEntity(createChunkEntity(start, length));
+
+                    executeWithRetries(put);
+
+                    return null;
+                }
+            });
+        }
+        while (offset < totalLength);
+
+        ParallelTaskRunner.run(tasks, concurrency);
+
+        // assemble the chunks at the target location
+        final HttpMove move = new HttpMove(transferUrl + "/.file", url, true);
+        move.setHeader("OC-Total-Length", totalLengthValue);
+        getCustomizedSardine().execute(move, new VoidResponseHandler());
+    }
+
+    /**
+     * Lists the chunks present in the given transfer collection.
+     *
+     * @param transferUrl
+     *            the URL of the transfer collection
+     * @return the lengths of the chunks keyed by chunk name, or <code>null</code> if the collection does not exist
+     * @throws IOException
+     *             if anything goes wrong
+     */
+    private Map<String, Long> listUploadedChunks(final String transferUrl) throws IOException
+    {
+        final Map<String, Long> chunks = new HashMap<>();
+
+        try
+        {
+            getCustomizedSardine().list(transferUrl, 1, entry -> {
+                if (!entry.isDirectory())
+                {
+                    chunks.put(entry.getName(), entry.getContentLength());
+                }
+            });
+        }
+        catch (final SardineException ex)
+        {
+            if (ex.getStatusCode() == HttpStatus.SC_NOT_FOUND)
+            {
+                return null;
+            }
+
+            throw ex;
+        }
+
+        return chunks;
+    }
+
+    /**
+     * Uploads a chunk to the given URL.
+     *
+     * @param chunkUrl
+     *            the target URL
+     * @param entity
+     *            the chunk content
+     * @param contentRange
+     *            the value of the Content-Range header, may be <code>null</code>
+     * @throws IOException
+     *             if anything goes wrong
+     */
+    private void uploadChunk(final String chunkUrl, final HttpEntity entity, final String contentRange) throws IOException
+    {
+        final HttpPut put = new HttpPut(chunkUrl);
+        if (contentRange != null)
+        {
+            put.setHeader("Content-Range", contentRange);
+        }
+        put.setEntity(entity);
+
+        executeWithRetries(put);
+    }
+
+    /**
+     * Executes the given request and retries it if it failed on the network layer. A request rejected by the server is
+     * not retried.
+     *
+     * @param request
+     *            the request to execute, its entity must be repeatable
+     * @throws IOException
+     *             if the request failed finally
+     */
+    private void executeWithRetries(final HttpRequestBase request) throws IOException
+    {
+        for (int attempt = 0;; attempt++)
+        {
+            try
+            {
+                getCustomizedSardine().execute(request, new VoidResponseHandler());
+
+                return;
+            }
+            catch (final HttpResponseException ex)
+            {
+                throw ex;
+            }
+            catch (final IOException ex)
+            {
+                if (attempt >= retries)
+                {
+                    throw ex;
+                }
+
+                retriedChunks.incrementAndGet();
+                request.reset();
+            }
+        }
+    }
+
+    /**
+     * Creates the entity for the given part of the content.
+     *
+     * @param offset
+     *            the offset of the chunk
+     * @param length
+     *            the length of the chunk
+     * @return the entity
+     */
+    private HttpEntity createChunkEntity(final long offset, final long length)
+    {
+        return (file != null) ? new FileChannelEntity(file, offset, length, null)
+                              : new GeneratedContentEntity(generatedContent, offset, length);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void postValidate()
+    {
+        // check status code of the last request
+        // - 200/204: done by updating/overwriting an existing file
+        // - 201: done by creating a new file
+        WebDavValidationUtils.validateStatusCode(getStatusCode(), 200, 201, 204);
+    }
+
+    /**
+     * Returns the number of chunks the content was split into.
+     *
+     * @return the number of chunks
+     */
+    public int getChunkCount()
+    {
+        return chunkCount;
+    }
+
+    /**
+     * Returns the number of chunks skipped when resuming an upload since they had been uploaded before.
+     *
+     * @return the number of chunks skipped
+     */
+    public int getSkippedChunks()
+    {
+        return skippedChunks;
+    }
+
+    /**
+     * Returns the name of the transfer collection taking the chunks (Nextcloud protocol only). Pass it to
+     * {@link #resumeTransfer(String)} of a later action to resume the upload if this action failed.
+     *
+     * @return the transfer ID, or <code>null</code> if not using the Nextcloud protocol
+     */
+    public String getTransferId()
+    {
+        return transferId;
+    }
+
+    /**
+     * Returns how often a chunk upload had to be retried.
+     *
+     * @return the number of retries
+     */
+    public int getRetriedChunks()
+    {
+        return retriedChunks.get();
+    }
+}
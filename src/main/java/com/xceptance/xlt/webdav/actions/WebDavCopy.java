@@ -1,7 +1,11 @@
 package com.xceptance.xlt.webdav.actions;
 
+import org.apache.http.HttpStatus;
+
 import com.github.sardine.DavResource;
+import com.github.sardine.impl.methods.HttpCopy;
 import com.xceptance.xlt.webdav.impl.AbstractWebDavAction;
+import com.xceptance.xlt.webdav.util.MultiStatusResult;
 import com.xceptance.xlt.webdav.util.WebDavValidationUtils;
 
 /**
@@ -12,6 +16,11 @@ import com.xceptance.xlt.webdav.util.WebDavValidationUtils;
  * {@link WebDavConnect}) or as a {@link DavResource} object, which can be obtained from the results of a
  * {@link WebDavList} action. The target location has to be given as relative path in either case.
  * <p>
+ * If the operation fails for some members of a directory, the server answers with a multi-status response. The
+ * response is parsed while it is being received, the outcome per member is available via {@link #getMultiStatus()},
+ * and the action fails if any member failed. The counts are reported as custom values "&lt;timer name&gt;
+ * Multi-Status Resources" and "&lt;timer name&gt; Multi-Status Failures".
+ * <p>
  * The default action name in the test results will be "{@literal WebDavCopy}". Use {@link #timerName(String)} to
  * specify a different name.
  *
@@ -29,6 +38,11 @@ public class WebDavCopy extends AbstractWebDavAction<WebDavCopy>
      */
     private final String targetUrl;
 
+    /**
+     * The outcomes per resource if the server sent a multi-status response.
+     */
+    private final MultiStatusResult multiStatus = new MultiStatusResult();
+
     /**
      * Creates a new action with a source and target path.
      *
@@ -43,6 +57,8 @@ public class WebDavCopy extends AbstractWebDavAction<WebDavCopy>
 
         sourceUrl = getUrl(relativeSourcePath);
         targetUrl = getUrl(relativeTargetPath);
+
+        streamResponses(true);
     }
 
     /**
@@ -59,6 +75,8 @@ public class WebDavCopy extends AbstractWebDavAction<WebDavCopy>
 
         sourceUrl = getUrl(davResource);
         targetUrl = getUrl(relativeTargetPath);
+
+        streamResponses(true);
     }
 
     /**
@@ -76,7 +94,16 @@ public class WebDavCopy extends AbstractWebDavAction<WebDavCopy>
     @Override
     protected void execute() throws Exception
     {
-        getSardine().copy(sourceUrl, targetUrl);
+        final HttpCopy copy = new HttpCopy(sourceUrl, targetUrl, true);
+        if (getCustomizedSardine().executeMultiStatus(copy, multiStatus) == HttpStatus.SC_MULTI_STATUS)
+        {
+            logMultiStatus(multiStatus);
+        }
+
+        if (multiStatus.isSuccessful())
+        {
+            updateMetadataCache(cache -> cache.copied(sourceUrl, targetUrl));
+        }
     }
 
     /**
@@ -88,7 +115,18 @@ public class WebDavCopy extends AbstractWebDavAction<WebDavCopy>
         // check status code
         // - 201: done by creating a new resource
         // - 204: done by overwriting an existing resource
-        // - 207: ???
+        // - 207: done, but maybe not for all resources
         WebDavValidationUtils.validateStatusCode(getStatusCode(), 201, 204, 207);
+        WebDavValidationUtils.validateMultiStatus(multiStatus);
+    }
+
+    /**
+     * Returns the outcomes per resource if the server sent a multi-status response.
+     *
+     * @return the outcomes, empty if the server did not send a multi-status response
+     */
+    public MultiStatusResult getMultiStatus()
+    {
+        return multiStatus;
     }
 }
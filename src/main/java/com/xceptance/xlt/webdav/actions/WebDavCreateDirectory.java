@@ -51,6 +51,8 @@ public class WebDavCreateDirectory extends AbstractWebDavAction<WebDavCreateDire
     protected void execute() throws Exception
     {
         getSardine().createDirectory(url);
+
+        updateMetadataCache(cache -> cache.modified(url));
     }
 
     /**
@@ -1,7 +1,27 @@
 package com.xceptance.xlt.webdav.actions;
 
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.client.methods.HttpDelete;
+import org.junit.Assert;
+
 import com.github.sardine.DavResource;
 import com.xceptance.xlt.webdav.impl.AbstractWebDavAction;
+import com.xceptance.xlt.webdav.impl.ParallelTaskRunner;
+import com.xceptance.xlt.webdav.util.MultiStatusResult;
+import com.xceptance.xlt.webdav.util.ResourceEntry;
 import com.xceptance.xlt.webdav.util.WebDavValidationUtils;
 
 /**
@@ -11,6 +31,23 @@ import com.xceptance.xlt.webdav.util.WebDavValidationUtils;
  * {@link WebDavConnect}) or as a {@link DavResource} object, which can be obtained from the results of a
  * {@link WebDavList} action.
  * <p>
+ * Deleting a huge directory with a single request may take the server a long time, sometimes longer than any timeout
+ * allows. Use {@link #recursive(int)} to delete the tree from the client side instead: the tree is walked with
+ * PROPFIND requests of depth 1, the files are deleted in parallel, and finally the then empty directories are deleted
+ * bottom-up, again in parallel. Directories are listed by the same workers that delete the files, so listings run in
+ * parallel as well and no worker is blocked while another one lists a directory. Directories without sub directories
+ * and with only a few files (see {@link #serverSideDeleteThreshold(int)}) are still deleted with a single request, as
+ * the server can handle them quickly.
+ * <p>
+ * Each request running in parallel needs a connection. The user's connection pool is enlarged to the concurrency if
+ * needed. If the shared connection pool is enabled instead, a recursive deletion fails up front when the concurrency
+ * exceeds the pool's connections per server.
+ * <p>
+ * If a directory cannot be deleted completely, the server answers with a multi-status response listing the members
+ * that could not be deleted. The response is parsed while it is being received, the failures are available via
+ * {@link #getMultiStatus()}, and the action fails. The counts are reported as custom values "&lt;timer name&gt;
+ * Multi-Status Resources" and "&lt;timer name&gt; Multi-Status Failures".
+ * <p>
  * The default action name in the test results will be "{@literal WebDavDelete}". Use {@link #timerName(String)} to
  * specify a different name.
  *
@@ -23,6 +60,31 @@ public class WebDavDelete extends AbstractWebDavAction<WebDavDelete>
      */
     private final String url;
 
+    /**
+     * The maximum number of requests running in parallel when deleting recursively, 0 to let the server do all work.
+     */
+    private int concurrency;
+
+    /**
+     * The maximum number of files a directory without sub directories may hold to be deleted with a single request.
+     */
+    private int serverSideDeleteThreshold = 100;
+
+    /**
+     * The number of files deleted individually.
+     */
+    private final AtomicLong filesDeleted = new AtomicLong();
+
+    /**
+     * The number of directories deleted.
+     */
+    private final AtomicLong directoriesDeleted = new AtomicLong();
+
+    /**
+     * The outcomes per resource if the server sent multi-status responses.
+     */
+    private final MultiStatusResult multiStatus = new MultiStatusResult();
+
     /**
      * Creates a new action with the passed resource path.
      *
@@ -34,6 +96,8 @@ public class WebDavDelete extends AbstractWebDavAction<WebDavDelete>
         super();
 
         url = getUrl(relativePath);
+
+        streamResponses(true);
     }
 
     /**
@@ -47,6 +111,8 @@ public class WebDavDelete extends AbstractWebDavAction<WebDavDelete>
         super();
 
         url = getUrl(davResource);
+
+        streamResponses(true);
     }
 
     /**
@@ -56,6 +122,12 @@ public class WebDavDelete extends AbstractWebDavAction<WebDavDelete>
     public void preValidate()
     {
         WebDavValidationUtils.validateAction(this);
+
+        Assert.assertTrue("Concurrency must not be negative", concurrency >= 0);
+        if (concurrency > 0)
+        {
+            ensureConnections(concurrency);
+        }
     }
 
     /**
@@ -64,7 +136,27 @@ public class WebDavDelete extends AbstractWebDavAction<WebDavDelete>
     @Override
     protected void execute() throws Exception
     {
-        getSardine().delete(url);
+        if (concurrency == 0)
+        {
+            getCustomizedSardine().executeMultiStatus(new HttpDelete(url), multiStatus);
+        }
+        else
+        {
+            deleteRecursively();
+        }
+
+        if (multiStatus.getResourceCount() > 0)
+        {
+            logMultiStatus(multiStatus);
+        }
+
+        if (multiStatus.isSuccessful())
+        {
+            // the server has dropped any locks on the tree as well
+            getLocks().removeTree(url);
+
+            updateMetadataCache(cache -> cache.deleted(url));
+        }
     }
 
     /**
@@ -73,7 +165,325 @@ public class WebDavDelete extends AbstractWebDavAction<WebDavDelete>
     @Override
     protected void postValidate()
     {
-        // check status code -> 204
-        WebDavValidationUtils.validateStatusCode(getStatusCode(), 204);
+        // check status code -> 204, or 207 if some members could not be deleted
+        WebDavValidationUtils.validateStatusCode(getStatusCode(), 204, 207);
+        WebDavValidationUtils.validateMultiStatus(multiStatus);
+    }
+
+    /**
+     * Deletes the tree from the client side. Files are deleted in parallel (as well as small directories without sub
+     * directories), then all remaining directories level by level, starting with the deepest one.
+     *
+     * @throws Exception
+     *             if anything goes wrong
+     */
+    private void deleteRecursively() throws Exception
+    {
+        final DeletionWalker walker = new DeletionWalker(StringUtils.removeEnd(URI.create(url).getPath(), "/"));
+        ParallelTaskRunner.forEach(walker, concurrency, walker::process);
+
+        // now the remaining directories are empty, delete them bottom-up
+        final List<List<String>> levels = new ArrayList<>();
+        for (final String directory : walker.remainingDirectories)
+        {
+            final int level = StringUtils.countMatches(directory, '/');
+            while (levels.size() <= level)
+            {
+                levels.add(new ArrayList<String>());
+            }
+
+            levels.get(level).add(directory);
+        }
+
+        for (int i = levels.size() - 1; i >= 0; i--)
+        {
+            ParallelTaskRunner.forEach(levels.get(i).iterator(), concurrency, this::deleteDirectory);
+        }
+    }
+
+    /**
+     * Deletes a single file.
+     *
+     * @param file
+     *            the file to delete
+     * @throws IOException
+     *             if anything goes wrong
+     */
+    private void delete(final ResourceEntry file) throws IOException
+    {
+        getSardine().delete(getAbsoluteUrl(file.getPath()));
+        filesDeleted.incrementAndGet();
+    }
+
+    /**
+     * Deletes a directory.
+     *
+     * @param path
+     *            the decoded path of the directory, without trailing slash
+     * @throws IOException
+     *             if anything goes wrong
+     */
+    private void deleteDirectory(final String path) throws IOException
+    {
+        getCustomizedSardine().executeMultiStatus(new HttpDelete(getAbsoluteUrl(path + "/")), multiStatus);
+        directoriesDeleted.incrementAndGet();
+    }
+
+    /**
+     * Enables deleting the tree from the client side.
+     *
+     * @param concurrency
+     *            the maximum number of requests running in parallel
+     * @return this action
+     */
+    public WebDavDelete recursive(final int concurrency)
+    {
+        this.concurrency = concurrency;
+
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of files a directory without sub directories may hold to still be deleted with a single
+     * request when deleting recursively. Defaults to 100.
+     *
+     * @param maxFiles
+     *            the maximum number of files, 0 to always delete files individually
+     * @return this action
+     */
+    public WebDavDelete serverSideDeleteThreshold(final int maxFiles)
+    {
+        serverSideDeleteThreshold = maxFiles;
+
+        return this;
+    }
+
+    /**
+     * Returns the number of files deleted individually when deleting recursively.
+     *
+     * @return the number of files
+     */
+    public long getFilesDeleted()
+    {
+        return filesDeleted.get();
+    }
+
+    /**
+     * Returns the number of directories deleted when deleting recursively.
+     *
+     * @return the number of directories
+     */
+    public long getDirectoriesDeleted()
+    {
+        return directoriesDeleted.get();
+    }
+
+    /**
+     * Returns the members that could not be deleted as reported in multi-status responses.
+     *
+     * @return the outcomes, empty if the server did not send a multi-status response
+     */
+    public MultiStatusResult getMultiStatus()
+    {
+        return multiStatus;
+    }
+
+    /**
+     * Walks the tree and delivers the files that can be deleted right away as well as the directories to list next.
+     * The workers take the items one at a time and {@link #process(ResourceEntry) process} them in parallel, so a
+     * directory is listed by a worker without blocking the others. A directory is handed out only when fewer files are
+     * pending than there are workers, or when no files are pending at all. Directories that cannot be deleted before
+     * their content are collected for later.
+     */
+    private class DeletionWalker implements Iterator<ResourceEntry>
+    {
+        /**
+         * The directories still to be listed.
+         */
+        private final Deque<ResourceEntry> pendingDirectories = new ArrayDeque<>();
+
+        /**
+         * The files to delete right away.
+         */
+        private final Deque<ResourceEntry> pendingDeletions = new ArrayDeque<>();
+
+        /**
+         * The decoded paths of the directories to delete once their content is gone. Complete only after the walk.
+         */
+        final List<String> remainingDirectories = new ArrayList<>();
+
+        /**
+         * The number of directories being listed right now.
+         */
+        private int listingsInProgress;
+
+        /**
+         * Guards the pending items, as the results of a listing are added by the listing worker.
+         */
+        private final Lock lock = new ReentrantLock();
+
+        /**
+         * Signaled when items were added or a listing has finished.
+         */
+        private final Condition changed = lock.newCondition();
+
+        /**
+         * Creates a new {@link DeletionWalker} object starting at the given directory.
+         *
+         * @param rootPath
+         *            the decoded path of the directory to delete, without trailing slash
+         */
+        DeletionWalker(final String rootPath)
+        {
+            pendingDirectories.add(new ResourceEntry(rootPath, -1, true, -1, -1, -1, null, null, null, null));
+        }
+
+        /**
+         * {@inheritDoc}
+         * <p>
+         * Waits for the directories being listed if nothing is pending right now.
+         */
+        @Override
+        public boolean hasNext()
+        {
+            lock.lock();
+            try
+            {
+                while (pendingDeletions.isEmpty() && pendingDirectories.isEmpty() && listingsInProgress > 0)
+                {
+                    changed.awaitUninterruptibly();
+                }
+
+                return !pendingDeletions.isEmpty() || !pendingDirectories.isEmpty();
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public ResourceEntry next()
+        {
+            if (!hasNext())
+            {
+                throw new NoSuchElementException();
+            }
+
+            lock.lock();
+            try
+            {
+                // prefetch the next directory before the workers run out of files
+                if (pendingDeletions.size() < concurrency && !pendingDirectories.isEmpty())
+                {
+                    listingsInProgress++;
+
+                    return pendingDirectories.poll();
+                }
+
+                return pendingDeletions.poll();
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Processes an item taken from this walker, i.e. lists a directory or deletes a file.
+         *
+         * @param entry
+         *            the directory or file
+         * @throws IOException
+         *             if anything goes wrong
+         */
+        void process(final ResourceEntry entry) throws IOException
+        {
+            if (!entry.isDirectory())
+            {
+                delete(entry);
+                return;
+            }
+
+            try
+            {
+                listDirectory(StringUtils.removeEnd(entry.getPath(), "/"));
+            }
+            finally
+            {
+                lock.lock();
+                try
+                {
+                    listingsInProgress--;
+                    changed.signalAll();
+                }
+                finally
+                {
+                    lock.unlock();
+                }
+            }
+        }
+
+        /**
+         * Lists the given directory and decides how to delete it. A directory small enough for the server is deleted
+         * right away by the listing worker.
+         *
+         * @param directoryPath
+         *            the decoded path of the directory, without trailing slash
+         * @throws IOException
+         *             if anything goes wrong
+         */
+        private void listDirectory(final String directoryPath) throws IOException
+        {
+            final List<ResourceEntry> self = new ArrayList<>(1);
+            final List<ResourceEntry> files = new ArrayList<>();
+            final List<ResourceEntry> subDirectories = new ArrayList<>();
+
+            getCustomizedSardine().list(getAbsoluteUrl(directoryPath + "/"), 1, entry -> {
+                if (StringUtils.removeEnd(entry.getPath(), "/").equals(directoryPath))
+                {
+                    // the listing includes the directory itself
+                    self.add(entry);
+                }
+                else if (entry.isDirectory())
+                {
+                    subDirectories.add(entry);
+                }
+                else
+                {
+                    files.add(entry);
+                }
+            });
+
+            if (!self.isEmpty() && !self.get(0).isDirectory())
+            {
+                // not a directory at all
+                delete(self.get(0));
+            }
+            else if (subDirectories.isEmpty() && files.size() <= serverSideDeleteThreshold)
+            {
+                // small enough for the server
+                deleteDirectory(directoryPath);
+            }
+            else
+            {
+                lock.lock();
+                try
+                {
+                    pendingDeletions.addAll(files);
+                    pendingDirectories.addAll(subDirectories);
+                    remainingDirectories.add(directoryPath);
+
+                    changed.signalAll();
+                }
+                finally
+                {
+                    lock.unlock();
+                }
+            }
+        }
     }
 }
@@ -4,6 +4,7 @@ import org.junit.Assert;
 
 import com.github.sardine.DavResource;
 import com.xceptance.xlt.webdav.impl.AbstractWebDavAction;
+import com.xceptance.xlt.webdav.util.MetadataCache;
 import com.xceptance.xlt.webdav.util.WebDavValidationUtils;
 
 /**
@@ -13,6 +14,9 @@ import com.xceptance.xlt.webdav.util.WebDavValidationUtils;
  * {@link WebDavConnect}) or as a {@link DavResource} object, which can be obtained from the results of a
  * {@link WebDavList} action.
  * <p>
+ * If the {@link MetadataCache} of the user is enabled, the result is remembered there. Use {@link #useMetadataCache()}
+ * to answer the check from the cache without sending a request, provided the cache knows the resource already.
+ * <p>
  * The default action name in the test results will be "{@literal WebDavExists}". Use {@link #timerName(String)} to
  * specify a different name.
  *
@@ -35,6 +39,16 @@ public class WebDavExists extends AbstractWebDavAction<WebDavExists>
      */
     private boolean doesExist;
 
+    /**
+     * Whether to answer the check from the metadata cache if possible.
+     */
+    private boolean useMetadataCache;
+
+    /**
+     * Whether the check was answered from the metadata cache.
+     */
+    private boolean answeredFromCache;
+
     /**
      * Action with standard action name listed in the results, based on a path
      *
@@ -82,7 +96,22 @@ public class WebDavExists extends AbstractWebDavAction<WebDavExists>
     @Override
     protected void execute() throws Exception
     {
+        final MetadataCache metadataCache = useMetadataCache ? getMetadataCache() : null;
+        if (metadataCache != null)
+        {
+            final Boolean knownToExist = metadataCache.exists(url);
+            if (knownToExist != null)
+            {
+                doesExist = knownToExist;
+                answeredFromCache = true;
+
+                return;
+            }
+        }
+
         doesExist = getSardine().exists(url);
+
+        updateMetadataCache(cache -> cache.existenceChecked(url, doesExist));
     }
 
     /**
@@ -91,10 +120,13 @@ public class WebDavExists extends AbstractWebDavAction<WebDavExists>
     @Override
     protected void postValidate()
     {
-        // check status code
+        // check status code unless no request was sent
         // - 200: resource exists
         // - 404: resource does not exist
-        WebDavValidationUtils.validateStatusCode(getStatusCode(), shouldExist ? 200 : 404);
+        if (!answeredFromCache)
+        {
+            WebDavValidationUtils.validateStatusCode(getStatusCode(), shouldExist ? 200 : 404);
+        }
 
         // check expectations
         if (shouldExist)
@@ -106,4 +138,27 @@ public class WebDavExists extends AbstractWebDavAction<WebDavExists>
             Assert.assertFalse("The resource does exist", doesExist);
         }
     }
+
+    /**
+     * Answers the check from the {@link MetadataCache} of the user without sending a request if the cache knows the
+     * resource. Has no effect if the cache is not enabled.
+     *
+     * @return this action
+     */
+    public WebDavExists useMetadataCache()
+    {
+        useMetadataCache = true;
+
+        return this;
+    }
+
+    /**
+     * Returns whether the check was answered from the metadata cache.
+     *
+     * @return <code>true</code> if no request was sent, <code>false</code> otherwise
+     */
+    public boolean isAnsweredFromCache()
+    {
+        return answeredFromCache;
+    }
 }
@@ -1,17 +1,50 @@
 package com.xceptance.xlt.webdav.actions;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.junit.Assert;
 
 import com.github.sardine.DavResource;
+import com.github.sardine.impl.handler.ValidatingResponseHandler;
+import com.xceptance.xlt.api.util.XltRandom;
 import com.xceptance.xlt.webdav.impl.AbstractWebDavAction;
+import com.xceptance.xlt.webdav.util.ContentDigest;
+import com.xceptance.xlt.webdav.util.GeneratedContent;
+import com.xceptance.xlt.webdav.util.ValidatorCache;
+import com.xceptance.xlt.webdav.util.WebDavStreamUtils;
 import com.xceptance.xlt.webdav.util.WebDavValidationUtils;
 
 /**
  * Downloads a file from a WebDAV server using the GET request method. The downloaded content can optionally be stored
  * in memory for further inspection.
  * <p>
+ * By default, the response is read into memory completely on the network layer. To download large files without
+ * holding them on the heap, enable streaming via {@link #streamResponses(boolean)} (or the property
+ * "{@value #PROP_STREAM_RESPONSES}") and do not store the content.
+ * <p>
+ * The integrity of the content can be verified without storing it by passing the expected digest to
+ * {@link #verifyDigest(String, String)}. The digest is computed while reading the content.
+ * <p>
+ * To fetch only a part of the file, use {@link #range(long, long)} or {@link #randomRange(long)}. To fetch a large file
+ * in several parts in parallel, use {@link WebDavSegmentedGet}.
+ * <p>
+ * To behave like a sync client that revalidates files it has already downloaded, enable conditional requests via
+ * {@link #conditional()}. The validators of each file downloaded are then remembered in the
+ * {@link ValidatorCache} of the connection, and repeated downloads send them as If-None-Match/If-Modified-Since
+ * headers. If the server answers with "304 Not Modified", no content is transferred, and neither stored nor digested.
+ * Whether the file was not modified is reported as custom value "&lt;timer name&gt; Not Modified" (1 for a cache hit,
+ * 0 for a miss).
+ * <p>
  * The resource in question can be specified either as path (relative to the WebDAV base directory as configured in
  * {@link WebDavConnect}) or as a {@link DavResource} object, which can be obtained from the results of a
  * {@link WebDavList} action.
@@ -33,11 +66,46 @@ public class WebDavGet extends AbstractWebDavAction<WebDavGet>
      */
     private final boolean storeContent;
 
+    /**
+     * The length of the resource if known up front, -1 otherwise.
+     */
+    private final long resourceLength;
+
+    /**
+     * The value of the Range header to send, <code>null</code> to fetch the whole resource.
+     */
+    private String range;
+
     /**
      * The content of the file.
      */
     private byte[] fileContent;
 
+    /**
+     * The digest algorithm to compute, <code>null</code> if no digest is computed.
+     */
+    private String digestAlgorithm;
+
+    /**
+     * The expected digest value, <code>null</code> if the digest is computed, but not verified.
+     */
+    private String expectedDigest;
+
+    /**
+     * The computed digest value.
+     */
+    private String digest;
+
+    /**
+     * Whether to send a conditional request if validators for the file are known.
+     */
+    private boolean conditional;
+
+    /**
+     * Whether the server answered that the file was not modified.
+     */
+    private boolean notModified;
+
     /**
      * Action with standard action name listed in the results, based on a path
      *
@@ -52,6 +120,7 @@ public class WebDavGet extends AbstractWebDavAction<WebDavGet>
 
         url = getUrl(relativePath);
         this.storeContent = storeContent;
+        resourceLength = -1;
     }
 
     /**
@@ -68,6 +137,7 @@ public class WebDavGet extends AbstractWebDavAction<WebDavGet>
 
         url = getUrl(davResource);
         this.storeContent = storeContent;
+        resourceLength = (davResource.getContentLength() == null) ? -1 : davResource.getContentLength();
     }
 
     /**
@@ -85,23 +155,133 @@ public class WebDavGet extends AbstractWebDavAction<WebDavGet>
     @Override
     protected void execute() throws Exception
     {
-        try (final InputStream is = getSardine().get(url))
+        final ContentDigest contentDigest = (digestAlgorithm == null) ? null : new ContentDigest(digestAlgorithm);
+
+        if (conditional && range == null)
+        {
+            getConditionally(contentDigest);
+        }
+        else
+        {
+            try (final InputStream is = (range == null) ? getSardine().get(url) : getSardine().get(url, createRangeHeaders(range)))
+            {
+                readContent(is, contentDigest);
+            }
+        }
+
+        if (contentDigest != null && !notModified)
+        {
+            digest = contentDigest.getHexValue();
+        }
+    }
+
+    /**
+     * Fetches the file with a conditional request if its validators are known, and updates the validators afterwards.
+     *
+     * @param contentDigest
+     *            the digest to update while reading, may be <code>null</code>
+     * @throws IOException
+     *             if anything goes wrong
+     */
+    private void getConditionally(final ContentDigest contentDigest) throws IOException
+    {
+        final ValidatorCache cache = getContext().getValidatorCache();
+        final ValidatorCache.Validators validators = cache.get(url);
+
+        final HttpGet get = new HttpGet(url);
+        if (validators != null)
         {
-            if (storeContent)
+            if (validators.getEtag() != null)
             {
-                fileContent = IOUtils.toByteArray(is);
+                get.setHeader(HttpHeaders.IF_NONE_MATCH, validators.getEtag());
             }
-            else
+            if (validators.getLastModified() != null)
             {
-                // just read, don't keep
-                final byte[] data = new byte[1024];
+                get.setHeader(HttpHeaders.IF_MODIFIED_SINCE, validators.getLastModified());
+            }
+        }
 
-                while (is.read(data, 0, data.length) != -1)
+        getCustomizedSardine().execute(get, new ValidatingResponseHandler<Void>()
+        {
+            @Override
+            public Void handleResponse(final HttpResponse response) throws IOException
+            {
+                notModified = response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED;
+                if (!notModified)
                 {
-                    // nope
+                    validateResponse(response);
+
+                    final HttpEntity entity = response.getEntity();
+                    if (entity != null)
+                    {
+                        try (final InputStream is = entity.getContent())
+                        {
+                            readContent(is, contentDigest);
+                        }
+                    }
+
+                    cache.put(url, getHeaderValue(response, HttpHeaders.ETAG),
+                              getHeaderValue(response, HttpHeaders.LAST_MODIFIED));
                 }
+
+                return null;
+            }
+        });
+
+        if (notModified)
+        {
+            cache.recordHit();
+        }
+        else
+        {
+            cache.recordMiss();
+        }
+
+        logCustomValue("Not Modified", notModified ? 1 : 0);
+    }
+
+    /**
+     * Returns the value of the given response header.
+     *
+     * @param response
+     *            the response
+     * @param name
+     *            the header name
+     * @return the value, or <code>null</code> if the header is not present
+     */
+    private static String getHeaderValue(final HttpResponse response, final String name)
+    {
+        final Header header = response.getFirstHeader(name);
+
+        return (header == null) ? null : header.getValue();
+    }
+
+    /**
+     * Reads the content of the file, storing it if requested.
+     *
+     * @param is
+     *            the content stream
+     * @param contentDigest
+     *            the digest to update while reading, may be <code>null</code>
+     * @throws IOException
+     *             if anything goes wrong
+     */
+    private void readContent(final InputStream is, final ContentDigest contentDigest) throws IOException
+    {
+        if (storeContent)
+        {
+            fileContent = IOUtils.toByteArray(is);
+
+            if (contentDigest != null)
+            {
+                contentDigest.update(fileContent, 0, fileContent.length);
             }
         }
+        else
+        {
+            // just read, don't keep
+            WebDavStreamUtils.drain(is, contentDigest);
+        }
     }
 
     /**
@@ -110,8 +290,160 @@ public class WebDavGet extends AbstractWebDavAction<WebDavGet>
     @Override
     protected void postValidate()
     {
-        // check status code -> 200
-        WebDavValidationUtils.validateStatusCode(getStatusCode(), 200);
+        // check status code -> 200, or 206 if only a part was requested, or 304 if not modified
+        WebDavValidationUtils.validateStatusCode(getStatusCode(), (range == null) ? (notModified ? 304 : 200) : 206);
+
+        // check the digest if requested and the content was transferred at all
+        if (expectedDigest != null && !notModified)
+        {
+            Assert.assertTrue("Content " + digestAlgorithm + " digest mismatch: expected " + expectedDigest + ", but was " + digest,
+                              expectedDigest.equalsIgnoreCase(digest));
+        }
+    }
+
+    /**
+     * Fetches only the given part of the resource using an HTTP Range request.
+     *
+     * @param offset
+     *            the offset of the first byte to fetch
+     * @param length
+     *            the number of bytes to fetch
+     * @return this action
+     */
+    public WebDavGet range(final long offset, final long length)
+    {
+        Assert.assertTrue("Invalid range: offset " + offset + ", length " + length, offset >= 0 && length > 0);
+
+        range = "bytes=" + offset + "-" + (offset + length - 1);
+
+        return this;
+    }
+
+    /**
+     * Fetches a part of the given length at a random offset. The length of the resource has to be known, i.e. this
+     * action has to be created from a {@link DavResource}.
+     *
+     * @param length
+     *            the number of bytes to fetch
+     * @return this action
+     */
+    public WebDavGet randomRange(final long length)
+    {
+        Assert.assertTrue("Resource length is unknown", resourceLength >= 0);
+
+        return randomRange(resourceLength, length);
+    }
+
+    /**
+     * Fetches a part of the given length at a random offset within a resource of the given length. If the resource is
+     * shorter than the requested length, the whole resource is requested as range. An empty resource has no range that
+     * could be satisfied, so it is fetched without a range.
+     *
+     * @param resourceLength
+     *            the length of the resource
+     * @param length
+     *            the number of bytes to fetch
+     * @return this action
+     */
+    public WebDavGet randomRange(final long resourceLength, final long length)
+    {
+        Assert.assertTrue("Invalid resource length: " + resourceLength, resourceLength >= 0);
+        Assert.assertTrue("Invalid range length: " + length, length > 0);
+
+        if (resourceLength == 0)
+        {
+            range = null;
+
+            return this;
+        }
+
+        final long rangeLength = Math.min(length, resourceLength);
+        final long maxOffset = resourceLength - rangeLength;
+
+        return range((long) (XltRandom.nextDouble() * (maxOffset + 1)), rangeLength);
+    }
+
+    /**
+     * Sends a conditional request if the file has been downloaded before via the same connection, so the server can
+     * answer with "304 Not Modified" instead of sending the content again. Ignored for range requests.
+     *
+     * @return this action
+     */
+    public WebDavGet conditional()
+    {
+        conditional = true;
+
+        return this;
+    }
+
+    /**
+     * Returns whether the server answered the conditional request with "304 Not Modified".
+     *
+     * @return <code>true</code> if the file was not modified, <code>false</code> otherwise
+     */
+    public boolean isNotModified()
+    {
+        return notModified;
+    }
+
+    /**
+     * Creates the request headers for a range request. Compression is disabled as ranges refer to the uncompressed
+     * representation.
+     *
+     * @param range
+     *            the value of the Range header
+     * @return the headers
+     */
+    static Map<String, String> createRangeHeaders(final String range)
+    {
+        final Map<String, String> headers = new HashMap<>();
+        headers.put(HttpHeaders.RANGE, range);
+        headers.put(HttpHeaders.ACCEPT_ENCODING, "identity");
+
+        return headers;
+    }
+
+    /**
+     * Computes the digest of the content using the given algorithm while reading it. The result is available via
+     * {@link #getDigest()}.
+     *
+     * @param algorithm
+     *            the digest algorithm, see {@link ContentDigest} for supported values
+     * @return this action
+     */
+    public WebDavGet computeDigest(final String algorithm)
+    {
+        digestAlgorithm = algorithm;
+
+        return this;
+    }
+
+    /**
+     * Computes the digest of the content using the given algorithm while reading it and verifies it against the
+     * expected value.
+     *
+     * @param algorithm
+     *            the digest algorithm, see {@link ContentDigest} for supported values
+     * @param expectedValue
+     *            the expected digest as hex string, for instance as obtained from {@link GeneratedContent#digest(String)}
+     * @return this action
+     */
+    public WebDavGet verifyDigest(final String algorithm, final String expectedValue)
+    {
+        digestAlgorithm = algorithm;
+        expectedDigest = expectedValue;
+
+        return this;
+    }
+
+    /**
+     * Returns the digest of the content as hex string.
+     *
+     * @return the digest, or <code>null</code> if no digest was computed
+     */
+    public String getDigest()
+    {
+        return digest;
     }
 
     /**
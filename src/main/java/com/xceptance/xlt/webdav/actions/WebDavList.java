@@ -1,12 +1,19 @@
 package com.xceptance.xlt.webdav.actions;
 
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import javax.xml.namespace.QName;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.junit.Assert;
 
 import com.github.sardine.DavResource;
 import com.xceptance.xlt.webdav.impl.AbstractWebDavAction;
+import com.xceptance.xlt.webdav.util.MetadataCache;
+import com.xceptance.xlt.webdav.util.ResourceEntry;
 import com.xceptance.xlt.webdav.util.WebDavValidationUtils;
 
 /**
@@ -28,6 +35,19 @@ import com.xceptance.xlt.webdav.util.WebDavValidationUtils;
  * </ul>
  * Note that a WebDAV server might forbid to use infinity depth.
  * <p>
+ * For huge listings, use {@link #streamTo(Consumer)}. In this mode, the response is parsed while it is being received
+ * and each resource found is passed to the given consumer as compact {@link ResourceEntry} right away, instead of
+ * collecting all of them as {@link DavResource} objects first.
+ * <p>
+ * By default, the same set of common properties is requested for each resource. Use {@link #properties(QName...)} to
+ * request just the properties needed, which may reduce both the response size and the time the server needs to compute
+ * the properties considerably. In streaming mode, {@link #propertyNamesOnly()} requests the names of the available
+ * properties instead of their values.
+ * <p>
+ * If the {@link MetadataCache} of the user is enabled, the resources found with the default properties are remembered
+ * there. In streaming mode, {@link #useMetadataCache()} lets a listing of depth 0 be answered from the cache without
+ * sending a request, provided the cache knows the metadata of the resource already.
+ * <p>
  * The default action name in the test results will be "{@literal WebDavList}". Use {@link #timerName(String)} to
  * specify a different name.
  *
@@ -58,6 +78,36 @@ public class WebDavList extends AbstractWebDavAction<WebDavList>
      */
     private List<DavResource> resources;
 
+    /**
+     * The consumer of the resources found in streaming mode, <code>null</code> otherwise.
+     */
+    private Consumer<? super ResourceEntry> entryConsumer;
+
+    /**
+     * The properties to request, <code>null</code> for the default properties.
+     */
+    private Set<QName> properties;
+
+    /**
+     * Whether to request the names of the available properties only.
+     */
+    private boolean propertyNamesOnly;
+
+    /**
+     * The number of resources found.
+     */
+    private int resourceCount;
+
+    /**
+     * Whether to answer a listing of depth 0 from the metadata cache if possible.
+     */
+    private boolean useMetadataCache;
+
+    /**
+     * Whether the listing was answered from the metadata cache.
+     */
+    private boolean answeredFromCache;
+
     /**
      * Action with standard action name listed in the results, based on a path
      *
@@ -123,6 +173,11 @@ public class WebDavList extends AbstractWebDavAction<WebDavList>
         // check depth
         Assert.assertTrue("Invalid depth value given: " + depth + " is not one of " + ArrayUtils.toString(VALID_DEPTH_VALUES),
                           ArrayUtils.contains(VALID_DEPTH_VALUES, depth));
+
+        Assert.assertFalse("Property names can be listed in streaming mode only",
+                           propertyNamesOnly && entryConsumer == null);
+        Assert.assertFalse("The metadata cache can be used for listings of depth 0 in streaming mode only",
+                           useMetadataCache && (depth != 0 || entryConsumer == null));
     }
 
     /**
@@ -131,7 +186,49 @@ public class WebDavList extends AbstractWebDavAction<WebDavList>
     @Override
     protected void execute() throws Exception
     {
-        resources = getSardine().list(url, depth, false);
+        // only complete entries are worth remembering
+        final MetadataCache metadataCache = (properties == null && !propertyNamesOnly) ? getMetadataCache() : null;
+
+        if (entryConsumer == null)
+        {
+            resources = (properties == null) ? getSardine().list(url, depth, false)
+                                             : getSardine().propfind(url, depth, properties);
+            resourceCount = resources.size();
+
+            if (metadataCache != null)
+            {
+                resources.forEach(metadataCache::put);
+            }
+        }
+        else if (propertyNamesOnly)
+        {
+            resourceCount = getCustomizedSardine().listPropertyNames(url, depth, entryConsumer);
+        }
+        else if (properties != null)
+        {
+            resourceCount = getCustomizedSardine().list(url, depth, properties, entryConsumer);
+        }
+        else if (metadataCache == null)
+        {
+            resourceCount = getCustomizedSardine().list(url, depth, entryConsumer);
+        }
+        else
+        {
+            final ResourceEntry cachedEntry = useMetadataCache ? metadataCache.getEntry(url) : null;
+            if (cachedEntry != null)
+            {
+                entryConsumer.accept(cachedEntry);
+                resourceCount = 1;
+                answeredFromCache = true;
+            }
+            else
+            {
+                resourceCount = getCustomizedSardine().list(url, depth, entry -> {
+                    metadataCache.put(entry);
+                    entryConsumer.accept(entry);
+                });
+            }
+        }
     }
 
     /**
@@ -140,17 +237,130 @@ public class WebDavList extends AbstractWebDavAction<WebDavList>
     @Override
     protected void postValidate()
     {
-        // check status code -> 207
-        WebDavValidationUtils.validateStatusCode(getStatusCode(), 207);
+        // check status code -> 207, unless no request was sent
+        if (!answeredFromCache)
+        {
+            WebDavValidationUtils.validateStatusCode(getStatusCode(), 207);
+        }
+    }
+
+    /**
+     * Switches to streaming mode, in which each resource found is passed to the given consumer as soon as it has been
+     * parsed from the response. The resources are not kept, so {@link #getResources()} will return <code>null</code>.
+     * Response streaming is enabled for this action as well, so the response is never buffered as a whole.
+     *
+     * @param consumer
+     *            the consumer of the resources found
+     * @return this action
+     */
+    public WebDavList streamTo(final Consumer<? super ResourceEntry> consumer)
+    {
+        entryConsumer = consumer;
+
+        return streamResponses(true);
+    }
+
+    /**
+     * Answers a listing of depth 0 in streaming mode from the {@link MetadataCache} of the user without sending a
+     * request if the cache knows the metadata of the resource. Has no effect if the cache is not enabled.
+     *
+     * @return this action
+     */
+    public WebDavList useMetadataCache()
+    {
+        useMetadataCache = true;
+
+        return this;
+    }
+
+    /**
+     * Returns whether the listing was answered from the metadata cache.
+     *
+     * @return <code>true</code> if no request was sent, <code>false</code> otherwise
+     */
+    public boolean isAnsweredFromCache()
+    {
+        return answeredFromCache;
+    }
+
+    /**
+     * Requests the given properties only instead of the default properties. Properties in the WebDAV namespace "DAV:"
+     * can also be given as plain local names via {@link #properties(String...)}.
+     *
+     * @param propertyNames
+     *            the names of the properties to request
+     * @return this action
+     */
+    public WebDavList properties(final QName... propertyNames)
+    {
+        properties = new LinkedHashSet<>();
+
+        for (final QName name : propertyNames)
+        {
+            // Sardine needs a prefix to create the property element
+            if (name.getPrefix().isEmpty())
+            {
+                final String prefix = "DAV:".equals(name.getNamespaceURI()) ? "D" : "ns" + properties.size();
+                properties.add(new QName(name.getNamespaceURI(), name.getLocalPart(), prefix));
+            }
+            else
+            {
+                properties.add(name);
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Requests the given properties from the WebDAV namespace "DAV:" only instead of the default properties, for
+     * example "getcontentlength" and "resourcetype".
+     *
+     * @param davPropertyNames
+     *            the local names of the properties to request
+     * @return this action
+     */
+    public WebDavList properties(final String... davPropertyNames)
+    {
+        final QName[] names = new QName[davPropertyNames.length];
+        for (int i = 0; i < names.length; i++)
+        {
+            names[i] = new QName("DAV:", davPropertyNames[i], "D");
+        }
+
+        return properties(names);
+    }
+
+    /**
+     * Requests the names of the properties available for each resource instead of their values. The names are reported
+     * via {@link ResourceEntry#getCustomProperties()}. Requires streaming mode (see {@link #streamTo(Consumer)}).
+     *
+     * @return this action
+     */
+    public WebDavList propertyNamesOnly()
+    {
+        propertyNamesOnly = true;
+
+        return this;
     }
 
     /**
      * Returns the result set of the list operation
      *
-     * @return a resource list
+     * @return a resource list, or <code>null</code> in streaming mode
      */
     public List<DavResource> getResources()
     {
         return resources;
     }
+
+    /**
+     * Returns the number of resources found, which is available in streaming mode as well.
+     *
+     * @return the number of resources
+     */
+    public int getResourceCount()
+    {
+        return resourceCount;
+    }
 }
@@ -0,0 +1,280 @@
+package com.xceptance.xlt.webdav.actions;
+
+import org.junit.Assert;
+
+import com.github.sardine.DavResource;
+import com.github.sardine.impl.SardineException;
+import com.xceptance.xlt.webdav.impl.AbstractWebDavAction;
+import com.xceptance.xlt.webdav.impl.GrantedLock;
+import com.xceptance.xlt.webdav.util.LockRegistry;
+import com.xceptance.xlt.webdav.util.WebDavValidationUtils;
+
+/**
+ * Locks a file or directory on a WebDAV server using the LOCK request method. By default, an exclusive write lock is
+ * taken on the resource only. Use {@link #deep()} to lock a directory including anything below it, {@link #shared()}
+ * to take a shared lock instead, and {@link #timeout(int)} to request a certain lock timeout.
+ * <p>
+ * The lock token is remembered for the current user (see {@link LockRegistry}) and submitted automatically with any
+ * subsequent request that modifies the locked resources, for instance PUT, MOVE or DELETE. Release the lock via
+ * {@link WebDavUnlock}, or keep it alive via {@link WebDavRefreshLock}. The lock is forgotten once the timeout granted by
+ * the server has passed.
+ * <p>
+ * If the resource is locked by someone else, the server answers with status code 423 (Locked) and the action fails.
+ * Use {@link #waitForLock(long, long)} to retry for a while instead, which is how clients usually compete for a lock.
+ * The number of 423 responses received and the time spent waiting are reported as custom values "&lt;timer name&gt;
+ * Lock Conflicts" and "&lt;timer name&gt; Lock Wait [ms]", so conflict rates and waiting times can be compared across
+ * test runs.
+ * <p>
+ * The resource in question can be specified either as path (relative to the WebDAV base directory as configured in
+ * {@link WebDavConnect}) or as a {@link DavResource} object, which can be obtained from the results of a
+ * {@link WebDavList} action.
+ * <p>
+ * The default action name in the test results will be "{@literal WebDavLock}". Use {@link #timerName(String)} to
+ * specify a different name.
+ */
+public class WebDavLock extends AbstractWebDavAction<WebDavLock>
+{
+    /**
+     * The status code the server answers with if the resource is locked by someone else.
+     */
+    private static final int SC_LOCKED = 423;
+
+    /**
+     * The URL of the resource to be locked.
+     */
+    private final String url;
+
+    /**
+     * Whether to lock anything below the resource as well.
+     */
+    private boolean deep;
+
+    /**
+     * Whether to take a shared lock instead of an exclusive one.
+     */
+    private boolean shared;
+
+    /**
+     * The lock timeout to request in seconds, 0 to leave it to the server.
+     */
+    private int timeout;
+
+    /**
+     * The lock owner to record, may be <code>null</code>.
+     */
+    private String owner;
+
+    /**
+     * How long to keep trying to get the lock in milliseconds, 0 to give up right away.
+     */
+    private long maxWaitTime;
+
+    /**
+     * The time to wait between two attempts in milliseconds.
+     */
+    private long retryInterval;
+
+    /**
+     * The lock acquired, <code>null</code> if none.
+     */
+    private GrantedLock grantedLock;
+
+    /**
+     * The number of attempts answered with 423 (Locked).
+     */
+    private int conflicts;
+
+    /**
+     * Creates a new action with the passed resource path.
+     *
+     * @param relativePath
+     *            the resource path relative to your WebDAV base directory
+     */
+    public WebDavLock(final String relativePath)
+    {
+        super();
+
+        url = getUrl(relativePath);
+    }
+
+    /**
+     * Action with standard action name listed in the results, based on a resource object
+     *
+     * @param davResource
+     *            the {@link DavResource} object to lock
+     */
+    public WebDavLock(final DavResource davResource)
+    {
+        super();
+
+        url = getUrl(davResource);
+    }
+
+    /**
+     * Locks anything below the resource as well (depth infinity). Only meaningful for directories.
+     *
+     * @return this action
+     */
+    public WebDavLock deep()
+    {
+        deep = true;
+
+        return this;
+    }
+
+    /**
+     * Takes a shared lock instead of an exclusive one.
+     *
+     * @return this action
+     */
+    public WebDavLock shared()
+    {
+        shared = true;
+
+        return this;
+    }
+
+    /**
+     * Sets the lock timeout to request. The server may grant a different one. By default, the timeout is left to the
+     * server.
+     *
+     * @param seconds
+     *            the lock timeout in seconds
+     * @return this action
+     */
+    public WebDavLock timeout(final int seconds)
+    {
+        timeout = seconds;
+
+        return this;
+    }
+
+    /**
+     * Sets the lock owner to record with the lock, for instance the name of the virtual user.
+     *
+     * @param owner
+     *            the lock owner
+     * @return this action
+     */
+    public WebDavLock owner(final String owner)
+    {
+        this.owner = owner;
+
+        return this;
+    }
+
+    /**
+     * Keeps trying to get the lock while the resource is locked by someone else, until the given time has elapsed.
+     *
+     * @param maxWaitTime
+     *            how long to keep trying in milliseconds
+     * @param retryInterval
+     *            the time to wait between two attempts in milliseconds
+     * @return this action
+     */
+    public WebDavLock waitForLock(final long maxWaitTime, final long retryInterval)
+    {
+        this.maxWaitTime = maxWaitTime;
+        this.retryInterval = retryInterval;
+
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void preValidate()
+    {
+        WebDavValidationUtils.validateAction(this);
+
+        Assert.assertTrue("Lock timeout must not be negative", timeout >= 0);
+        Assert.assertTrue("Retry interval must be positive", maxWaitTime == 0 || retryInterval > 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void execute() throws Exception
+    {
+        final long deadline = System.currentTimeMillis() + maxWaitTime;
+        long waitTime = 0;
+
+        while (true)
+        {
+            try
+            {
+                grantedLock = getCustomizedSardine().lock(url, deep, shared, timeout, owner);
+                break;
+            }
+            catch (final SardineException ex)
+            {
+                if (ex.getStatusCode() != SC_LOCKED)
+                {
+                    throw ex;
+                }
+
+                conflicts++;
+
+                // give up if there is no time left for another attempt
+                if (System.currentTimeMillis() + retryInterval > deadline)
+                {
+                    break;
+                }
+
+                Thread.sleep(retryInterval);
+                waitTime += retryInterval;
+            }
+        }
+
+        logCustomValue("Lock Conflicts", conflicts);
+        logCustomValue("Lock Wait [ms]", waitTime);
+
+        if (grantedLock != null)
+        {
+            getLocks().add(url, grantedLock.getToken(), deep, grantedLock.getTimeout());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void postValidate()
+    {
+        // check status code -> 200 for existing resources, 201 if an empty resource was created
+        WebDavValidationUtils.validateStatusCode(getStatusCode(), 200, 201);
+        Assert.assertNotNull("No lock token received", grantedLock);
+    }
+
+    /**
+     * Returns the token of the lock acquired.
+     *
+     * @return the lock token, or <code>null</code> if the lock could not be acquired
+     */
+    public String getLockToken()
+    {
+        return (grantedLock == null) ? null : grantedLock.getToken();
+    }
+
+    /**
+     * Returns the lock timeout granted by the server. If the server did not report it, this is the timeout requested.
+     *
+     * @return the lock timeout in seconds, -1 if the lock does not time out, or 0 if the lock could not be acquired
+     */
+    public long getGrantedTimeout()
+    {
+        return (grantedLock == null) ? 0 : grantedLock.getTimeout();
+    }
+
+    /**
+     * Returns the number of attempts answered with 423 (Locked) because the resource was locked by someone else.
+     *
+     * @return the number of conflicts
+     */
+    public int getConflicts()
+    {
+        return conflicts;
+    }
+}
@@ -0,0 +1,246 @@
+package com.xceptance.xlt.webdav.actions;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.namespace.QName;
+
+import org.junit.Assert;
+
+import com.github.sardine.DavResource;
+import com.xceptance.xlt.webdav.impl.AbstractWebDavAction;
+import com.xceptance.xlt.webdav.impl.ParallelTaskRunner;
+import com.xceptance.xlt.webdav.util.MultiStatusResult;
+import com.xceptance.xlt.webdav.util.WebDavValidationUtils;
+
+/**
+ * Sets and removes properties of files or directories on a WebDAV server using the PROPPATCH request method. All
+ * properties given via {@link #set(QName, String)} and {@link #remove(QName)} are changed with a single request per
+ * resource, which the server applies completely or not at all.
+ * <p>
+ * The resource in question can be specified either as path (relative to the WebDAV base directory as configured in
+ * {@link WebDavConnect}) or as a {@link DavResource} object, which can be obtained from the results of a
+ * {@link WebDavList} action. To change the same properties of many resources, pass all of their paths at once and
+ * configure the number of requests running in parallel via {@link #concurrency(int)}. The throughput is reported as
+ * custom value "&lt;timer name&gt; Throughput [properties/s]", counting only the resources changed successfully.
+ * Each request running in parallel needs a connection. The user's connection pool is enlarged to the concurrency if
+ * needed. If the shared connection pool is enabled instead, the action fails up front when the concurrency exceeds the
+ * pool's connections per server.
+ * <p>
+ * The server answers with a multi-status response stating the outcome per property. The response is parsed while it
+ * is being received, the failures are available via {@link #getMultiStatus()}, and the action fails if any property
+ * could not be changed. The counts are reported as custom values "&lt;timer name&gt; Multi-Status Resources" and
+ * "&lt;timer name&gt; Multi-Status Failures".
+ * <p>
+ * The default action name in the test results will be "{@literal WebDavPropPatch}". Use {@link #timerName(String)} to
+ * specify a different name.
+ */
+public class WebDavPropPatch extends AbstractWebDavAction<WebDavPropPatch>
+{
+    /**
+     * The URLs of the resources to change.
+     */
+    private final List<String> urls = new ArrayList<>();
+
+    /**
+     * The properties to set along with their values.
+     */
+    private final Map<QName, String> propertiesToSet = new LinkedHashMap<>();
+
+    /**
+     * The properties to remove.
+     */
+    private final Set<QName> propertiesToRemove = new LinkedHashSet<>();
+
+    /**
+     * The maximum number of requests running in parallel.
+     */
+    private int concurrency = 1;
+
+    /**
+     * The number of resources changed.
+     */
+    private final AtomicInteger resourcesPatched = new AtomicInteger();
+
+    /**
+     * The outcomes per resource and property.
+     */
+    private final MultiStatusResult multiStatus = new MultiStatusResult();
+
+    /**
+     * Creates a new action with the passed resource path.
+     *
+     * @param relativePath
+     *            the resource path relative to your WebDAV base directory
+     */
+    public WebDavPropPatch(final String relativePath)
+    {
+        super();
+
+        urls.add(getUrl(relativePath));
+
+        streamResponses(true);
+    }
+
+    /**
+     * Action with standard action name listed in the results, based on a resource object
+     *
+     * @param davResource
+     *            the {@link DavResource} object to change
+     */
+    public WebDavPropPatch(final DavResource davResource)
+    {
+        super();
+
+        urls.add(getUrl(davResource));
+
+        streamResponses(true);
+    }
+
+    /**
+     * Creates a new action changing the same properties of all the passed resources.
+     *
+     * @param relativePaths
+     *            the resource paths relative to your WebDAV base directory
+     */
+    public WebDavPropPatch(final Collection<String> relativePaths)
+    {
+        super();
+
+        for (final String relativePath : relativePaths)
+        {
+            urls.add(getUrl(relativePath));
+        }
+
+        streamResponses(true);
+    }
+
+    /**
+     * Sets a property to the given text value, creating it if needed.
+     *
+     * @param name
+     *            the property name
+     * @param value
+     *            the property value
+     * @return this action
+     */
+    public WebDavPropPatch set(final QName name, final String value)
+    {
+        propertiesToSet.put(name, value);
+        propertiesToRemove.remove(name);
+
+        return this;
+    }
+
+    /**
+     * Removes a property.
+     *
+     * @param name
+     *            the property name
+     * @return this action
+     */
+    public WebDavPropPatch remove(final QName name)
+    {
+        propertiesToRemove.add(name);
+        propertiesToSet.remove(name);
+
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of requests running in parallel when changing several resources. Defaults to 1, i.e. the
+     * resources are changed one after the other.
+     *
+     * @param concurrency
+     *            the maximum number of requests running in parallel
+     * @return this action
+     */
+    public WebDavPropPatch concurrency(final int concurrency)
+    {
+        this.concurrency = concurrency;
+
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void preValidate()
+    {
+        WebDavValidationUtils.validateAction(this);
+
+        Assert.assertFalse("No resources to change", urls.isEmpty());
+        Assert.assertFalse("No properties to set or remove", propertiesToSet.isEmpty() && propertiesToRemove.isEmpty());
+        Assert.assertTrue("Concurrency must be positive", concurrency > 0);
+        ensureConnections(concurrency);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void execute() throws Exception
+    {
+        final long startTime = System.currentTimeMillis();
+
+        ParallelTaskRunner.forEach(urls.iterator(), concurrency, url -> {
+            // collect the outcome of this resource on its own to know whether it has been changed at all
+            final MultiStatusResult resourceStatus = new MultiStatusResult();
+            getCustomizedSardine().propPatch(url, propertiesToSet, propertiesToRemove, resourceStatus);
+            multiStatus.addAll(resourceStatus);
+
+            if (resourceStatus.isSuccessful())
+            {
+                resourcesPatched.incrementAndGet();
+
+                // the resource exists, but any properties known are outdated now
+                updateMetadataCache(cache -> cache.modified(url));
+            }
+        });
+
+        final double elapsedSeconds = Math.max(1, System.currentTimeMillis() - startTime) / 1000.0;
+        final int propertiesPerResource = propertiesToSet.size() + propertiesToRemove.size();
+
+        logCustomValue("Throughput [properties/s]", resourcesPatched.get() * propertiesPerResource / elapsedSeconds);
+        logMultiStatus(multiStatus);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void postValidate()
+    {
+        // check status code -> 207 stating the outcome per property
+        WebDavValidationUtils.validateStatusCode(getStatusCode(), 207);
+        WebDavValidationUtils.validateMultiStatus(multiStatus);
+    }
+
+    /**
+     * Returns the number of resources changed, i.e. for which all properties were changed successfully. Check
+     * {@link #getMultiStatus()} for the outcome per property.
+     *
+     * @return the number of resources
+     */
+    public int getResourcesPatched()
+    {
+        return resourcesPatched.get();
+    }
+
+    /**
+     * Returns the outcomes per resource and property.
+     *
+     * @return the outcomes
+     */
+    public MultiStatusResult getMultiStatus()
+    {
+        return multiStatus;
+    }
+}
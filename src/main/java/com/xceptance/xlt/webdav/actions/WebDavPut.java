@@ -2,18 +2,22 @@ package com.xceptance.xlt.webdav.actions;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.InputStream;
 
+import org.apache.http.HttpEntity;
 import org.junit.Assert;
 
 import com.xceptance.xlt.webdav.impl.AbstractWebDavAction;
+import com.xceptance.xlt.webdav.impl.FileChannelEntity;
+import com.xceptance.xlt.webdav.impl.GeneratedContentEntity;
+import com.xceptance.xlt.webdav.util.GeneratedContent;
 import com.xceptance.xlt.webdav.util.WebDavValidationUtils;
 
 /**
  * Uploads a file to a WebDAV server using the PUT request method. If another resource exists at the target location, it
- * will be overwritten. The content of the file can be read from various sources.
+ * will be overwritten. The content of the file can be read from various sources or generated on the fly (see
+ * {@link GeneratedContent}).
  * <p>
  * The target location has to be given as path (relative to the WebDAV base directory as configured in
  * {@link WebDavConnect}).
@@ -35,6 +39,11 @@ public class WebDavPut extends AbstractWebDavAction<WebDavPut>
      */
     private final InputStream fileContent;
 
+    /**
+     * The entity to upload if the content has a known length.
+     */
+    private final HttpEntity entity;
+
     /**
      * Action with standard action name listed in the results, based on a path and a byte array as source
      *
@@ -49,7 +58,8 @@ public class WebDavPut extends AbstractWebDavAction<WebDavPut>
     }
 
     /**
-     * Action with standard action name listed in the results, based on a path and a input stream as source
+     * Action with standard action name listed in the results, based on a path and a file as source. The file is
+     * streamed with a known content length.
      *
      * @param relativePath
      *            the resource path relative to your WebDAV base directory
@@ -60,7 +70,21 @@ public class WebDavPut extends AbstractWebDavAction<WebDavPut>
      */
     public WebDavPut(final String relativePath, final File file) throws FileNotFoundException
     {
-        this(relativePath, new FileInputStream(file));
+        this(relativePath, createFileEntity(file));
+    }
+
+    /**
+     * Action with standard action name listed in the results, based on a path and generated content as source. The
+     * content is generated while it is being uploaded, so it does not occupy any memory.
+     *
+     * @param relativePath
+     *            the resource path relative to your WebDAV base directory
+     * @param generatedContent
+     *            the description of the content to generate and upload
+     */
+    public WebDavPut(final String relativePath, final GeneratedContent generatedContent)
+    {
+        this(relativePath, new GeneratedContentEntity(generatedContent));
     }
 
     /**
@@ -77,6 +101,43 @@ public class WebDavPut extends AbstractWebDavAction<WebDavPut>
 
         url = getUrl(relativePath);
         fileContent = inputStream;
+        entity = null;
+    }
+
+    /**
+     * Action with standard action name listed in the results, based on a path and an entity as source
+     *
+     * @param relativePath
+     *            the resource path relative to your WebDAV base directory
+     * @param entity
+     *            the entity to upload
+     */
+    public WebDavPut(final String relativePath, final HttpEntity entity)
+    {
+        super();
+
+        url = getUrl(relativePath);
+        fileContent = null;
+        this.entity = entity;
+    }
+
+    /**
+     * Creates an entity for the passed file.
+     *
+     * @param file
+     *            the file to upload
+     * @return the entity
+     * @throws FileNotFoundException
+     *             if the file could not be found
+     */
+    private static HttpEntity createFileEntity(final File file) throws FileNotFoundException
+    {
+        if (!file.isFile())
+        {
+            throw new FileNotFoundException(file.getAbsolutePath());
+        }
+
+        return new FileChannelEntity(file, null);
     }
 
     /**
@@ -88,7 +149,7 @@ public class WebDavPut extends AbstractWebDavAction<WebDavPut>
         WebDavValidationUtils.validateAction(this);
 
         // verify that data to perform upload is given
-        Assert.assertTrue("No content to perform upload", fileContent != null);
+        Assert.assertTrue("No content to perform upload", fileContent != null || entity != null);
     }
 
     /**
@@ -97,7 +158,16 @@ public class WebDavPut extends AbstractWebDavAction<WebDavPut>
     @Override
     protected void execute() throws Exception
     {
-        getSardine().put(url, fileContent);
+        if (entity != null)
+        {
+            getCustomizedSardine().put(url, entity, true);
+        }
+        else
+        {
+            getSardine().put(url, fileContent);
+        }
+
+        updateMetadataCache(cache -> cache.modified(url));
     }
 
     /**
@@ -0,0 +1,112 @@
+package com.xceptance.xlt.webdav.actions;
+
+import org.junit.Assert;
+
+import com.github.sardine.DavResource;
+import com.xceptance.xlt.webdav.impl.AbstractWebDavAction;
+import com.xceptance.xlt.webdav.util.WebDavValidationUtils;
+
+/**
+ * Refreshes a lock the current user holds on a file or directory on a WebDAV server using the LOCK request method,
+ * which resets the lock timeout. The lock must have been taken via {@link WebDavLock} before, the lock token is looked
+ * up automatically. The timeout granted by the server is recorded, so the lock is kept until it has passed again.
+ * <p>
+ * The resource in question can be specified either as path (relative to the WebDAV base directory as configured in
+ * {@link WebDavConnect}) or as a {@link DavResource} object, which can be obtained from the results of a
+ * {@link WebDavList} action. It has to be the locked resource itself, not a resource below a locked directory.
+ * <p>
+ * The default action name in the test results will be "{@literal WebDavRefreshLock}". Use {@link #timerName(String)}
+ * to specify a different name.
+ */
+public class WebDavRefreshLock extends AbstractWebDavAction<WebDavRefreshLock>
+{
+    /**
+     * The URL of the locked resource.
+     */
+    private final String url;
+
+    /**
+     * The lock timeout to request in seconds, 0 to leave it to the server.
+     */
+    private int timeout;
+
+    /**
+     * The token of the lock to refresh.
+     */
+    private String lockToken;
+
+    /**
+     * Creates a new action with the passed resource path.
+     *
+     * @param relativePath
+     *            the resource path relative to your WebDAV base directory
+     */
+    public WebDavRefreshLock(final String relativePath)
+    {
+        super();
+
+        url = getUrl(relativePath);
+    }
+
+    /**
+     * Action with standard action name listed in the results, based on a resource object
+     *
+     * @param davResource
+     *            the locked {@link DavResource} object
+     */
+    public WebDavRefreshLock(final DavResource davResource)
+    {
+        super();
+
+        url = getUrl(davResource);
+    }
+
+    /**
+     * Sets the lock timeout to request. The server may grant a different one. By default, the timeout is left to the
+     * server.
+     *
+     * @param seconds
+     *            the lock timeout in seconds
+     * @return this action
+     */
+    public WebDavRefreshLock timeout(final int seconds)
+    {
+        timeout = seconds;
+
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void preValidate()
+    {
+        WebDavValidationUtils.validateAction(this);
+
+        Assert.assertTrue("Lock timeout must not be negative", timeout >= 0);
+
+        lockToken = getLocks().getToken(url);
+        Assert.assertNotNull("Resource is not locked by the current user", lockToken);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void execute() throws Exception
+    {
+        final long grantedTimeout = getCustomizedSardine().refreshLock(url, lockToken, timeout);
+        getLocks().refreshed(url, grantedTimeout);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void postValidate()
+    {
+        // check status code -> 200
+        WebDavValidationUtils.validateStatusCode(getStatusCode(), 200);
+    }
+}
@@ -0,0 +1,250 @@
+package com.xceptance.xlt.webdav.actions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.junit.Assert;
+
+import com.github.sardine.DavResource;
+import com.github.sardine.impl.handler.ValidatingResponseHandler;
+import com.xceptance.xlt.api.util.XltException;
+import com.xceptance.xlt.webdav.impl.AbstractWebDavAction;
+import com.xceptance.xlt.webdav.impl.ParallelTaskRunner;
+import com.xceptance.xlt.webdav.util.WebDavStreamUtils;
+import com.xceptance.xlt.webdav.util.WebDavValidationUtils;
+
+/**
+ * Downloads a file from a WebDAV server in several segments using HTTP Range requests, which are fetched in parallel
+ * over separate connections. This mimics download accelerators and resumable download clients. The content is not
+ * kept.
+ * <p>
+ * If the length of the file is not known up front, it is determined with a HEAD request first. Each segment is logged
+ * as a separate request. Additionally, the aggregate throughput in bytes/s is reported as custom value
+ * "&lt;timer name&gt; Throughput [bytes/s]". Each segment is checked on its own as soon as it has been received, and
+ * the action fails with the first segment not answered with 206 (Partial Content) or not of the length requested. An
+ * empty file cannot be requested in ranges, so it is fetched with a plain GET request expecting 200 (OK) instead.
+ * <p>
+ * Segments fetched in parallel need a connection each. The user's connection pool is enlarged to the concurrency if
+ * needed. If the shared connection pool is enabled instead, the action fails up front when the concurrency exceeds the
+ * pool's connections per server, as the surplus segments would only wait for a free connection.
+ * <p>
+ * The resource in question can be specified either as path (relative to the WebDAV base directory as configured in
+ * {@link WebDavConnect}) or as a {@link DavResource} object, which can be obtained from the results of a
+ * {@link WebDavList} action.
+ * <p>
+ * The default action name in the test results will be "{@literal WebDavSegmentedGet}". Use {@link #timerName(String)}
+ * to specify a different name.
+ */
+public class WebDavSegmentedGet extends AbstractWebDavAction<WebDavSegmentedGet>
+{
+    /**
+     * The URL of the file to fetch.
+     */
+    private final String url;
+
+    /**
+     * The number of segments to split the file into.
+     */
+    private final int segments;
+
+    /**
+     * The maximum number of segments to fetch in parallel.
+     */
+    private final int concurrency;
+
+    /**
+     * The length of the file, -1 if not known yet.
+     */
+    private long contentLength;
+
+    /**
+     * The number of bytes received in total.
+     */
+    private long bytesReceived;
+
+    /**
+     * Action with standard action name listed in the results, based on a path
+     *
+     * @param relativePath
+     *            the resource path relative to your WebDAV base directory
+     * @param segments
+     *            the number of segments to split the file into
+     * @param concurrency
+     *            the maximum number of segments to fetch in parallel
+     */
+    public WebDavSegmentedGet(final String relativePath, final int segments, final int concurrency)
+    {
+        super();
+
+        url = getUrl(relativePath);
+        this.segments = segments;
+        this.concurrency = concurrency;
+        contentLength = -1;
+
+        streamResponses(true);
+    }
+
+    /**
+     * Action with standard action name listed in the results, based on a resource object
+     *
+     * @param davResource
+     *            Source DavResource object to perform this action
+     * @param segments
+     *            the number of segments to split the file into
+     * @param concurrency
+     *            the maximum number of segments to fetch in parallel
+     */
+    public WebDavSegmentedGet(final DavResource davResource, final int segments, final int concurrency)
+    {
+        super();
+
+        url = getUrl(davResource);
+        this.segments = segments;
+        this.concurrency = concurrency;
+        contentLength = (davResource.getContentLength() == null) ? -1 : davResource.getContentLength();
+
+        streamResponses(true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void preValidate()
+    {
+        WebDavValidationUtils.validateAction(this);
+
+        Assert.assertTrue("Number of segments must be positive", segments > 0);
+        Assert.assertTrue("Concurrency must be positive", concurrency > 0);
+        ensureConnections(concurrency);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void execute() throws Exception
+    {
+        if (contentLength < 0)
+        {
+            contentLength = getCustomizedSardine().getContentLength(url);
+            if (contentLength < 0)
+            {
+                throw new XltException("Unable to determine the length of " + url);
+            }
+        }
+
+        final List<Callable<Long>> tasks = new ArrayList<>();
+        if (contentLength == 0)
+        {
+            // there is nothing to split, so fetch the empty file as a whole
+            tasks.add(() -> fetch(null, 0));
+        }
+        else
+        {
+            // split the file into segments of (almost) equal size
+            final long segmentLength = Math.max(1, (contentLength + segments - 1) / segments);
+
+            for (long offset = 0; offset < contentLength; offset += segmentLength)
+            {
+                final long length = Math.min(segmentLength, contentLength - offset);
+                final String range = "bytes=" + offset + "-" + (offset + length - 1);
+
+                tasks.add(() -> fetch(range, length));
+            }
+        }
+
+        final long startTime = System.currentTimeMillis();
+
+        for (final long received : ParallelTaskRunner.run(tasks, concurrency))
+        {
+            bytesReceived += received;
+        }
+
+        final long elapsedTime = Math.max(1, System.currentTimeMillis() - startTime);
+        logCustomValue("Throughput [bytes/s]", bytesReceived * 1000.0 / elapsedTime);
+    }
+
+    /**
+     * Fetches the given range of the file and checks the response. The content is discarded while it is being received.
+     *
+     * @param range
+     *            the value of the Range header, or <code>null</code> to fetch the whole file
+     * @param length
+     *            the expected number of bytes
+     * @return the number of bytes received
+     * @throws IOException
+     *             if anything goes wrong
+     */
+    private long fetch(final String range, final long length) throws IOException
+    {
+        final HttpGet get = new HttpGet(url);
+        if (range != null)
+        {
+            for (final Map.Entry<String, String> header : WebDavGet.createRangeHeaders(range).entrySet())
+            {
+                get.addHeader(header.getKey(), header.getValue());
+            }
+        }
+
+        return getCustomizedSardine().execute(get, new ValidatingResponseHandler<Long>()
+        {
+            @Override
+            public Long handleResponse(final HttpResponse response) throws IOException
+            {
+                validateResponse(response);
+
+                // the status of the action is shared by all segments, so check the segment's own status
+                WebDavValidationUtils.validateStatusCode(response.getStatusLine().getStatusCode(), (range == null) ? 200 : 206);
+
+                try (final InputStream is = response.getEntity().getContent())
+                {
+                    final long received = WebDavStreamUtils.drain(is, null);
+                    Assert.assertEquals("Unexpected number of bytes received for " + ((range == null) ? url : range), length,
+                                        received);
+
+                    return received;
+                }
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void postValidate()
+    {
+        // check status code -> 206 (or 200 for an empty file, which is fetched as a whole), each segment has been checked
+        // on its own already
+        WebDavValidationUtils.validateStatusCode(getStatusCode(), (contentLength == 0) ? 200 : 206);
+
+        Assert.assertEquals("Unexpected number of bytes received", contentLength, bytesReceived);
+    }
+
+    /**
+     * Returns the length of the file.
+     *
+     * @return the length in bytes, -1 if not known yet
+     */
+    public long getContentLength()
+    {
+        return contentLength;
+    }
+
+    /**
+     * Returns the number of bytes received in total.
+     *
+     * @return the number of bytes
+     */
+    public long getBytesReceived()
+    {
+        return bytesReceived;
+    }
+}
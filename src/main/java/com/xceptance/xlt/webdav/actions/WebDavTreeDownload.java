@@ -0,0 +1,589 @@
+package com.xceptance.xlt.webdav.actions;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.junit.Assert;
+
+import com.github.sardine.DavResource;
+import com.github.sardine.impl.SardineException;
+import com.github.sardine.impl.handler.ValidatingResponseHandler;
+import com.xceptance.xlt.webdav.impl.AbstractWebDavAction;
+import com.xceptance.xlt.webdav.impl.ParallelTaskRunner;
+import com.xceptance.xlt.webdav.util.ResourceEntry;
+import com.xceptance.xlt.webdav.util.WebDavStreamUtils;
+import com.xceptance.xlt.webdav.util.WebDavValidationUtils;
+
+/**
+ * Downloads all files below a directory on a WebDAV server, using several connections in parallel. This mimics sync
+ * clients pulling whole folders. The content is discarded unless a local target directory is given via
+ * {@link #toDirectory(File)}, in which case the tree is mirrored there. Files that would end up outside the target
+ * directory, for instance because of ".." segments in their paths, are rejected and fail the action.
+ * <p>
+ * The tree is walked with PROPFIND requests of depth 1, one per directory, or with a single PROPFIND request of depth
+ * infinity if enabled via {@link #infiniteDepth()}. If the server refuses depth infinity with 403 (Forbidden), the walk
+ * falls back to depth 1. Directories are listed by the same workers that download the files, as soon as fewer files
+ * are pending than there are workers, so the walk stays a little ahead of the downloads without getting far ahead, and
+ * no worker is blocked while another one lists a directory. Responses are streamed, so neither listings nor files are
+ * held in memory as a whole. At most {@value #MAX_PENDING_FILES} files found are kept waiting for download, a listing
+ * is paused while that many are pending. To keep the files moving, one worker is always left for downloads, so with a
+ * concurrency of 1 there is no such limit and a listing of depth infinity collects the whole tree before the first
+ * download. Each request is logged separately. Additionally, the throughput is reported as custom values
+ * "&lt;timer name&gt; Throughput [files/s]" and "&lt;timer name&gt; Throughput [MB/s]".
+ * <p>
+ * Each file downloaded in parallel needs a connection. The user's connection pool is enlarged to the concurrency if
+ * needed. If the shared connection pool is enabled instead, the action fails up front when the concurrency exceeds the
+ * pool's connections per server.
+ * <p>
+ * The directory in question can be specified either as path (relative to the WebDAV base directory as configured in
+ * {@link WebDavConnect}) or as a {@link DavResource} object, which can be obtained from the results of a
+ * {@link WebDavList} action.
+ * <p>
+ * The default action name in the test results will be "{@literal WebDavTreeDownload}". Use {@link #timerName(String)}
+ * to specify a different name.
+ */
+public class WebDavTreeDownload extends AbstractWebDavAction<WebDavTreeDownload>
+{
+    /**
+     * The maximum number of files found, but not yet taken by a worker, before listing is paused.
+     */
+    private static final int MAX_PENDING_FILES = 10000;
+
+    /**
+     * The URL of the directory to download.
+     */
+    private final String url;
+
+    /**
+     * The maximum number of files downloaded in parallel.
+     */
+    private final int concurrency;
+
+    /**
+     * The local directory to mirror the tree to, <code>null</code> to discard the content.
+     */
+    private File targetDirectory;
+
+    /**
+     * Whether to list the whole tree with a single request of depth infinity.
+     */
+    private volatile boolean infiniteDepth;
+
+    /**
+     * The canonical form of the local target directory, <code>null</code> to discard the content.
+     */
+    private File canonicalTargetDirectory;
+
+    /**
+     * The decoded path of the directory to download, without trailing slash.
+     */
+    private String rootPath;
+
+    /**
+     * The number of directories listed.
+     */
+    private final AtomicLong directoriesListed = new AtomicLong();
+
+    /**
+     * The number of files downloaded.
+     */
+    private final AtomicLong filesDownloaded = new AtomicLong();
+
+    /**
+     * The number of bytes downloaded.
+     */
+    private final AtomicLong bytesDownloaded = new AtomicLong();
+
+    /**
+     * Action with standard action name listed in the results, based on a path
+     *
+     * @param relativePath
+     *            the directory path relative to your WebDAV base directory
+     * @param concurrency
+     *            the maximum number of files downloaded in parallel
+     */
+    public WebDavTreeDownload(final String relativePath, final int concurrency)
+    {
+        super();
+
+        url = getUrl(relativePath);
+        this.concurrency = concurrency;
+
+        streamResponses(true);
+    }
+
+    /**
+     * Action with standard action name listed in the results, based on a resource object
+     *
+     * @param davResource
+     *            Source DavResource object to perform this action
+     * @param concurrency
+     *            the maximum number of files downloaded in parallel
+     */
+    public WebDavTreeDownload(final DavResource davResource, final int concurrency)
+    {
+        super();
+
+        url = getUrl(davResource);
+        this.concurrency = concurrency;
+
+        streamResponses(true);
+    }
+
+    /**
+     * Stores the files downloaded in the given local directory, keeping their relative paths.
+     *
+     * @param directory
+     *            the local directory
+     * @return this action
+     */
+    public WebDavTreeDownload toDirectory(final File directory)
+    {
+        targetDirectory = directory;
+
+        return this;
+    }
+
+    /**
+     * Lists the whole tree with a single PROPFIND request of depth infinity instead of one request per directory. Note
+     * that many servers forbid this.
+     *
+     * @return this action
+     */
+    public WebDavTreeDownload infiniteDepth()
+    {
+        infiniteDepth = true;
+
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void preValidate()
+    {
+        WebDavValidationUtils.validateAction(this);
+
+        Assert.assertTrue("Concurrency must be positive", concurrency > 0);
+        ensureConnections(concurrency);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void execute() throws Exception
+    {
+        rootPath = StringUtils.removeEnd(URI.create(url).getPath(), "/");
+        canonicalTargetDirectory = (targetDirectory == null) ? null : targetDirectory.getCanonicalFile();
+
+        final long startTime = System.currentTimeMillis();
+
+        final TreeWalker treeWalker = new TreeWalker();
+        ParallelTaskRunner.forEach(treeWalker, concurrency, treeWalker::process);
+
+        final double elapsedSeconds = Math.max(1, System.currentTimeMillis() - startTime) / 1000.0;
+        logCustomValue("Throughput [files/s]", filesDownloaded.get() / elapsedSeconds);
+        logCustomValue("Throughput [MB/s]", bytesDownloaded.get() / 1000000.0 / elapsedSeconds);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void postValidate()
+    {
+        // nothing left to check, the status code of each download has been checked right away and each listing has
+        // been parsed as multi-status response
+    }
+
+    /**
+     * Downloads a file.
+     *
+     * @param file
+     *            the file to download
+     * @throws IOException
+     *             if anything goes wrong
+     */
+    private void download(final ResourceEntry file) throws IOException
+    {
+        final File localFile = (targetDirectory == null) ? null : getLocalFile(file);
+
+        final ValidatingResponseHandler<Long> handler = new ValidatingResponseHandler<Long>()
+        {
+            @Override
+            public Long handleResponse(final HttpResponse response) throws IOException
+            {
+                validateResponse(response);
+
+                return readContent(response, localFile);
+            }
+        };
+
+        final long bytes = getCustomizedSardine().execute(new HttpGet(getAbsoluteUrl(file.getPath())), handler);
+
+        filesDownloaded.incrementAndGet();
+        bytesDownloaded.addAndGet(bytes);
+    }
+
+    /**
+     * Checks the status of the given download response and reads its content, storing it in the given local file if
+     * any. The status of the action is shared by all downloads and listings, so each download is checked on its own.
+     *
+     * @param response
+     *            the response
+     * @param localFile
+     *            the local file to store the content in, <code>null</code> to discard it
+     * @return the number of bytes read
+     * @throws IOException
+     *             if anything goes wrong
+     */
+    private static long readContent(final HttpResponse response, final File localFile) throws IOException
+    {
+        // check status code -> 200
+        WebDavValidationUtils.validateStatusCode(response.getStatusLine().getStatusCode(), 200);
+
+        try (final InputStream is = response.getEntity().getContent())
+        {
+            if (localFile == null)
+            {
+                return WebDavStreamUtils.drain(is, null);
+            }
+
+            localFile.getParentFile().mkdirs();
+
+            try (final OutputStream os = new FileOutputStream(localFile))
+            {
+                return WebDavStreamUtils.copy(is, os);
+            }
+        }
+    }
+
+    /**
+     * Returns the local file to store the given file in, i.e. the path of the file relative to the directory downloaded
+     * resolved against the target directory.
+     *
+     * @param file
+     *            the file
+     * @return the local file
+     * @throws IOException
+     *             if the local file would not be located below the target directory
+     */
+    private File getLocalFile(final ResourceEntry file) throws IOException
+    {
+        final String path = file.getPath();
+        final String relativePath = path.startsWith(rootPath + "/") ? path.substring(rootPath.length() + 1)
+                                                                    : file.getName();
+
+        // do not let the server write anywhere else, e.g. via ".." segments or unexpected hrefs
+        final File localFile = new File(canonicalTargetDirectory, relativePath).getCanonicalFile();
+        if (!localFile.getPath().startsWith(canonicalTargetDirectory.getPath() + File.separator))
+        {
+            throw new IOException("Refusing to store '" + path + "' outside of the target directory as '" + localFile +
+                                  "'");
+        }
+
+        return localFile;
+    }
+
+    /**
+     * Returns the number of directories listed.
+     *
+     * @return the number of directories
+     */
+    public long getDirectoriesListed()
+    {
+        return directoriesListed.get();
+    }
+
+    /**
+     * Returns the number of files downloaded.
+     *
+     * @return the number of files
+     */
+    public long getFilesDownloaded()
+    {
+        return filesDownloaded.get();
+    }
+
+    /**
+     * Returns the number of bytes downloaded.
+     *
+     * @return the number of bytes
+     */
+    public long getBytesDownloaded()
+    {
+        return bytesDownloaded.get();
+    }
+
+    /**
+     * Walks the tree and delivers the files found as well as the directories to list next. The workers take the items
+     * one at a time and {@link #process(ResourceEntry) process} them in parallel, so a directory is listed by a worker
+     * without blocking the others. A directory is handed out only when fewer files are pending than there are workers,
+     * or when no files are pending at all, and only as long as another worker is left to download the files. Listing
+     * is paused while {@link #MAX_PENDING_FILES} files are pending.
+     */
+    private class TreeWalker implements Iterator<ResourceEntry>
+    {
+        /**
+         * The directories still to be listed.
+         */
+        private final Deque<ResourceEntry> pendingDirectories = new ArrayDeque<>();
+
+        /**
+         * The files found, but not yet taken.
+         */
+        private final Deque<ResourceEntry> pendingFiles = new ArrayDeque<>();
+
+        /**
+         * The number of directories being listed right now.
+         */
+        private int listingsInProgress;
+
+        /**
+         * The maximum number of directories listed at the same time, so at least one worker downloads files while the
+         * others wait for the pending files to drain.
+         */
+        private final int maxListings = Math.max(1, concurrency - 1);
+
+        /**
+         * Guards the pending items, as the results of a listing are added by the listing worker.
+         */
+        private final Lock lock = new ReentrantLock();
+
+        /**
+         * Signaled when items were added or taken or a listing has finished.
+         */
+        private final Condition changed = lock.newCondition();
+
+        /**
+         * Creates a new {@link TreeWalker} object starting at the root directory.
+         */
+        TreeWalker()
+        {
+            pendingDirectories.add(new ResourceEntry(rootPath, -1, true, -1, -1, -1, null, null, null, null));
+        }
+
+        /**
+         * {@inheritDoc}
+         * <p>
+         * Waits for the directories being listed if nothing is pending right now.
+         */
+        @Override
+        public boolean hasNext()
+        {
+            lock.lock();
+            try
+            {
+                while (!hasItemAvailable() && listingsInProgress > 0)
+                {
+                    changed.awaitUninterruptibly();
+                }
+
+                return hasItemAvailable();
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public ResourceEntry next()
+        {
+            if (!hasNext())
+            {
+                throw new NoSuchElementException();
+            }
+
+            lock.lock();
+            try
+            {
+                // prefetch the next directory before the workers run out of files
+                if (pendingFiles.size() < concurrency && canStartListing())
+                {
+                    listingsInProgress++;
+
+                    return pendingDirectories.poll();
+                }
+
+                // a listing may wait for room
+                changed.signalAll();
+
+                return pendingFiles.poll();
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Returns whether a file or a directory can be taken right now. Must be called with the lock held.
+         *
+         * @return whether an item is available
+         */
+        private boolean hasItemAvailable()
+        {
+            return !pendingFiles.isEmpty() || canStartListing();
+        }
+
+        /**
+         * Returns whether a pending directory can be listed right now. Must be called with the lock held.
+         *
+         * @return whether a directory can be listed
+         */
+        private boolean canStartListing()
+        {
+            return !pendingDirectories.isEmpty() && listingsInProgress < maxListings;
+        }
+
+        /**
+         * Processes an item taken from this walker, i.e. lists a directory or downloads a file.
+         *
+         * @param entry
+         *            the directory or file
+         * @throws IOException
+         *             if anything goes wrong
+         */
+        void process(final ResourceEntry entry) throws IOException
+        {
+            if (!entry.isDirectory())
+            {
+                download(entry);
+                return;
+            }
+
+            try
+            {
+                listDirectory(StringUtils.removeEnd(entry.getPath(), "/"));
+            }
+            finally
+            {
+                lock.lock();
+                try
+                {
+                    listingsInProgress--;
+                    changed.signalAll();
+                }
+                finally
+                {
+                    lock.unlock();
+                }
+            }
+        }
+
+        /**
+         * Lists the given directory and remembers the files and sub directories found. Falls back to depth 1 if the
+         * server refuses to list the tree with depth infinity.
+         *
+         * @param directoryPath
+         *            the decoded path of the directory
+         * @throws IOException
+         *             if anything goes wrong
+         */
+        private void listDirectory(final String directoryPath) throws IOException
+        {
+            if (infiniteDepth)
+            {
+                try
+                {
+                    listDirectory(directoryPath, -1);
+                    return;
+                }
+                catch (final SardineException ex)
+                {
+                    // a 403 means that the server does not support depth infinity (propfind-finite-depth)
+                    if (ex.getStatusCode() != 403)
+                    {
+                        throw ex;
+                    }
+
+                    infiniteDepth = false;
+                }
+            }
+
+            listDirectory(directoryPath, 1);
+        }
+
+        /**
+         * Lists the given directory with the given depth and remembers the files and sub directories found.
+         *
+         * @param directoryPath
+         *            the decoded path of the directory
+         * @param depth
+         *            the depth, -1 for infinity
+         * @throws IOException
+         *             if anything goes wrong
+         */
+        private void listDirectory(final String directoryPath, final int depth) throws IOException
+        {
+            try
+            {
+                getCustomizedSardine().list(getAbsoluteUrl(directoryPath + "/"), depth, entry -> {
+                    lock.lock();
+                    try
+                    {
+                        if (entry.isDirectory())
+                        {
+                            // the listing includes the directory itself
+                            if (depth == 1 && !StringUtils.removeEnd(entry.getPath(), "/").equals(directoryPath))
+                            {
+                                pendingDirectories.add(entry);
+                            }
+                        }
+                        else
+                        {
+                            // pause until the downloads catch up, a failure elsewhere interrupts the wait
+                            while (pendingFiles.size() >= MAX_PENDING_FILES && listingsInProgress < concurrency)
+                            {
+                                changed.await();
+                            }
+
+                            pendingFiles.add(entry);
+                        }
+
+                        changed.signalAll();
+                    }
+                    catch (final InterruptedException ex)
+                    {
+                        Thread.currentThread().interrupt();
+                        throw new UncheckedIOException(new InterruptedIOException("Interrupted while paused"));
+                    }
+                    finally
+                    {
+                        lock.unlock();
+                    }
+                });
+            }
+            catch (final UncheckedIOException ex)
+            {
+                // interrupted while the listing was paused
+                throw ex.getCause();
+            }
+
+            directoriesListed.incrementAndGet();
+        }
+    }
+}
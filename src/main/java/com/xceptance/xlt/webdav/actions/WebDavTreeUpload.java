@@ -0,0 +1,363 @@
+package com.xceptance.xlt.webdav.actions;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
+import org.junit.Assert;
+
+import com.xceptance.xlt.webdav.impl.AbstractWebDavAction;
+import com.xceptance.xlt.webdav.impl.FileChannelEntity;
+import com.xceptance.xlt.webdav.impl.GeneratedContentEntity;
+import com.xceptance.xlt.webdav.impl.ParallelTaskRunner;
+import com.xceptance.xlt.webdav.util.GeneratedTree;
+import com.xceptance.xlt.webdav.util.WebDavValidationUtils;
+
+/**
+ * Uploads a whole directory tree to a WebDAV server, using several connections in parallel. Use this action to populate
+ * a server with large test data sets. The tree to upload is either a local directory or a {@link GeneratedTree}, whose
+ * files are generated on the fly.
+ * <p>
+ * First, all directories are created level by level, so parents always exist before their children. Directories that
+ * exist already are reused. Then all files are uploaded. Files are read (or generated) only when a worker is ready to
+ * upload them, so even trees with millions of files do not need much memory. Each request is logged separately.
+ * Additionally, the throughput is reported as custom values "&lt;timer name&gt; Throughput [files/s]" and
+ * "&lt;timer name&gt; Throughput [MB/s]".
+ * <p>
+ * Each request running in parallel needs a connection. The user's connection pool is enlarged to the concurrency if
+ * needed. If the shared connection pool is enabled instead, the action fails up front when the concurrency exceeds the
+ * pool's connections per server.
+ * <p>
+ * The target directory is specified as path relative to the WebDAV base directory as configured in
+ * {@link WebDavConnect}. It is created if it does not exist yet.
+ * <p>
+ * The default action name in the test results will be "{@literal WebDavTreeUpload}". Use {@link #timerName(String)} to
+ * specify a different name.
+ */
+public class WebDavTreeUpload extends AbstractWebDavAction<WebDavTreeUpload>
+{
+    /**
+     * The target directory path relative to the WebDAV base directory, ending with a slash unless empty.
+     */
+    private final String targetPath;
+
+    /**
+     * The local directory to upload, <code>null</code> if a generated tree is uploaded.
+     */
+    private final File localDirectory;
+
+    /**
+     * The generated tree to upload, <code>null</code> if a local directory is uploaded.
+     */
+    private final GeneratedTree generatedTree;
+
+    /**
+     * The maximum number of requests running in parallel.
+     */
+    private final int concurrency;
+
+    /**
+     * The number of directories created.
+     */
+    private final AtomicLong directoriesCreated = new AtomicLong();
+
+    /**
+     * The number of files uploaded.
+     */
+    private final AtomicLong filesUploaded = new AtomicLong();
+
+    /**
+     * The number of bytes uploaded.
+     */
+    private final AtomicLong bytesUploaded = new AtomicLong();
+
+    /**
+     * Action with standard action name listed in the results, uploading a local directory
+     *
+     * @param relativeTargetPath
+     *            the target directory path relative to your WebDAV base directory
+     * @param localDirectory
+     *            the local directory whose content is to be uploaded
+     * @param concurrency
+     *            the maximum number of requests running in parallel
+     */
+    public WebDavTreeUpload(final String relativeTargetPath, final File localDirectory, final int concurrency)
+    {
+        this(relativeTargetPath, localDirectory, null, concurrency);
+    }
+
+    /**
+     * Action with standard action name listed in the results, uploading a generated tree
+     *
+     * @param relativeTargetPath
+     *            the target directory path relative to your WebDAV base directory
+     * @param generatedTree
+     *            the description of the tree to generate
+     * @param concurrency
+     *            the maximum number of requests running in parallel
+     */
+    public WebDavTreeUpload(final String relativeTargetPath, final GeneratedTree generatedTree, final int concurrency)
+    {
+        this(relativeTargetPath, null, generatedTree, concurrency);
+    }
+
+    /**
+     * Common constructor.
+     *
+     * @param relativeTargetPath
+     *            the target directory path relative to your WebDAV base directory
+     * @param localDirectory
+     *            the local directory to upload, or <code>null</code>
+     * @param generatedTree
+     *            the generated tree to upload, or <code>null</code>
+     * @param concurrency
+     *            the maximum number of requests running in parallel
+     */
+    private WebDavTreeUpload(final String relativeTargetPath, final File localDirectory, final GeneratedTree generatedTree,
+                             final int concurrency)
+    {
+        super();
+
+        final String path = StringUtils.strip(StringUtils.defaultString(relativeTargetPath), "/");
+        targetPath = path.isEmpty() ? "" : path + "/";
+
+        this.localDirectory = localDirectory;
+        this.generatedTree = generatedTree;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void preValidate()
+    {
+        WebDavValidationUtils.validateAction(this);
+
+        Assert.assertTrue("Concurrency must be positive", concurrency > 0);
+        ensureConnections(concurrency);
+        if (generatedTree == null)
+        {
+            Assert.assertTrue("Local directory does not exist: " + localDirectory,
+                              localDirectory != null && localDirectory.isDirectory());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void execute() throws Exception
+    {
+        final long startTime = System.currentTimeMillis();
+
+        // the target directory itself
+        if (!targetPath.isEmpty())
+        {
+            createDirectory("");
+        }
+
+        // all directories, level by level
+        final List<String> directories = (generatedTree == null) ? listLocalDirectories() : generatedTree.getDirectories();
+        for (final List<String> level : groupByLevel(directories))
+        {
+            ParallelTaskRunner.forEach(level.iterator(), concurrency, this::createDirectory);
+        }
+
+        // all files
+        if (generatedTree == null)
+        {
+            try (final Stream<Path> files = Files.walk(localDirectory.toPath()))
+            {
+                final Iterator<String> paths = files.filter(Files::isRegularFile).map(this::toRelativePath).iterator();
+                ParallelTaskRunner.forEach(paths, concurrency, this::uploadFile);
+            }
+        }
+        else
+        {
+            ParallelTaskRunner.forEach(generatedTree.files(), concurrency, this::uploadFile);
+        }
+
+        final double elapsedSeconds = Math.max(1, System.currentTimeMillis() - startTime) / 1000.0;
+        logCustomValue("Throughput [files/s]", filesUploaded.get() / elapsedSeconds);
+        logCustomValue("Throughput [MB/s]", bytesUploaded.get() / 1000000.0 / elapsedSeconds);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void postValidate()
+    {
+        // nothing left to check, the status code of each upload has been checked right away
+    }
+
+    /**
+     * Creates a directory unless it exists already.
+     *
+     * @param relativePath
+     *            the directory path relative to the target directory, empty for the target directory itself
+     * @throws IOException
+     *             if anything goes wrong
+     */
+    private void createDirectory(final String relativePath) throws IOException
+    {
+        try
+        {
+            final String url = getUrl(targetPath + relativePath);
+
+            getSardine().createDirectory(url);
+            directoriesCreated.incrementAndGet();
+
+            updateMetadataCache(cache -> cache.modified(url));
+        }
+        catch (final HttpResponseException ex)
+        {
+            // 405 means the collection exists already
+            if (ex.getStatusCode() != HttpStatus.SC_METHOD_NOT_ALLOWED)
+            {
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Uploads a file.
+     *
+     * @param relativePath
+     *            the file path relative to the target directory
+     * @throws IOException
+     *             if anything goes wrong
+     */
+    private void uploadFile(final String relativePath) throws IOException
+    {
+        final HttpEntity entity;
+        if (generatedTree == null)
+        {
+            entity = new FileChannelEntity(new File(localDirectory, relativePath), null);
+        }
+        else
+        {
+            entity = new GeneratedContentEntity(generatedTree.createContent());
+        }
+
+        // do not wait for a 100-continue for each of the many usually small files
+        final String url = getUrl(targetPath + relativePath);
+        final int statusCode = getCustomizedSardine().put(url, entity, false);
+
+        // the status of the action is shared by all uploads, so check the upload's own status -> 201 (or 204 if the
+        // file existed already)
+        WebDavValidationUtils.validateStatusCode(statusCode, 201, 204);
+
+        updateMetadataCache(cache -> cache.modified(url));
+
+        filesUploaded.incrementAndGet();
+        bytesUploaded.addAndGet(entity.getContentLength());
+    }
+
+    /**
+     * Returns the paths of all directories below the local directory, relative to it and ending with a slash.
+     *
+     * @return the directory paths
+     * @throws IOException
+     *             if the directory cannot be read
+     */
+    private List<String> listLocalDirectories() throws IOException
+    {
+        final Path root = localDirectory.toPath();
+
+        try (final Stream<Path> directories = Files.walk(root))
+        {
+            return directories.filter(p -> !p.equals(root) && Files.isDirectory(p)).map(p -> toRelativePath(p) + "/")
+                              .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Returns the path of the given local file relative to the local directory, using slashes as separator.
+     *
+     * @param path
+     *            the local file
+     * @return the relative path
+     */
+    private String toRelativePath(final Path path)
+    {
+        final StringBuilder sb = new StringBuilder();
+        for (final Path segment : localDirectory.toPath().relativize(path))
+        {
+            if (sb.length() > 0)
+            {
+                sb.append('/');
+            }
+            sb.append(segment.toString());
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Groups the given directory paths by their depth.
+     *
+     * @param directories
+     *            the directory paths, each ending with a slash
+     * @return the directory paths per level, starting with the top-most level
+     */
+    private static List<List<String>> groupByLevel(final List<String> directories)
+    {
+        final List<List<String>> levels = new ArrayList<>();
+
+        for (final String directory : directories)
+        {
+            final int level = StringUtils.countMatches(directory, '/') - 1;
+            while (levels.size() <= level)
+            {
+                levels.add(new ArrayList<String>());
+            }
+
+            levels.get(level).add(directory);
+        }
+
+        return levels;
+    }
+
+    /**
+     * Returns the number of directories created. Directories that existed already are not counted.
+     *
+     * @return the number of directories
+     */
+    public long getDirectoriesCreated()
+    {
+        return directoriesCreated.get();
+    }
+
+    /**
+     * Returns the number of files uploaded.
+     *
+     * @return the number of files
+     */
+    public long getFilesUploaded()
+    {
+        return filesUploaded.get();
+    }
+
+    /**
+     * Returns the number of bytes uploaded.
+     *
+     * @return the number of bytes
+     */
+    public long getBytesUploaded()
+    {
+        return bytesUploaded.get();
+    }
+}
@@ -0,0 +1,97 @@
+package com.xceptance.xlt.webdav.actions;
+
+import org.junit.Assert;
+
+import com.github.sardine.DavResource;
+import com.xceptance.xlt.webdav.impl.AbstractWebDavAction;
+import com.xceptance.xlt.webdav.util.WebDavValidationUtils;
+
+/**
+ * Releases a lock the current user holds on a file or directory on a WebDAV server using the UNLOCK request method.
+ * The lock must have been taken via {@link WebDavLock} before, the lock token is looked up automatically. Once
+ * released, the token is no longer submitted with subsequent requests.
+ * <p>
+ * The resource in question can be specified either as path (relative to the WebDAV base directory as configured in
+ * {@link WebDavConnect}) or as a {@link DavResource} object, which can be obtained from the results of a
+ * {@link WebDavList} action. It has to be the locked resource itself, not a resource below a locked directory.
+ * <p>
+ * The default action name in the test results will be "{@literal WebDavUnlock}". Use {@link #timerName(String)} to
+ * specify a different name.
+ */
+public class WebDavUnlock extends AbstractWebDavAction<WebDavUnlock>
+{
+    /**
+     * The URL of the locked resource.
+     */
+    private final String url;
+
+    /**
+     * The token of the lock to release.
+     */
+    private String lockToken;
+
+    /**
+     * Creates a new action with the passed resource path.
+     *
+     * @param relativePath
+     *            the resource path relative to your WebDAV base directory
+     */
+    public WebDavUnlock(final String relativePath)
+    {
+        super();
+
+        url = getUrl(relativePath);
+    }
+
+    /**
+     * Action with standard action name listed in the results, based on a resource object
+     *
+     * @param davResource
+     *            the locked {@link DavResource} object
+     */
+    public WebDavUnlock(final DavResource davResource)
+    {
+        super();
+
+        url = getUrl(davResource);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void preValidate()
+    {
+        WebDavValidationUtils.validateAction(this);
+
+        lockToken = getLocks().getToken(url);
+        Assert.assertNotNull("Resource is not locked by the current user", lockToken);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void execute() throws Exception
+    {
+        try
+        {
+            getSardine().unlock(url, lockToken);
+        }
+        finally
+        {
+            // the lock is gone anyway if the server does not know it anymore, so do not submit it again
+            getLocks().remove(url);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void postValidate()
+    {
+        // check status code -> 204
+        WebDavValidationUtils.validateStatusCode(getStatusCode(), 204);
+    }
+}
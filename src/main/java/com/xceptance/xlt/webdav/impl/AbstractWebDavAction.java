@@ -1,17 +1,18 @@
 package com.xceptance.xlt.webdav.impl;
 
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.net.URL;
+import java.util.function.Consumer;
 
-import org.apache.commons.lang3.StringUtils;
+import org.junit.Assert;
 
 import com.github.sardine.DavResource;
 import com.github.sardine.Sardine;
 import com.xceptance.xlt.api.actions.AbstractAction;
+import com.xceptance.xlt.api.engine.CustomValue;
 import com.xceptance.xlt.api.util.XltProperties;
+import com.xceptance.xlt.webdav.util.LockRegistry;
+import com.xceptance.xlt.webdav.util.MetadataCache;
+import com.xceptance.xlt.webdav.util.MultiStatusResult;
 import com.xceptance.xlt.webdav.util.WebDavContext;
 
 /**
@@ -22,29 +23,14 @@ import com.xceptance.xlt.webdav.util.WebDavContext;
 public abstract class AbstractWebDavAction<T> extends AbstractAction
 {
     /**
-     * The underlying Sardine client that does all the magic.
+     * The property that controls whether response content is streamed instead of being read into memory completely.
      */
-    private Sardine sardine;
+    public static final String PROP_STREAM_RESPONSES = "com.xceptance.xlt.webdav.streamResponses";
 
     /**
-     * The user name to use if the server requires authentication.
+     * The WebDAV connection of the current user, which owns the underlying Sardine client that does all the magic.
      */
-    private String userName;
-
-    /**
-     * The password to use if the server requires authentication.
-     */
-    private String userPassword;
-
-    /**
-     * Related host name to perform actions
-     */
-    private String hostName;
-
-    /**
-     * Related webdav directory relative to host name
-     */
-    private String webDavPath;
+    private final WebDavContext context;
 
     /**
      * The exception that was thrown on the network layer.
@@ -62,9 +48,15 @@ public abstract class AbstractWebDavAction<T> extends AbstractAction
     private String responseContentType;
 
     /**
-     * Previous performed action
+     * Whether successful responses are handed through unbuffered.
+     */
+    private boolean streamResponses = XltProperties.getInstance().getProperty(PROP_STREAM_RESPONSES, false);
+
+    /**
+     * The action performed before this one, <code>null</code> if none. Only a single link is kept, i.e. the reference
+     * of the previous action to its own predecessor is dropped, so the actions performed do not pile up in memory.
      */
-    private AbstractWebDavAction<?> previousWebDavAction;
+    private volatile AbstractWebDavAction<?> previousAction;
 
     /**
      * Initial setup method for first connect to consume the basics datapoints
@@ -73,25 +65,8 @@ public abstract class AbstractWebDavAction<T> extends AbstractAction
     {
         super(null, null);
 
-        this.hostName = hostName;
-        this.webDavPath = webDavPath;
-        this.userName = userName;
-        this.userPassword = userPassword;
-
-        // Creates configured sardine client
-        sardine = new CustomizedSardineImpl();
-        sardine.setCredentials(userName, userPassword);
-
-        // ok, let us see if gzip is desired
-        if (XltProperties.getInstance().getProperty("com.xceptance.xlt.http.gzip", true))
-        {
-            sardine.enableCompression();
-        }
-        else
-        {
-            sardine.disableCompression();
-        }
-
+        // open a new connection for the current user, any previous connection is closed, so there is no predecessor
+        context = WebDavContext.open(hostName, webDavPath, userName, userPassword);
         WebDavContext.setActiveAction(this);
     }
 
@@ -111,19 +86,19 @@ public abstract class AbstractWebDavAction<T> extends AbstractAction
      */
     public AbstractWebDavAction(final String timerName)
     {
-        super(WebDavContext.getActiveAction(), timerName);
+        // actions share the connection of the current user instead of passing it on from one action to the next
+        super(null, timerName);
 
-        // get previously performed action if any
-        previousWebDavAction = WebDavContext.getActiveAction();
+        context = WebDavContext.getCurrent();
+        if (context == null)
+        {
+            throw new IllegalStateException("No WebDAV connection open for the current user, run WebDavConnect first");
+        }
 
-        // Assume information from previous action
-        if (previousWebDavAction != null)
+        previousAction = WebDavContext.getActiveAction();
+        if (previousAction != null)
         {
-            sardine = previousWebDavAction.getSardine();
-            userName = previousWebDavAction.getUserName();
-            userPassword = previousWebDavAction.getUserPassword();
-            hostName = previousWebDavAction.getHostName();
-            webDavPath = previousWebDavAction.getWebDavPath();
+            previousAction.previousAction = null;
         }
 
         WebDavContext.setActiveAction(this);
@@ -145,12 +120,104 @@ public abstract class AbstractWebDavAction<T> extends AbstractAction
     }
 
     /**
-     * @return Previously performed action
+     * Sets whether the content of successful responses is streamed instead of being read into memory completely before
+     * it is handed over. When streaming, the request details are logged as soon as the content has been read to the end
+     * or closed. Defaults to the value of the property "{@value #PROP_STREAM_RESPONSES}" (<code>false</code> if not
+     * set).
+     *
+     * @param streamResponses
+     *            whether to stream response content
+     * @return this action
+     */
+    @SuppressWarnings("unchecked")
+    public T streamResponses(final boolean streamResponses)
+    {
+        this.streamResponses = streamResponses;
+
+        return (T) this;
+    }
+
+    /**
+     * Returns whether the content of successful responses is streamed instead of being read into memory completely.
+     *
+     * @return <code>true</code> if response content is streamed, <code>false</code> otherwise
+     */
+    public boolean isStreamingResponses()
+    {
+        return streamResponses;
+    }
+
+    /**
+     * Returns the action performed before this one by the current user. The previous action does not know its own
+     * predecessor anymore, so walking further back is not possible. Use {@link #getContext()} to access the shared
+     * connection.
+     *
+     * @return the previous action, or <code>null</code> if this is the first action of the connection
      */
     @Override
     public AbstractWebDavAction<?> getPreviousAction()
     {
-        return previousWebDavAction;
+        return previousAction;
+    }
+
+    /**
+     * Returns the WebDAV connection of the current user this action belongs to.
+     *
+     * @return the connection
+     */
+    public WebDavContext getContext()
+    {
+        return context;
+    }
+
+    /**
+     * Returns what the current user knows about the resources on the server, so actions can update it.
+     *
+     * @return the metadata cache, or <code>null</code> if not enabled
+     */
+    protected MetadataCache getMetadataCache()
+    {
+        return context.getMetadataCache();
+    }
+
+    /**
+     * Applies the given update to what the current user knows about the resources on the server, if this is tracked.
+     *
+     * @param update
+     *            the update
+     */
+    protected void updateMetadataCache(final Consumer<MetadataCache> update)
+    {
+        final MetadataCache metadataCache = context.getMetadataCache();
+        if (metadataCache != null)
+        {
+            update.accept(metadataCache);
+        }
+    }
+
+    /**
+     * Returns the locks the current user holds on the server, so actions can update them.
+     *
+     * @return the lock registry
+     */
+    protected LockRegistry getLocks()
+    {
+        return context.getLocks();
+    }
+
+    /**
+     * Makes sure that the given number of requests can be sent to the server in parallel. Otherwise, the surplus
+     * requests would silently wait for a free connection. The client's own connection pool is enlarged as needed, while
+     * the shared connection pool must have been configured large enough up front.
+     *
+     * @param concurrency
+     *            the number of requests to send in parallel
+     */
+    protected void ensureConnections(final int concurrency)
+    {
+        Assert.assertTrue("Concurrency " + concurrency + " exceeds the connections per server of the shared pool (" +
+                          SharedConnectionPool.getMaxPerRoute() + "), raise " + SharedConnectionPool.PROP_MAX_PER_ROUTE,
+                          getCustomizedSardine().ensureMaxConnections(concurrency));
     }
 
     /**
@@ -160,7 +227,18 @@ public abstract class AbstractWebDavAction<T> extends AbstractAction
      */
     public Sardine getSardine()
     {
-        return sardine;
+        return context.getSardine();
+    }
+
+    /**
+     * Returns the underlying Sardine client as {@link CustomizedSardineImpl}, which offers some additional operations
+     * not available in the {@link Sardine} interface.
+     *
+     * @return the Sardine client
+     */
+    public CustomizedSardineImpl getCustomizedSardine()
+    {
+        return context.getSardine();
     }
 
     /**
@@ -170,7 +248,7 @@ public abstract class AbstractWebDavAction<T> extends AbstractAction
      */
     public String getUserName()
     {
-        return userName;
+        return context.getUserName();
     }
 
     /**
@@ -180,7 +258,7 @@ public abstract class AbstractWebDavAction<T> extends AbstractAction
      */
     public String getUserPassword()
     {
-        return userPassword;
+        return context.getUserPassword();
     }
 
     /**
@@ -188,7 +266,7 @@ public abstract class AbstractWebDavAction<T> extends AbstractAction
      */
     public String getHostName()
     {
-        return hostName;
+        return context.getHostName();
     }
 
     /**
@@ -196,7 +274,7 @@ public abstract class AbstractWebDavAction<T> extends AbstractAction
      */
     public String getWebDavPath()
     {
-        return webDavPath;
+        return context.getWebDavPath();
     }
 
     /**
@@ -208,15 +286,7 @@ public abstract class AbstractWebDavAction<T> extends AbstractAction
      */
     public String getUrl(final String relativePath)
     {
-        final StringBuilder url = new StringBuilder(256);
-
-        url.append(StringUtils.stripEnd(hostName, "/"));
-        url.append("/");
-        url.append(StringUtils.strip(webDavPath, "/"));
-        url.append("/");
-        url.append(StringUtils.stripStart(relativePath, "/"));
-
-        return encodeUrl(url.toString());
+        return context.getUrlBuilder().getUrl(relativePath);
     }
 
     /**
@@ -228,57 +298,62 @@ public abstract class AbstractWebDavAction<T> extends AbstractAction
      */
     public String getUrl(final DavResource resource)
     {
-        final StringBuilder url = new StringBuilder(256);
-
-        url.append(StringUtils.stripEnd(hostName, "/"));
-        url.append("/");
-        url.append(StringUtils.stripStart(resource.getPath(), "/"));
+        return getAbsoluteUrl(resource.getPath());
+    }
 
-        return encodeUrl(url.toString());
+    /**
+     * Returns an absolute URL for the passed path, which is absolute on the host and therefore not relative to the
+     * WebDAV base directory.
+     *
+     * @param absolutePath
+     *            the absolute path on the host
+     * @return the resulting absolute URL
+     */
+    public String getAbsoluteUrl(final String absolutePath)
+    {
+        return context.getUrlBuilder().getUrlForAbsolutePath(absolutePath);
     }
 
     /**
-     * Encodes special characters in the given URL and returns the encoded URL.
+     * Logs a custom value for this action, for instance a count or a throughput. The value is reported as
+     * "&lt;timer name&gt; &lt;name&gt;".
      *
-     * @param url
-     *            the absolute URL to sanitize
-     * @return the encoded URL
+     * @param name
+     *            the name of the value
+     * @param value
+     *            the value
      */
-    private String encodeUrl(final String url)
+    protected void logCustomValue(final String name, final double value)
     {
-        // Sardine needs encoded URLs, but returns decoded ones. Odd, but this requires that we split the URL, encode
-        // it, and put it back together.
-        try
-        {
-            final URL u = new URL(url);
-            final URI uri = new URI(u.getProtocol(), u.getUserInfo(), u.getHost(), u.getPort(), u.getPath(), u.getQuery(), u.getRef());
+        final CustomValue customValue = new CustomValue(getTimerName() + " " + name);
+        customValue.setValue(value);
 
-            return uri.toURL().toString();
-        }
-        catch (MalformedURLException | URISyntaxException e)
-        {
-            // turn this into a runtime exception so we don't have to do the catch it
-            // craziness everywhere, bad is bad for the surrounding code
-            throw new RuntimeException(e);
-        }
+        context.getSession().getDataManager().logDataRecord(customValue);
+    }
+
+    /**
+     * Logs the counts of the given multi-status outcomes as custom values "&lt;timer name&gt; Multi-Status Resources"
+     * and "&lt;timer name&gt; Multi-Status Failures".
+     *
+     * @param result
+     *            the multi-status outcomes
+     */
+    protected void logMultiStatus(final MultiStatusResult result)
+    {
+        logCustomValue("Multi-Status Resources", result.getResourceCount());
+        logCustomValue("Multi-Status Failures", result.getFailureCount());
     }
 
     /**
-     * Closes the underlying {@link Sardine} client and releases any resources held by it.
+     * Closes the underlying {@link Sardine} client and releases any resources held by it. Since the client is shared,
+     * this closes the WebDAV connection of the current user.
      *
      * @throws IOException
      *             if anything goes wrong
      */
     public void releaseClient() throws IOException
     {
-        try
-        {
-            sardine.shutdown();
-        }
-        finally
-        {
-            sardine = null;
-        }
+        context.close();
     }
 
     /**
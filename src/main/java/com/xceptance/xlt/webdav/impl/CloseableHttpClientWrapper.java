@@ -1,13 +1,15 @@
 package com.xceptance.xlt.webdav.impl;
 
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpRequest;
+import org.apache.http.HttpStatus;
 import org.apache.http.RequestLine;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.conn.ClientConnectionManager;
@@ -21,40 +23,42 @@ import com.xceptance.xlt.api.engine.Session;
 import com.xceptance.xlt.engine.RequestExecutionContext;
 import com.xceptance.xlt.engine.socket.SocketStatistics;
 import com.xceptance.xlt.engine.socket.XltSockets;
+import com.xceptance.xlt.webdav.util.LockRegistry;
 import com.xceptance.xlt.webdav.util.WebDavContext;
 
 /**
  * A wrapper around a {@link CloseableHttpClient} object that delegates all method calls to the wrapped object, but
  * additionally logs any HTTP request details to XLT. This instrumentation is done in the
  * {@link #doExecute(HttpHost, HttpRequest, HttpContext)} method.
+ * <p>
+ * By default, the response content is read into memory completely before the response is handed over, so the request
+ * details are complete when the method returns. If the current action streams its responses (see
+ * {@link AbstractWebDavAction#isStreamingResponses()}), successful responses are handed through unbuffered instead and
+ * the request details are logged as soon as the response content has been consumed or closed. Note that the content has
+ * to be consumed in the same thread as the network statistics are gathered per thread.
+ * <p>
+ * Before a request modifying resources is executed, the tokens of any locks the user holds on these resources are
+ * added as "If" header (see {@link LockRegistry}), unless the request carries such a header already. If the server
+ * answers with 412 (Precondition Failed), these locks are forgotten.
+ * <p>
+ * Requests sent by the workers of a {@link ParallelTaskRunner} are registered with it until they are complete, so they
+ * can be aborted if another task of the action fails.
  */
 @SuppressWarnings("deprecation")
 public class CloseableHttpClientWrapper extends CloseableHttpClient
 {
-    /**
-     * The method object to access the "doExecute" method of the wrapped {@link CloseableHttpClient} instance. This
-     * method is protected, so the only way to delegate the call to it is using reflection.
-     */
-    private static final Method doExecuteMethod;
-
     static
     {
-        try
-        {
-            // get the "doExecute" method object and make it accessible
-            final Class<?> internalHttpClientClass = Class.forName("org.apache.http.impl.client.InternalHttpClient");
-            doExecuteMethod = internalHttpClientClass.getDeclaredMethod("doExecute", HttpHost.class, HttpRequest.class, HttpContext.class);
-            doExecuteMethod.setAccessible(true);
-        }
-        catch (ClassNotFoundException | NoSuchMethodException | SecurityException ex)
-        {
-            throw new RuntimeException("Failed to access method", ex);
-        }
-
         // initialize the network instrumentation layer
         XltSockets.initialize();
     }
 
+    /**
+     * The request methods that modify resources and therefore have to submit the tokens of the locks held on them.
+     */
+    private static final Set<String> MODIFYING_METHODS = new HashSet<>(Arrays.asList("PUT", "DELETE", "MOVE", "COPY",
+                                                                                       "MKCOL", "PROPPATCH"));
+
     /**
      * The wrapped instance.
      */
@@ -106,28 +110,38 @@ public class CloseableHttpClientWrapper extends CloseableHttpClient
         throws IOException
     {
         final AbstractWebDavAction<?> action = WebDavContext.getActiveAction();
+        final Session session = action.getContext().getSession();
 
         // initialize the request data object which will carry all request/response details
         final RequestData requestData = new RequestData(action.getTimerName());
 
+        // whether the request data object will be completed later on when the response content has been consumed
+        boolean completeOnContentConsumed = false;
+
+        // allow the request to be aborted if it is sent in parallel with others
+        final Runnable requestCompleted = ParallelTaskRunner.requestStarted(request);
+
         try
         {
+            // submit the tokens of any locks held on the resources modified
+            final LockRegistry locks = action.getContext().getLocks();
+            final String ifHeader = addLockTokens(request, locks);
+
             // reset the request context (incl. network instrumentation and DNS layer) before executing the request
             RequestExecutionContext.getCurrent().reset();
 
-            // now invoke doExceute() reflectively
-            final CloseableHttpResponse response = invokeDoExecute(target, request, context);
-
-            // ensure that the response is read into memory completely
-            final HttpEntity entity = response.getEntity();
-            if (entity != null)
-            {
-                response.setEntity(new BufferedHttpEntity(entity));
-            }
+            // now let the wrapped client execute the request (its public execute() directly delegates to doExecute())
+            final CloseableHttpResponse response = httpClient.execute(target, request, context);
 
             // get the status code
             final int responseCode = response.getStatusLine().getStatusCode();
 
+            // a failed precondition means that the server does not know one of the locks submitted anymore
+            if (responseCode == HttpStatus.SC_PRECONDITION_FAILED && ifHeader != null)
+            {
+                locks.dropLocksSentIn(ifHeader);
+            }
+
             // get the response content type if available
             final Header contentTypeHeader = response.getFirstHeader("Content-Type");
             final String responseContentType = (contentTypeHeader == null) ? "" : contentTypeHeader.getValue();
@@ -141,6 +155,39 @@ public class CloseableHttpClientWrapper extends CloseableHttpClient
             action.setStatusCode(responseCode);
             action.setResponseContentType(responseContentType);
 
+            final HttpEntity entity = response.getEntity();
+            if (entity != null)
+            {
+                if (action.isStreamingResponses() && responseCode >= 200 && responseCode < 300)
+                {
+                    // hand the content through unbuffered, the request data object is completed as soon as the content
+                    // stream has been read to the end or was closed (error responses are still buffered as Sardine
+                    // might abort the request without ever touching the content)
+                    response.setEntity(new StreamingResponseEntity(entity, new StreamingResponseEntity.Listener()
+                    {
+                        @Override
+                        public void contentConsumed(final IOException ex)
+                        {
+                            if (ex != null)
+                            {
+                                requestData.setFailed(true);
+                                action.setException(ex);
+                            }
+
+                            requestCompleted.run();
+                            completeRequestData(requestData, request, session);
+                        }
+                    }));
+
+                    completeOnContentConsumed = true;
+                }
+                else
+                {
+                    // ensure that the response is read into memory completely
+                    response.setEntity(new BufferedHttpEntity(entity));
+                }
+            }
+
             // finally return the response
             return response;
         }
@@ -157,78 +204,80 @@ public class CloseableHttpClientWrapper extends CloseableHttpClient
         }
         finally
         {
-            //
-            // gather the remaining request/response details and complete the request data object
-            //
-
-            // set the elapsed time
-            requestData.setRunTime();
-
-            // set any request info
-            final RequestLine requestLine = request.getRequestLine();
-
-            requestData.setHttpMethod(requestLine.getMethod());
-            requestData.setUrl(requestLine.getUri());
-
-            // set network statistics
-            final SocketStatistics socketStatistics = RequestExecutionContext.getCurrent().getSocketMonitor().getSocketStatistics();
-
-            requestData.setBytesSent(socketStatistics.getBytesSent());
-            requestData.setBytesReceived(socketStatistics.getBytesReceived());
-            requestData.setDnsTime(socketStatistics.getDnsLookupTime());
-            requestData.setConnectTime(socketStatistics.getConnectTime());
-            requestData.setSendTime(socketStatistics.getSendTime());
-            requestData.setServerBusyTime(socketStatistics.getServerBusyTime());
-            requestData.setReceiveTime(socketStatistics.getReceiveTime());
-            requestData.setTimeToFirstBytes(socketStatistics.getTimeToFirstBytes());
-            requestData.setTimeToLastBytes(socketStatistics.getTimeToLastBytes());
-
-            // finally log the request data object
-            Session.getCurrent().getDataManager().logDataRecord(requestData);
+            if (!completeOnContentConsumed)
+            {
+                requestCompleted.run();
+                completeRequestData(requestData, request, session);
+            }
         }
     }
 
     /**
-     * Invokes the {@link #doExecute(HttpHost, HttpRequest, HttpContext)} method on the wrapped
-     * {@link CloseableHttpClient} object.
+     * Adds an "If" header with the tokens of the locks held on the resources modified by the given request, i.e. the
+     * request URL and, for COPY and MOVE, the destination URL.
      *
-     * @param target
-     *            the HTTP target
      * @param request
      *            the HTTP request
-     * @param context
-     *            the HTTP context
-     * @return the HTTP response
-     * @throws IOException
-     *             if anything goes wrong
+     * @param locks
+     *            the locks held by the user
+     * @return the value of the header added, or <code>null</code> if none was added
      */
-    private CloseableHttpResponse invokeDoExecute(final HttpHost target, final HttpRequest request, final HttpContext context)
-        throws IOException
+    private static String addLockTokens(final HttpRequest request, final LockRegistry locks)
     {
-        try
+        final RequestLine requestLine = request.getRequestLine();
+
+        if (locks.size() == 0 || !MODIFYING_METHODS.contains(requestLine.getMethod()) || request.containsHeader("If"))
         {
-            return (CloseableHttpResponse) doExecuteMethod.invoke(httpClient, target, request, context);
+            return null;
         }
-        catch (final Exception ex)
-        {
-            if (ex instanceof InvocationTargetException)
-            {
-                // unwrap causing exception and throw it directly
-                final Throwable cause = ex.getCause();
 
-                if (cause instanceof IOException)
-                {
-                    throw (IOException) cause;
-                }
-            }
-            else if (ex instanceof RuntimeException)
-            {
-                // throw it directly
-                throw (RuntimeException) ex;
-            }
+        final Header destination = request.getFirstHeader("Destination");
 
-            // throw any remaining exception wrapped in a RuntimeException
-            throw new RuntimeException("Failed to invoke method", ex);
+        final String ifHeader = (destination == null) ? locks.getIfHeader(requestLine.getUri())
+                                                      : locks.getIfHeader(requestLine.getUri(), destination.getValue());
+        if (ifHeader != null)
+        {
+            request.addHeader("If", ifHeader);
         }
+
+        return ifHeader;
+    }
+
+    /**
+     * Gathers the remaining request/response details, completes the passed request data object, and logs it.
+     *
+     * @param requestData
+     *            the request data object
+     * @param request
+     *            the HTTP request
+     * @param session
+     *            the session to log the request data object to
+     */
+    private static void completeRequestData(final RequestData requestData, final HttpRequest request, final Session session)
+    {
+        // set the elapsed time
+        requestData.setRunTime();
+
+        // set any request info
+        final RequestLine requestLine = request.getRequestLine();
+
+        requestData.setHttpMethod(requestLine.getMethod());
+        requestData.setUrl(requestLine.getUri());
+
+        // set network statistics
+        final SocketStatistics socketStatistics = RequestExecutionContext.getCurrent().getSocketMonitor().getSocketStatistics();
+
+        requestData.setBytesSent(socketStatistics.getBytesSent());
+        requestData.setBytesReceived(socketStatistics.getBytesReceived());
+        requestData.setDnsTime(socketStatistics.getDnsLookupTime());
+        requestData.setConnectTime(socketStatistics.getConnectTime());
+        requestData.setSendTime(socketStatistics.getSendTime());
+        requestData.setServerBusyTime(socketStatistics.getServerBusyTime());
+        requestData.setReceiveTime(socketStatistics.getReceiveTime());
+        requestData.setTimeToFirstBytes(socketStatistics.getTimeToFirstBytes());
+        requestData.setTimeToLastBytes(socketStatistics.getTimeToLastBytes());
+
+        // finally log the request data object
+        session.getDataManager().logDataRecord(requestData);
     }
 }
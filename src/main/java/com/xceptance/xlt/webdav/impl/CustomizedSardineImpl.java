@@ -1,38 +1,67 @@
 package com.xceptance.xlt.webdav.impl;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Field;
 import java.net.ProxySelector;
+import java.nio.charset.StandardCharsets;
 import java.security.KeyStore;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.text.MessageFormat;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
-import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
+import javax.xml.namespace.QName;
 
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpHead;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.config.Registry;
+import org.apache.http.conn.HttpClientConnectionManager;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HTTP;
 import org.apache.http.ssl.SSLContexts;
+import org.apache.http.util.EntityUtils;
 
 import com.github.sardine.Version;
+import com.github.sardine.impl.SardineException;
 import com.github.sardine.impl.SardineImpl;
+import com.github.sardine.impl.handler.ValidatingResponseHandler;
+import com.github.sardine.impl.methods.HttpLock;
+import com.github.sardine.impl.methods.HttpPropFind;
+import com.github.sardine.impl.methods.HttpPropPatch;
 import com.xceptance.xlt.api.util.XltException;
 import com.xceptance.xlt.api.util.XltProperties;
 import com.xceptance.xlt.engine.dns.XltDnsResolver;
 import com.xceptance.xlt.engine.htmlunit.apache.XltDnsResolverAdapterForApache;
+import com.xceptance.xlt.webdav.util.ResourceEntry;
+import com.xceptance.xlt.webdav.util.ResourceStatus;
 
 /**
  * A sub class of {@link SardineImpl} that additionally logs the details of any HTTP request performed.
@@ -40,26 +69,74 @@ import com.xceptance.xlt.engine.htmlunit.apache.XltDnsResolverAdapterForApache;
  * The functionality of the super class is not altered in any way. It is still fully responsible to execute the actual
  * WebDAV operations. However, in order to get access to all the request and response details of the underlying HTTP
  * communication, Sardine's HTTP client will be wrapped. Furthermore, invalid/self-signed certificates will be accepted.
+ * <p>
+ * Optionally, all instances can share a single connection pool instead of each creating their own one (see
+ * {@link SharedConnectionPool} for the properties to configure). Otherwise, the size of a client's own pool can be set
+ * via the property "{@value #PROP_MAX_CONNECTIONS_PER_CLIENT}" (default: 10). Actions that send requests in parallel
+ * enlarge a client's own pool to their concurrency if needed, see {@link #ensureMaxConnections(int)}.
  *
  * @see CloseableHttpClientWrapper
  */
 public class CustomizedSardineImpl extends SardineImpl
 {
     /**
-     * The field object to access the "client" field in {@link SardineImpl}. Since this field is private and cannot be
-     * accessed otherwise, we have to use reflection.
+     * The property that defines the maximum number of parallel connections of a client's own connection pool.
+     */
+    public static final String PROP_MAX_CONNECTIONS_PER_CLIENT = "com.xceptance.xlt.webdav.connectionPool.maxPerClient";
+
+    /**
+     * The properties requested by default, the same as requested by the list methods of the super class.
+     */
+    private static final List<QName> DEFAULT_PROPERTIES = Arrays.asList(davName("resourcetype"),
+                                                                        davName("getcontentlength"),
+                                                                        davName("getlastmodified"),
+                                                                        davName("creationdate"),
+                                                                        davName("getcontenttype"),
+                                                                        davName("getetag"),
+                                                                        davName("displayname"));
+
+    /**
+     * The PROPFIND request body asking for the default properties. Also used by {@link InstrumentedAsyncClient}.
+     */
+    static final String DEFAULT_PROPFIND_BODY = createPropfindBody(DEFAULT_PROPERTIES);
+
+    /**
+     * The PROPFIND request body asking for the names of all properties only.
+     */
+    private static final String PROPNAME_PROPFIND_BODY = "<?xml version=\"1.0\" encoding=\"utf-8\"?>" +
+                                                         "<D:propfind xmlns:D=\"DAV:\"><D:propname/></D:propfind>";
+
+    /**
+     * The method handle to read the "client" field in {@link SardineImpl}. Since this field is private and cannot be
+     * accessed otherwise, we have to use reflection. The handles are only needed when the client has been (re)created,
+     * not per request.
+     */
+    private static final MethodHandle clientGetter;
+
+    /**
+     * The method handle to write the "client" field in {@link SardineImpl}.
+     */
+    private static final MethodHandle clientSetter;
+
+    /**
+     * The manager of the client's own connection pool, <code>null</code> if the client uses the shared pool. Set while
+     * the super class is being constructed, so the field must not have an initializer.
      */
-    private static final Field clientField;
+    private PoolingHttpClientConnectionManager ownConnectionManager;
 
     static
     {
         try
         {
-            // get the "client" field object and make it accessible
-            clientField = SardineImpl.class.getDeclaredField("client");
+            // get the "client" field object, make it accessible, and turn it into method handles
+            final Field clientField = SardineImpl.class.getDeclaredField("client");
             clientField.setAccessible(true);
+
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            clientGetter = lookup.unreflectGetter(clientField);
+            clientSetter = lookup.unreflectSetter(clientField);
         }
-        catch (SecurityException | NoSuchFieldException ex)
+        catch (SecurityException | NoSuchFieldException | IllegalAccessException ex)
         {
             throw new RuntimeException("Failed to access field", ex);
         }
@@ -71,6 +148,8 @@ public class CustomizedSardineImpl extends SardineImpl
     public CustomizedSardineImpl()
     {
         super();
+
+        wrapHttpClient();
     }
 
     /**
@@ -86,6 +165,8 @@ public class CustomizedSardineImpl extends SardineImpl
     public CustomizedSardineImpl(final HttpClientBuilder builder, final String username, final String password)
     {
         super(builder, username, password);
+
+        wrapHttpClient();
     }
 
     /**
@@ -97,6 +178,8 @@ public class CustomizedSardineImpl extends SardineImpl
     public CustomizedSardineImpl(final HttpClientBuilder builder)
     {
         super(builder);
+
+        wrapHttpClient();
     }
 
     /**
@@ -112,6 +195,8 @@ public class CustomizedSardineImpl extends SardineImpl
     public CustomizedSardineImpl(final String username, final String password, final ProxySelector selector)
     {
         super(username, password, selector);
+
+        wrapHttpClient();
     }
 
     /**
@@ -125,6 +210,8 @@ public class CustomizedSardineImpl extends SardineImpl
     public CustomizedSardineImpl(final String username, final String password)
     {
         super(username, password);
+
+        wrapHttpClient();
     }
 
     /**
@@ -136,6 +223,8 @@ public class CustomizedSardineImpl extends SardineImpl
     public CustomizedSardineImpl(final String bearerAuth)
     {
         super(bearerAuth);
+
+        wrapHttpClient();
     }
 
     /**
@@ -151,9 +240,19 @@ public class CustomizedSardineImpl extends SardineImpl
         builder.setDnsResolver(new XltDnsResolverAdapterForApache(new XltDnsResolver()));
 
         // configure a decent user agent name
-        builder.setUserAgent(MessageFormat.format("Sardine/{0} (Xceptance Load Test, XLT {1}, WebDAV)",
-                                                  Version.getImplementation(),
-                                                  XltProperties.getInstance().getVersion()));
+        builder.setUserAgent(getUserAgent());
+
+        // use the connection pool shared by all clients if so configured
+        if (SharedConnectionPool.isEnabled())
+        {
+            builder.setConnectionManager(SharedConnectionPool.getConnectionManager(createDefaultSchemeRegistry()));
+
+            // closing this client must not shut down the pool
+            builder.setConnectionManagerShared(true);
+
+            // the connection manager created by the super class is not used
+            ownConnectionManager = null;
+        }
 
         return builder;
     }
@@ -162,35 +261,615 @@ public class CustomizedSardineImpl extends SardineImpl
      * {@inheritDoc}
      */
     @Override
-    protected <T> T execute(final HttpRequestBase request, final ResponseHandler<T> responseHandler) throws IOException
+    public void enableCompression()
     {
-        // check/wrap the client in case it has been recreated in the meantime
-        wrapHttpClientIfNeeded();
+        // the super class recreates the client
+        super.enableCompression();
+        wrapHttpClient();
+    }
 
-        return super.execute(request, responseHandler);
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void disableCompression()
+    {
+        // the super class recreates the client
+        super.disableCompression();
+        wrapHttpClient();
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    protected HttpResponse execute(final HttpRequestBase request) throws IOException
+    public void ignoreCookies()
     {
-        // check/wrap the client in case it has been recreated in the meantime
-        wrapHttpClientIfNeeded();
+        // the super class recreates the client
+        super.ignoreCookies();
+        wrapHttpClient();
+    }
 
-        return super.execute(request);
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected HttpClientConnectionManager createDefaultConnectionManager(final Registry<ConnectionSocketFactory> schemeRegistry)
+    {
+        final HttpClientConnectionManager cm = super.createDefaultConnectionManager(schemeRegistry);
+
+        // allow actions to use several connections in parallel
+        if (cm instanceof PoolingHttpClientConnectionManager)
+        {
+            final int maxConnections = XltProperties.getInstance().getProperty(PROP_MAX_CONNECTIONS_PER_CLIENT, 10);
+
+            ownConnectionManager = (PoolingHttpClientConnectionManager) cm;
+            ownConnectionManager.setMaxTotal(maxConnections);
+            ownConnectionManager.setDefaultMaxPerRoute(maxConnections);
+        }
+
+        return cm;
+    }
+
+    /**
+     * Makes sure that the client can open the given number of connections to the server at the same time, so requests
+     * sent in parallel do not have to wait for a connection. The client's own connection pool is enlarged if it is too
+     * small. The shared connection pool is sized for all clients together and hence not changed on behalf of a single
+     * client.
+     *
+     * @param connections
+     *            the number of connections needed
+     * @return <code>true</code> if the client can open that many connections, <code>false</code> if the client uses the
+     *         shared connection pool and the pool allows fewer connections per server
+     */
+    public boolean ensureMaxConnections(final int connections)
+    {
+        if (ownConnectionManager == null)
+        {
+            return SharedConnectionPool.isEnabled() ? connections <= SharedConnectionPool.getMaxPerRoute() : true;
+        }
+
+        if (ownConnectionManager.getDefaultMaxPerRoute() < connections)
+        {
+            ownConnectionManager.setMaxTotal(Math.max(ownConnectionManager.getMaxTotal(), connections));
+            ownConnectionManager.setDefaultMaxPerRoute(connections);
+        }
+
+        return true;
+    }
+
+    /**
+     * Executes the given request and processes the response with the given handler. Overridden to make it available to
+     * actions that send requests not covered by the {@link com.github.sardine.Sardine} interface.
+     * <p>
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> T execute(final HttpRequestBase request, final ResponseHandler<T> responseHandler) throws IOException
+    {
+        return super.execute(request, responseHandler);
+    }
+
+    /**
+     * Executes the given request that changes one or more resources, like COPY, MOVE, DELETE or PROPPATCH. If the
+     * server answers with a multi-status response, the response is parsed while it is being received and the outcome
+     * for each resource reported is passed on to the given consumer. Any other success response is accepted as is.
+     *
+     * @param request
+     *            the request
+     * @param consumer
+     *            the consumer of the outcomes per resource
+     * @return the status code of the response
+     * @throws IOException
+     *             if anything goes wrong, in particular if the request failed as a whole
+     */
+    public int executeMultiStatus(final HttpRequestBase request, final Consumer<? super ResourceStatus> consumer)
+        throws IOException
+    {
+        return execute(request, new ValidatingResponseHandler<Integer>()
+        {
+            @Override
+            public Integer handleResponse(final HttpResponse response) throws IOException
+            {
+                validateResponse(response);
+
+                final int statusCode = response.getStatusLine().getStatusCode();
+                final HttpEntity entity = response.getEntity();
+
+                if (statusCode == HttpStatus.SC_MULTI_STATUS && entity != null)
+                {
+                    try (final InputStream in = entity.getContent())
+                    {
+                        MultiStatusParser.parseStatus(in, consumer);
+                    }
+                }
+                else
+                {
+                    EntityUtils.consume(entity);
+                }
+
+                return statusCode;
+            }
+        });
+    }
+
+    /**
+     * Determines the content length of the resource at the given URL using the HEAD request method.
+     *
+     * @param url
+     *            the resource URL
+     * @return the content length, or -1 if the server did not tell
+     * @throws IOException
+     *             if anything goes wrong
+     */
+    public long getContentLength(final String url) throws IOException
+    {
+        return execute(new HttpHead(url), new ValidatingResponseHandler<Long>()
+        {
+            @Override
+            public Long handleResponse(final HttpResponse response) throws IOException
+            {
+                validateResponse(response);
+
+                final Header header = response.getFirstHeader(HttpHeaders.CONTENT_LENGTH);
+
+                return (header == null) ? -1L : Long.parseLong(header.getValue());
+            }
+        });
+    }
+
+    /**
+     * Lists the resource at the given URL (and its children, depending on the depth) using the PROPFIND request method.
+     * Other than the list methods of the super class, the multi-status response is parsed while it is being received
+     * and each resource found is passed on to the given consumer right away. The response is neither buffered nor
+     * unmarshalled as a whole, which keeps memory consumption low even for huge listings, provided that response
+     * streaming is enabled for the current action.
+     *
+     * @param url
+     *            the resource URL
+     * @param depth
+     *            the listing depth (one of -1/0/1), -1 meaning infinity
+     * @param consumer
+     *            the consumer of the resources found
+     * @return the number of resources found
+     * @throws IOException
+     *             if anything goes wrong
+     */
+    public int list(final String url, final int depth, final Consumer<? super ResourceEntry> consumer) throws IOException
+    {
+        return propfind(url, depth, DEFAULT_PROPFIND_BODY, false, consumer);
+    }
+
+    /**
+     * Same as {@link #list(String, int, Consumer)}, but asks the server for the given properties only. Properties not
+     * handled by {@link ResourceEntry} itself are available via {@link ResourceEntry#getCustomProperties()}.
+     *
+     * @param url
+     *            the resource URL
+     * @param depth
+     *            the listing depth (one of -1/0/1), -1 meaning infinity
+     * @param properties
+     *            the properties to request
+     * @param consumer
+     *            the consumer of the resources found
+     * @return the number of resources found
+     * @throws IOException
+     *             if anything goes wrong
+     */
+    public int list(final String url, final int depth, final Collection<QName> properties,
+                    final Consumer<? super ResourceEntry> consumer)
+        throws IOException
+    {
+        return propfind(url, depth, createPropfindBody(properties), false, consumer);
+    }
+
+    /**
+     * Same as {@link #list(String, int, Consumer)}, but asks the server for the names of the available properties only,
+     * not for their values. The names are available via {@link ResourceEntry#getCustomProperties()}, each with an empty
+     * value.
+     *
+     * @param url
+     *            the resource URL
+     * @param depth
+     *            the listing depth (one of -1/0/1), -1 meaning infinity
+     * @param consumer
+     *            the consumer of the resources found
+     * @return the number of resources found
+     * @throws IOException
+     *             if anything goes wrong
+     */
+    public int listPropertyNames(final String url, final int depth, final Consumer<? super ResourceEntry> consumer)
+        throws IOException
+    {
+        return propfind(url, depth, PROPNAME_PROPFIND_BODY, true, consumer);
+    }
+
+    /**
+     * Sends a PROPFIND request with the given body and parses the multi-status response while it is being received.
+     *
+     * @param url
+     *            the resource URL
+     * @param depth
+     *            the listing depth (one of -1/0/1), -1 meaning infinity
+     * @param body
+     *            the request body
+     * @param namesOnly
+     *            whether the response contains property names only
+     * @param consumer
+     *            the consumer of the resources found
+     * @return the number of resources found
+     * @throws IOException
+     *             if anything goes wrong
+     */
+    private int propfind(final String url, final int depth, final String body, final boolean namesOnly,
+                         final Consumer<? super ResourceEntry> consumer)
+        throws IOException
+    {
+        final HttpPropFind propFind = new HttpPropFind(url);
+        propFind.setDepth((depth < 0) ? "infinity" : Integer.toString(depth));
+        propFind.setEntity(new StringEntity(body, ContentType.create("text/xml", StandardCharsets.UTF_8)));
+
+        return execute(propFind, new ValidatingResponseHandler<Integer>()
+        {
+            @Override
+            public Integer handleResponse(final HttpResponse response) throws IOException
+            {
+                validateResponse(response);
+
+                final HttpEntity entity = response.getEntity();
+                if (entity == null)
+                {
+                    throw new SardineException("No entity found in response", response.getStatusLine().getStatusCode(),
+                                               response.getStatusLine().getReasonPhrase());
+                }
+
+                try (final InputStream in = entity.getContent())
+                {
+                    return MultiStatusParser.parse(in, namesOnly, consumer);
+                }
+            }
+        });
+    }
+
+    /**
+     * Uploads the passed entity to the given URL using the PUT request method. Other than most put methods of the super
+     * class, this method takes content length and content type directly from the entity, so any entity with a known
+     * length is sent without chunked transfer encoding. If the server rejects the "Expect" header with 417
+     * (Expectation Failed), the upload is retried without it, as done by the super class.
+     *
+     * @param url
+     *            the target URL
+     * @param entity
+     *            the entity to upload
+     * @param expectContinue
+     *            whether to ask the server for permission before sending the content
+     * @return the status code of the response, so callers running uploads in parallel can check it per upload
+     * @throws IOException
+     *             if anything goes wrong
+     */
+    public int put(final String url, final HttpEntity entity, final boolean expectContinue) throws IOException
+    {
+        final Map<String, String> headers;
+        if (expectContinue)
+        {
+            headers = Collections.singletonMap(HTTP.EXPECT_DIRECTIVE, HTTP.EXPECT_CONTINUE);
+        }
+        else
+        {
+            headers = Collections.emptyMap();
+        }
+
+        return super.put(url, entity, headers, new ValidatingResponseHandler<Integer>()
+        {
+            @Override
+            public Integer handleResponse(final HttpResponse response) throws IOException
+            {
+                validateResponse(response);
+                EntityUtils.consume(response.getEntity());
+
+                return response.getStatusLine().getStatusCode();
+            }
+        });
+    }
+
+    /**
+     * Locks the resource at the given URL using the LOCK request method. Other than the lock method of the super class,
+     * this method lets you choose the lock scope, depth and timeout.
+     *
+     * @param url
+     *            the resource URL
+     * @param deep
+     *            whether to lock anything below the resource as well (depth infinity) or the resource only (depth 0)
+     * @param shared
+     *            whether to request a shared lock instead of an exclusive one
+     * @param timeout
+     *            the lock timeout to request in seconds, or 0 to leave it to the server
+     * @param owner
+     *            the lock owner to record, may be <code>null</code>
+     * @return the lock granted, including the token and the timeout
+     * @throws IOException
+     *             if anything goes wrong, in particular a {@link SardineException} with status code 423 if the
+     *             resource is locked already
+     */
+    public GrantedLock lock(final String url, final boolean deep, final boolean shared, final int timeout,
+                            final String owner)
+        throws IOException
+    {
+        final StringBuilder sb = new StringBuilder(256);
+        sb.append("<?xml version=\"1.0\" encoding=\"utf-8\"?><D:lockinfo xmlns:D=\"DAV:\">");
+        sb.append("<D:lockscope>").append(shared ? "<D:shared/>" : "<D:exclusive/>").append("</D:lockscope>");
+        sb.append("<D:locktype><D:write/></D:locktype>");
+
+        if (owner != null)
+        {
+            sb.append("<D:owner>").append(escapeXml(owner)).append("</D:owner>");
+        }
+
+        sb.append("</D:lockinfo>");
+
+        final HttpLock lock = new HttpLock(url);
+        lock.setDepth(deep ? "infinity" : "0");
+        if (timeout > 0)
+        {
+            lock.setTimeout(timeout);
+        }
+        lock.setEntity(new StringEntity(sb.toString(), ContentType.create("text/xml", StandardCharsets.UTF_8)));
+
+        return execute(lock, new ValidatingResponseHandler<GrantedLock>()
+        {
+            @Override
+            public GrantedLock handleResponse(final HttpResponse response) throws IOException
+            {
+                validateResponse(response);
+
+                // the token of a new lock is always returned in the header
+                final Header header = response.getFirstHeader("Lock-Token");
+                if (header == null)
+                {
+                    EntityUtils.consume(response.getEntity());
+                    throw new SardineException("No Lock-Token header found in response",
+                                               response.getStatusLine().getStatusCode(),
+                                               response.getStatusLine().getReasonPhrase());
+                }
+
+                final String token = StringUtils.removeEnd(StringUtils.removeStart(header.getValue().trim(), "<"), ">");
+
+                return new GrantedLock(token, readLockTimeout(response, token, timeout));
+            }
+        });
+    }
+
+    /**
+     * Refreshes the lock with the given token on the resource at the given URL using the LOCK request method, which
+     * resets the lock timeout.
+     *
+     * @param url
+     *            the URL of the locked resource
+     * @param token
+     *            the lock token
+     * @param timeout
+     *            the lock timeout to request in seconds, or 0 to leave it to the server
+     * @return the timeout granted in seconds, or -1 if the lock does not time out
+     * @throws IOException
+     *             if anything goes wrong
+     */
+    public long refreshLock(final String url, final String token, final int timeout) throws IOException
+    {
+        final HttpLock lock = new HttpLock(url);
+        lock.setHeader("If", "(<" + token + ">)");
+        if (timeout > 0)
+        {
+            lock.setTimeout(timeout);
+        }
+
+        return execute(lock, new ValidatingResponseHandler<Long>()
+        {
+            @Override
+            public Long handleResponse(final HttpResponse response) throws IOException
+            {
+                validateResponse(response);
+
+                return readLockTimeout(response, token, timeout);
+            }
+        });
+    }
+
+    /**
+     * Reads the timeout granted for the lock with the given token from the lock discovery in the given LOCK response
+     * and consumes the response.
+     *
+     * @param response
+     *            the response
+     * @param token
+     *            the lock token
+     * @param requestedTimeout
+     *            the timeout requested in seconds, 0 if left to the server
+     * @return the timeout granted in seconds, the timeout requested if the server did not report it, or -1 if the lock
+     *         does not time out
+     * @throws IOException
+     *             if the response cannot be read
+     */
+    private static long readLockTimeout(final HttpResponse response, final String token, final int requestedTimeout)
+        throws IOException
+    {
+        final HttpEntity entity = response.getEntity();
+        if (entity == null)
+        {
+            return (requestedTimeout > 0) ? requestedTimeout : -1;
+        }
+
+        try (final InputStream in = entity.getContent())
+        {
+            final long timeout = MultiStatusParser.parseLockTimeout(in, token);
+
+            return (timeout < 0 && requestedTimeout > 0) ? requestedTimeout : timeout;
+        }
+    }
+
+    /**
+     * Sets and removes the given properties of the resource at the given URL with a single request using the PROPPATCH
+     * request method. The server applies all changes or none. The outcome per property is passed on to the given
+     * consumer.
+     *
+     * @param url
+     *            the resource URL
+     * @param propertiesToSet
+     *            the properties to set along with their values
+     * @param propertiesToRemove
+     *            the properties to remove
+     * @param consumer
+     *            the consumer of the outcomes
+     * @return the status code of the response
+     * @throws IOException
+     *             if anything goes wrong
+     */
+    public int propPatch(final String url, final Map<QName, String> propertiesToSet,
+                         final Collection<QName> propertiesToRemove, final Consumer<? super ResourceStatus> consumer)
+        throws IOException
+    {
+        final String body = createPropPatchBody(propertiesToSet, propertiesToRemove);
+
+        final HttpPropPatch propPatch = new HttpPropPatch(url);
+        propPatch.setEntity(new StringEntity(body, ContentType.create("text/xml", StandardCharsets.UTF_8)));
+
+        return executeMultiStatus(propPatch, consumer);
+    }
+
+    /**
+     * Creates a PROPFIND request body asking for the given properties.
+     *
+     * @param properties
+     *            the properties to request
+     * @return the request body
+     */
+    private static String createPropfindBody(final Collection<QName> properties)
+    {
+        final StringBuilder sb = new StringBuilder(256);
+        sb.append("<?xml version=\"1.0\" encoding=\"utf-8\"?><D:propfind xmlns:D=\"DAV:\"><D:prop>");
+
+        for (final QName property : properties)
+        {
+            appendProperty(sb, property, null);
+        }
+
+        return sb.append("</D:prop></D:propfind>").toString();
+    }
+
+    /**
+     * Creates a PROPPATCH request body setting and removing the given properties.
+     *
+     * @param propertiesToSet
+     *            the properties to set along with their values
+     * @param propertiesToRemove
+     *            the properties to remove
+     * @return the request body
+     */
+    static String createPropPatchBody(final Map<QName, String> propertiesToSet,
+                                      final Collection<QName> propertiesToRemove)
+    {
+        final StringBuilder sb = new StringBuilder(256);
+        sb.append("<?xml version=\"1.0\" encoding=\"utf-8\"?><D:propertyupdate xmlns:D=\"DAV:\">");
+
+        if (!propertiesToSet.isEmpty())
+        {
+            sb.append("<D:set><D:prop>");
+            for (final Map.Entry<QName, String> property : propertiesToSet.entrySet())
+            {
+                appendProperty(sb, property.getKey(), property.getValue());
+            }
+            sb.append("</D:prop></D:set>");
+        }
+
+        if (!propertiesToRemove.isEmpty())
+        {
+            sb.append("<D:remove><D:prop>");
+            for (final QName property : propertiesToRemove)
+            {
+                appendProperty(sb, property, null);
+            }
+            sb.append("</D:prop></D:remove>");
+        }
+
+        return sb.append("</D:propertyupdate>").toString();
+    }
+
+    /**
+     * Appends the element for the given property to a request body.
+     *
+     * @param sb
+     *            the request body
+     * @param property
+     *            the property name
+     * @param value
+     *            the text value of the property, or <code>null</code> for an empty element
+     */
+    private static void appendProperty(final StringBuilder sb, final QName property, final String value)
+    {
+        final String localName = property.getLocalPart();
+        final String elementName;
+
+        if ("DAV:".equals(property.getNamespaceURI()))
+        {
+            elementName = "D:" + localName;
+            sb.append('<').append(elementName);
+        }
+        else if (property.getNamespaceURI().isEmpty())
+        {
+            elementName = localName;
+            sb.append('<').append(elementName);
+        }
+        else
+        {
+            // declare the namespace right at the element
+            elementName = "P:" + localName;
+            sb.append('<').append(elementName).append(" xmlns:P=\"");
+            sb.append(escapeXml(property.getNamespaceURI())).append('"');
+        }
+
+        if (value == null)
+        {
+            sb.append("/>");
+        }
+        else
+        {
+            sb.append('>').append(escapeXml(value)).append("</").append(elementName).append('>');
+        }
+    }
+
+    /**
+     * Escapes the characters of the given text that must not occur literally in XML content or attribute values.
+     *
+     * @param text
+     *            the text
+     * @return the escaped text
+     */
+    private static String escapeXml(final String text)
+    {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    /**
+     * Returns the qualified name of a property in the WebDAV namespace.
+     *
+     * @param localName
+     *            the local name of the property
+     * @return the qualified name
+     */
+    private static QName davName(final String localName)
+    {
+        return new QName("DAV:", localName, "D");
     }
 
     /**
      * Ensures that the {@link CloseableHttpClient} instance of the super class is properly wrapped in a
-     * {@link CloseableHttpClientWrapper}. Otherwise we won't get any request details.
+     * {@link CloseableHttpClientWrapper}. Otherwise we won't get any request details. Must be called whenever the super
+     * class has (re)created its client.
      */
-    private void wrapHttpClientIfNeeded()
+    private void wrapHttpClient()
     {
         try
         {
-            final CloseableHttpClient client = (CloseableHttpClient) clientField.get(this);
+            final CloseableHttpClient client = (CloseableHttpClient) clientGetter.invokeExact((SardineImpl) this);
 
             if (client instanceof CloseableHttpClientWrapper)
             {
@@ -199,10 +878,10 @@ public class CustomizedSardineImpl extends SardineImpl
             else
             {
                 // wrap it and set the wrapper at the super class
-                clientField.set(this, new CloseableHttpClientWrapper(client));
+                clientSetter.invokeExact((SardineImpl) this, (CloseableHttpClient) new CloseableHttpClientWrapper(client));
             }
         }
-        catch (final IllegalAccessException ex)
+        catch (final Throwable ex)
         {
             throw new RuntimeException("Failed to access field", ex);
         }
@@ -213,6 +892,29 @@ public class CustomizedSardineImpl extends SardineImpl
      */
     @Override
     protected ConnectionSocketFactory createDefaultSecureSocketFactory()
+    {
+        // accept any certificate and any host
+        return new SSLConnectionSocketFactory(createInsecureSslContext(), NoopHostnameVerifier.INSTANCE);
+    }
+
+    /**
+     * Returns the user agent name sent with each request.
+     *
+     * @return the user agent name
+     */
+    static String getUserAgent()
+    {
+        return MessageFormat.format("Sardine/{0} (Xceptance Load Test, XLT {1}, WebDAV)", Version.getImplementation(),
+                                    XltProperties.getInstance().getVersion());
+    }
+
+    /**
+     * Creates an SSL context that trusts any certificate, so servers with invalid or self-signed certificates can be
+     * tested as well.
+     *
+     * @return the SSL context
+     */
+    static SSLContext createInsecureSslContext()
     {
         try
         {
@@ -226,15 +928,11 @@ public class CustomizedSardineImpl extends SardineImpl
                   new InsecureTrustManager()
                 }, null);
 
-            // create a host name verifier that accepts any host
-            final HostnameVerifier hostNameVerifier = NoopHostnameVerifier.INSTANCE;
-
-            // build the socket factory
-            return new SSLConnectionSocketFactory(sslContext, hostNameVerifier);
+            return sslContext;
         }
         catch (final Exception ex)
         {
-            throw new XltException("Failed to create SSL connection socket factory", ex);
+            throw new XltException("Failed to create SSL context", ex);
         }
     }
 
@@ -0,0 +1,162 @@
+package com.xceptance.xlt.webdav.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+/**
+ * A request entity that streams the content of a file (or a part of it) with a known content length, so no chunked
+ * transfer encoding is needed. The file is read via a {@link FileChannel} in large blocks directly into the buffer that
+ * is written to the connection.
+ * <p>
+ * Note that the content cannot be transferred from the channel to the socket without copying, as XLT's network
+ * instrumentation layer works on socket streams, not channels.
+ */
+public class FileChannelEntity extends AbstractHttpEntity
+{
+    /**
+     * The size of the transfer buffer.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The file to upload.
+     */
+    private final File file;
+
+    /**
+     * The offset of the part of the file to upload.
+     */
+    private final long offset;
+
+    /**
+     * The length of the part of the file to upload, determined once so the announced content length and the content
+     * sent always match, even if the file changes in the meantime.
+     */
+    private final long length;
+
+    /**
+     * Creates a new {@link FileChannelEntity} object.
+     *
+     * @param file
+     *            the file to upload
+     * @param contentType
+     *            the content type, may be <code>null</code>
+     */
+    public FileChannelEntity(final File file, final ContentType contentType)
+    {
+        this(file, 0, -1, contentType);
+    }
+
+    /**
+     * Creates a new {@link FileChannelEntity} object for a part of a file.
+     *
+     * @param file
+     *            the file to upload
+     * @param offset
+     *            the offset of the first byte to upload
+     * @param length
+     *            the number of bytes to upload, -1 for the rest of the file
+     * @param contentType
+     *            the content type, may be <code>null</code>
+     */
+    public FileChannelEntity(final File file, final long offset, final long length, final ContentType contentType)
+    {
+        this.file = file;
+        this.offset = offset;
+        this.length = (length < 0) ? Math.max(0, file.length() - offset) : length;
+
+        if (contentType != null)
+        {
+            setContentType(contentType.toString());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isRepeatable()
+    {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getContentLength()
+    {
+        return length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public InputStream getContent() throws IOException
+    {
+        final InputStream in = new FileInputStream(file);
+        IOUtils.skipFully(in, offset);
+
+        return new BoundedInputStream(in, length);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeTo(final OutputStream outStream) throws IOException
+    {
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            // never send more than announced, even if the file has grown in the meantime
+            long remaining = length;
+
+            final ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, Math.max(remaining, 1)));
+            channel.position(offset);
+
+            while (remaining > 0)
+            {
+                if (remaining < buffer.capacity())
+                {
+                    buffer.limit((int) remaining);
+                }
+
+                final int bytesRead = channel.read(buffer);
+                if (bytesRead == -1)
+                {
+                    throw new IOException("File '" + file + "' was truncated while uploading it");
+                }
+
+                if (!buffer.hasRemaining())
+                {
+                    outStream.write(buffer.array(), 0, buffer.position());
+                    remaining -= buffer.position();
+                    buffer.clear();
+                }
+            }
+
+            outStream.flush();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isStreaming()
+    {
+        return false;
+    }
+}
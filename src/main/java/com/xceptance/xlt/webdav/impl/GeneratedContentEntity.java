@@ -0,0 +1,122 @@
+package com.xceptance.xlt.webdav.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.http.entity.AbstractHttpEntity;
+
+import com.xceptance.xlt.webdav.util.GeneratedContent;
+
+/**
+ * A request entity that generates its content on the fly while it is being sent. The content length is known up
+ * front, so no chunked transfer encoding is needed. The entity is repeatable as the content can be generated again.
+ *
+ * @see GeneratedContent
+ */
+public class GeneratedContentEntity extends AbstractHttpEntity
+{
+    /**
+     * The size of the transfer buffer.
+     */
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * The content to generate.
+     */
+    private final GeneratedContent content;
+
+    /**
+     * The offset of the part of the content to generate.
+     */
+    private final long offset;
+
+    /**
+     * The length of the part of the content to generate.
+     */
+    private final long length;
+
+    /**
+     * Creates a new {@link GeneratedContentEntity} object.
+     *
+     * @param content
+     *            the content to generate
+     */
+    public GeneratedContentEntity(final GeneratedContent content)
+    {
+        this(content, 0, content.getLength());
+    }
+
+    /**
+     * Creates a new {@link GeneratedContentEntity} object for a part of the content.
+     *
+     * @param content
+     *            the content to generate
+     * @param offset
+     *            the offset of the first byte to generate
+     * @param length
+     *            the number of bytes to generate
+     */
+    public GeneratedContentEntity(final GeneratedContent content, final long offset, final long length)
+    {
+        this.content = content;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isRepeatable()
+    {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getContentLength()
+    {
+        return length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public InputStream getContent()
+    {
+        return content.openStream(offset, length);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeTo(final OutputStream outStream) throws IOException
+    {
+        try (final InputStream in = getContent())
+        {
+            final byte[] buffer = new byte[(int) Math.min(BUFFER_SIZE, Math.max(length, 1))];
+
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) != -1)
+            {
+                outStream.write(buffer, 0, bytesRead);
+            }
+
+            outStream.flush();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isStreaming()
+    {
+        return false;
+    }
+}
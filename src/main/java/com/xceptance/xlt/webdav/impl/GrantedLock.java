@@ -0,0 +1,52 @@
+package com.xceptance.xlt.webdav.impl;
+
+/**
+ * A lock granted by the server in response to a LOCK request, see
+ * {@link CustomizedSardineImpl#lock(String, boolean, boolean, int, String)}.
+ */
+public class GrantedLock
+{
+    /**
+     * The lock token.
+     */
+    private final String token;
+
+    /**
+     * The timeout granted in seconds, -1 if the lock does not time out.
+     */
+    private final long timeout;
+
+    /**
+     * Creates a new {@link GrantedLock} object.
+     *
+     * @param token
+     *            the lock token
+     * @param timeout
+     *            the timeout granted in seconds, -1 if the lock does not time out
+     */
+    public GrantedLock(final String token, final long timeout)
+    {
+        this.token = token;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Returns the lock token.
+     *
+     * @return the lock token
+     */
+    public String getToken()
+    {
+        return token;
+    }
+
+    /**
+     * Returns the timeout granted by the server. If the server did not report it, this is the timeout requested.
+     *
+     * @return the timeout in seconds, or -1 if the lock does not time out
+     */
+    public long getTimeout()
+    {
+        return timeout;
+    }
+}
@@ -0,0 +1,645 @@
+package com.xceptance.xlt.webdav.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.client.methods.AsyncByteConsumer;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.reactor.IOReactorConfig;
+import org.apache.http.protocol.HttpContext;
+
+import com.github.sardine.impl.SardineException;
+import com.github.sardine.impl.methods.HttpCopy;
+import com.github.sardine.impl.methods.HttpMkCol;
+import com.github.sardine.impl.methods.HttpMove;
+import com.github.sardine.impl.methods.HttpPropFind;
+import com.xceptance.xlt.api.engine.RequestData;
+import com.xceptance.xlt.api.engine.Session;
+import com.xceptance.xlt.api.util.XltProperties;
+import com.xceptance.xlt.webdav.util.ResourceEntry;
+import com.xceptance.xlt.webdav.util.WebDavContext;
+
+/**
+ * The asynchronous counterpart of {@link CustomizedSardineImpl}, built on Apache HttpAsyncClient. Requests are sent
+ * via non-blocking I/O, so a few I/O threads serve any number of connections and no thread is blocked while waiting
+ * for a response. Each operation returns a {@link CompletableFuture} that is completed from an I/O thread.
+ * <p>
+ * Like {@link CloseableHttpClientWrapper}, the client logs the details of any request to XLT, in this case from the
+ * completion callback of the request. The request is attributed to the action that was active when it was sent.
+ * Network statistics like DNS or connect times are gathered per thread by XLT and are therefore not available, and the
+ * byte counts cover the request and response content only.
+ * <p>
+ * The number of I/O threads per client can be configured via the property "{@value #PROP_IO_THREADS}" (default: 1).
+ */
+public class InstrumentedAsyncClient implements Closeable
+{
+    /**
+     * The property that defines the number of I/O threads per client.
+     */
+    public static final String PROP_IO_THREADS = "com.xceptance.xlt.webdav.async.ioThreads";
+
+    /**
+     * The timer name used for requests sent while no action is active.
+     */
+    private static final String DEFAULT_TIMER_NAME = "WebDavAsyncClient";
+
+    /**
+     * The underlying HTTP client.
+     */
+    private final CloseableHttpAsyncClient httpClient;
+
+    /**
+     * The XLT session to log the requests to.
+     */
+    private final Session session;
+
+    /**
+     * The futures of the requests in flight.
+     */
+    private final Set<CompletableFuture<?>> pendingFutures = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Whether this client has been closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Creates and starts a new {@link InstrumentedAsyncClient} object for the given connection.
+     *
+     * @param context
+     *            the connection providing the credentials and the session to log the requests to
+     * @param maxConnections
+     *            the maximum number of connections, any further requests are queued until a connection is available
+     */
+    public InstrumentedAsyncClient(final WebDavContext context, final int maxConnections)
+    {
+        session = context.getSession();
+
+        final CredentialsProvider credentials = new BasicCredentialsProvider();
+        if (context.getUserName() != null)
+        {
+            credentials.setCredentials(AuthScope.ANY,
+                                       new UsernamePasswordCredentials(context.getUserName(), context.getUserPassword()));
+        }
+
+        final int ioThreads = XltProperties.getInstance().getProperty(PROP_IO_THREADS, 1);
+        final IOReactorConfig reactorConfig = IOReactorConfig.custom().setIoThreadCount(ioThreads).build();
+
+        httpClient = HttpAsyncClients.custom()
+                                     .setDefaultIOReactorConfig(reactorConfig)
+                                     .setMaxConnTotal(maxConnections)
+                                     .setMaxConnPerRoute(maxConnections)
+                                     .setDefaultCredentialsProvider(credentials)
+                                     .setSSLContext(CustomizedSardineImpl.createInsecureSslContext())
+                                     .setSSLHostnameVerifier(NoopHostnameVerifier.INSTANCE)
+                                     .setUserAgent(CustomizedSardineImpl.getUserAgent())
+                                     .build();
+        httpClient.start();
+    }
+
+    /**
+     * Checks whether the resource at the given URL exists using the HEAD request method.
+     *
+     * @param url
+     *            the resource URL
+     * @return the future result, <code>true</code> if the resource exists
+     */
+    public CompletableFuture<Boolean> exists(final String url)
+    {
+        return execute(new HttpHead(url), false).thenApply(response -> {
+            if (response.getStatusCode() == HttpStatus.SC_NOT_FOUND)
+            {
+                return false;
+            }
+
+            validate(response);
+
+            return true;
+        });
+    }
+
+    /**
+     * Downloads the resource at the given URL using the GET request method. The content is discarded while it is
+     * being received.
+     *
+     * @param url
+     *            the resource URL
+     * @return the future number of bytes received
+     */
+    public CompletableFuture<Long> get(final String url)
+    {
+        return execute(new HttpGet(url), false).thenApply(response -> validate(response).getContentLength());
+    }
+
+    /**
+     * Uploads the passed entity to the given URL using the PUT request method.
+     *
+     * @param url
+     *            the target URL
+     * @param entity
+     *            the entity to upload
+     * @return the future completion
+     */
+    public CompletableFuture<Void> put(final String url, final HttpEntity entity)
+    {
+        final HttpPut put = new HttpPut(url);
+        put.setEntity(entity);
+
+        return executeAndValidate(put);
+    }
+
+    /**
+     * Creates a directory at the given URL using the MKCOL request method.
+     *
+     * @param url
+     *            the directory URL
+     * @return the future completion
+     */
+    public CompletableFuture<Void> createDirectory(final String url)
+    {
+        return executeAndValidate(new HttpMkCol(url));
+    }
+
+    /**
+     * Deletes the resource at the given URL using the DELETE request method.
+     *
+     * @param url
+     *            the resource URL
+     * @return the future completion
+     */
+    public CompletableFuture<Void> delete(final String url)
+    {
+        return executeAndValidate(new HttpDelete(url));
+    }
+
+    /**
+     * Copies the resource at the given source URL to the target URL using the COPY request method, overwriting any
+     * existing resource.
+     *
+     * @param sourceUrl
+     *            the source URL
+     * @param targetUrl
+     *            the target URL
+     * @return the future completion
+     */
+    public CompletableFuture<Void> copy(final String sourceUrl, final String targetUrl)
+    {
+        return executeAndValidate(new HttpCopy(sourceUrl, targetUrl, true));
+    }
+
+    /**
+     * Moves the resource at the given source URL to the target URL using the MOVE request method, overwriting any
+     * existing resource.
+     *
+     * @param sourceUrl
+     *            the source URL
+     * @param targetUrl
+     *            the target URL
+     * @return the future completion
+     */
+    public CompletableFuture<Void> move(final String sourceUrl, final String targetUrl)
+    {
+        return executeAndValidate(new HttpMove(sourceUrl, targetUrl, true));
+    }
+
+    /**
+     * Lists the resource at the given URL (and its children, depending on the depth) using the PROPFIND request method.
+     * The same properties are requested as by the list methods of {@link CustomizedSardineImpl}.
+     *
+     * @param url
+     *            the resource URL
+     * @param depth
+     *            the listing depth (one of -1/0/1), -1 meaning infinity
+     * @return the future entries, including the resource itself
+     */
+    public CompletableFuture<List<ResourceEntry>> list(final String url, final int depth)
+    {
+        final HttpPropFind propFind = new HttpPropFind(url);
+        propFind.setDepth((depth < 0) ? "infinity" : Integer.toString(depth));
+        propFind.setEntity(new StringEntity(CustomizedSardineImpl.DEFAULT_PROPFIND_BODY,
+                                            ContentType.create("text/xml", StandardCharsets.UTF_8)));
+
+        return execute(propFind, true).thenApply(response -> {
+            validate(response);
+
+            final List<ResourceEntry> entries = new ArrayList<>();
+            try
+            {
+                MultiStatusParser.parse(new ByteArrayInputStream(response.getContent()), entries::add);
+            }
+            catch (final IOException ex)
+            {
+                throw new AsyncOperationException(ex);
+            }
+
+            return entries;
+        });
+    }
+
+    /**
+     * Executes the given request. The response is not validated.
+     *
+     * @param request
+     *            the request
+     * @param bufferContent
+     *            whether to keep the response content, otherwise it is discarded while it is being received
+     * @return the future response
+     */
+    public CompletableFuture<AsyncResponse> execute(final HttpUriRequest request, final boolean bufferContent)
+    {
+        final CompletableFuture<AsyncResponse> future = new CompletableFuture<>();
+        if (closed)
+        {
+            future.completeExceptionally(new CancellationException("Client closed"));
+            return future;
+        }
+
+        final AbstractWebDavAction<?> action = WebDavContext.getActiveAction();
+        final RequestData requestData = new RequestData((action == null) ? DEFAULT_TIMER_NAME : action.getTimerName());
+
+        final FutureCallback<AsyncResponse> callback = new FutureCallback<AsyncResponse>()
+        {
+            @Override
+            public void completed(final AsyncResponse response)
+            {
+                logRequest(requestData, request, response, false);
+                future.complete(response);
+            }
+
+            @Override
+            public void failed(final Exception ex)
+            {
+                logRequest(requestData, request, null, true);
+                future.completeExceptionally(ex);
+            }
+
+            @Override
+            public void cancelled()
+            {
+                logRequest(requestData, request, null, true);
+                future.cancel(false);
+            }
+        };
+
+        pendingFutures.add(future);
+        final Future<AsyncResponse> requestFuture = httpClient.execute(HttpAsyncMethods.create(request),
+                                                                       new ResponseConsumer(bufferContent), callback);
+
+        future.whenComplete((result, ex) -> {
+            pendingFutures.remove(future);
+
+            // abort the request if the caller is no longer interested
+            if (future.isCancelled())
+            {
+                requestFuture.cancel(true);
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Shuts down the client and closes all connections. Any request still in flight is aborted and its future is
+     * completed with a {@link CancellationException}.
+     *
+     * @throws IOException
+     *             if the client cannot be shut down properly
+     */
+    @Override
+    public void close() throws IOException
+    {
+        closed = true;
+
+        try
+        {
+            httpClient.close();
+        }
+        finally
+        {
+            // the client may drop pending requests without notifying their callbacks
+            for (final CompletableFuture<?> future : pendingFutures)
+            {
+                future.completeExceptionally(new CancellationException("Client closed"));
+            }
+        }
+    }
+
+    /**
+     * Executes the given request and validates the response.
+     *
+     * @param request
+     *            the request
+     * @return the future completion
+     */
+    private CompletableFuture<Void> executeAndValidate(final HttpUriRequest request)
+    {
+        return execute(request, false).thenAccept(InstrumentedAsyncClient::validate);
+    }
+
+    /**
+     * Checks that the given response has a success status code.
+     *
+     * @param response
+     *            the response
+     * @return the response
+     * @throws AsyncOperationException
+     *             wrapping a {@link SardineException} if the status code does not denote success
+     */
+    private static AsyncResponse validate(final AsyncResponse response)
+    {
+        final int statusCode = response.getStatusCode();
+        if (statusCode < 200 || statusCode >= 300)
+        {
+            throw new AsyncOperationException(new SardineException("Unexpected response", statusCode,
+                                                                   response.getReasonPhrase()));
+        }
+
+        return response;
+    }
+
+    /**
+     * Completes and logs the given request data object.
+     *
+     * @param requestData
+     *            the request data object
+     * @param request
+     *            the HTTP request
+     * @param response
+     *            the response, <code>null</code> if the request failed
+     * @param failed
+     *            whether the request failed
+     */
+    private void logRequest(final RequestData requestData, final HttpUriRequest request, final AsyncResponse response,
+                            final boolean failed)
+    {
+        requestData.setRunTime();
+        requestData.setHttpMethod(request.getMethod());
+        requestData.setUrl(request.getURI().toString());
+
+        if (request instanceof HttpEntityEnclosingRequest)
+        {
+            final HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            if (entity != null && entity.getContentLength() > 0)
+            {
+                requestData.setBytesSent((int) Math.min(Integer.MAX_VALUE, entity.getContentLength()));
+            }
+        }
+
+        if (response != null)
+        {
+            requestData.setResponseCode(response.getStatusCode());
+            requestData.setContentType(response.getContentType());
+            requestData.setBytesReceived((int) Math.min(Integer.MAX_VALUE, response.getContentLength()));
+        }
+
+        requestData.setFailed(failed || (response != null && response.getStatusCode() >= 500));
+
+        session.getDataManager().logDataRecord(requestData);
+    }
+
+    /**
+     * The response to an asynchronous request.
+     */
+    public static class AsyncResponse
+    {
+        /**
+         * The status code.
+         */
+        private final int statusCode;
+
+        /**
+         * The reason phrase.
+         */
+        private final String reasonPhrase;
+
+        /**
+         * The response content type, empty if unknown.
+         */
+        private final String contentType;
+
+        /**
+         * The number of content bytes received.
+         */
+        private final long contentLength;
+
+        /**
+         * The content, empty if not buffered.
+         */
+        private final byte[] content;
+
+        /**
+         * Creates a new {@link AsyncResponse} object.
+         *
+         * @param statusCode
+         *            the status code
+         * @param reasonPhrase
+         *            the reason phrase
+         * @param contentType
+         *            the response content type, empty if unknown
+         * @param contentLength
+         *            the number of content bytes received
+         * @param content
+         *            the content, empty if not buffered
+         */
+        private AsyncResponse(final int statusCode, final String reasonPhrase, final String contentType,
+                              final long contentLength, final byte[] content)
+        {
+            this.statusCode = statusCode;
+            this.reasonPhrase = reasonPhrase;
+            this.contentType = contentType;
+            this.contentLength = contentLength;
+            this.content = content;
+        }
+
+        /**
+         * Returns the status code.
+         *
+         * @return the status code
+         */
+        public int getStatusCode()
+        {
+            return statusCode;
+        }
+
+        /**
+         * Returns the reason phrase.
+         *
+         * @return the reason phrase
+         */
+        public String getReasonPhrase()
+        {
+            return reasonPhrase;
+        }
+
+        /**
+         * Returns the response content type.
+         *
+         * @return the content type, empty if unknown
+         */
+        public String getContentType()
+        {
+            return contentType;
+        }
+
+        /**
+         * Returns the number of content bytes received.
+         *
+         * @return the content length
+         */
+        public long getContentLength()
+        {
+            return contentLength;
+        }
+
+        /**
+         * Returns the response content.
+         *
+         * @return the content, empty if it was not buffered
+         */
+        public byte[] getContent()
+        {
+            return content;
+        }
+    }
+
+    /**
+     * Thrown by the stages of a future operation to pass on a checked exception. Callers see it as the cause of the
+     * {@link java.util.concurrent.CompletionException} raised by the future.
+     */
+    public static class AsyncOperationException extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Creates a new {@link AsyncOperationException} object.
+         *
+         * @param cause
+         *            the checked exception
+         */
+        public AsyncOperationException(final IOException cause)
+        {
+            super(cause);
+        }
+    }
+
+    /**
+     * Consumes the response content while it is being received, either counting or buffering it.
+     */
+    private static class ResponseConsumer extends AsyncByteConsumer<AsyncResponse>
+    {
+        /**
+         * Whether to keep the content.
+         */
+        private final boolean bufferContent;
+
+        /**
+         * The buffered content.
+         */
+        private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+        /**
+         * The response head.
+         */
+        private HttpResponse response;
+
+        /**
+         * The number of content bytes received.
+         */
+        private long contentLength;
+
+        /**
+         * Creates a new {@link ResponseConsumer} object.
+         *
+         * @param bufferContent
+         *            whether to keep the content
+         */
+        ResponseConsumer(final boolean bufferContent)
+        {
+            this.bufferContent = bufferContent;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void onResponseReceived(final HttpResponse response)
+        {
+            this.response = response;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void onByteReceived(final ByteBuffer buf, final IOControl ioControl)
+        {
+            final int length = buf.remaining();
+            contentLength += length;
+
+            if (bufferContent)
+            {
+                final byte[] chunk = new byte[length];
+                buf.get(chunk);
+                content.write(chunk, 0, length);
+            }
+            else
+            {
+                buf.position(buf.limit());
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected AsyncResponse buildResult(final HttpContext context)
+        {
+            final Header contentTypeHeader = response.getFirstHeader("Content-Type");
+
+            return new AsyncResponse(response.getStatusLine().getStatusCode(), response.getStatusLine().getReasonPhrase(),
+                                     (contentTypeHeader == null) ? "" : contentTypeHeader.getValue(), contentLength,
+                                     content.toByteArray());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void releaseResources()
+        {
+            // nothing to release
+        }
+    }
+}
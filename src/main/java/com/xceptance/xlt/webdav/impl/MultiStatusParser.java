@@ -0,0 +1,816 @@
+package com.xceptance.xlt.webdav.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.xceptance.xlt.webdav.util.ResourceEntry;
+import com.xceptance.xlt.webdav.util.ResourceStatus;
+
+/**
+ * Parses a WebDAV multi-status response body incrementally using StAX. Each response element is turned into a compact
+ * {@link ResourceEntry} and passed on to a consumer as soon as it has been read, so neither the response body nor an
+ * object tree of the whole document is ever held in memory.
+ * <p>
+ * Only the properties of property stats with a success status are taken into account. For responses to property name
+ * requests, all property names are reported as custom properties with an empty value.
+ * <p>
+ * Responses to requests that change resources, like COPY, MOVE, DELETE or PROPPATCH, can be parsed into
+ * {@link ResourceStatus} objects instead, which carry the status codes only. Finally, the lock discovery returned by a
+ * LOCK request can be searched for the timeout granted.
+ */
+final class MultiStatusParser
+{
+    /**
+     * The WebDAV namespace.
+     */
+    private static final String DAV_NAMESPACE = "DAV:";
+
+    /**
+     * The factory for StAX readers. Creating readers is thread-safe once the factory is configured.
+     */
+    private static final XMLInputFactory XML_INPUT_FACTORY;
+
+    static
+    {
+        XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+
+        // never resolve anything the server might sneak in
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    }
+
+    /**
+     * Whether the document lists property names only.
+     */
+    private final boolean namesOnly;
+
+    /**
+     * The property values of the current property stat element.
+     */
+    private final Properties propstatProperties = new Properties();
+
+    /**
+     * The successfully reported property values of the current response element.
+     */
+    private final Properties responseProperties = new Properties();
+
+    /**
+     * Parses the given multi-status document and passes an entry for each response element to the given consumer.
+     *
+     * @param in
+     *            the response body
+     * @param consumer
+     *            the consumer of the entries
+     * @return the number of entries found
+     * @throws IOException
+     *             if the body cannot be read or is not a valid multi-status document
+     */
+    static int parse(final InputStream in, final Consumer<? super ResourceEntry> consumer) throws IOException
+    {
+        return parse(in, false, consumer);
+    }
+
+    /**
+     * Parses the given multi-status document and passes an entry for each response element to the given consumer.
+     *
+     * @param in
+     *            the response body
+     * @param namesOnly
+     *            whether the document is the response to a property name request
+     * @param consumer
+     *            the consumer of the entries
+     * @return the number of entries found
+     * @throws IOException
+     *             if the body cannot be read or is not a valid multi-status document
+     */
+    static int parse(final InputStream in, final boolean namesOnly, final Consumer<? super ResourceEntry> consumer)
+        throws IOException
+    {
+        return parse(in, new MultiStatusParser(namesOnly)::readResponse, consumer);
+    }
+
+    /**
+     * Parses the given multi-status document and passes the status of each response element to the given consumer.
+     *
+     * @param in
+     *            the response body
+     * @param consumer
+     *            the consumer of the status objects
+     * @return the number of status objects found
+     * @throws IOException
+     *             if the body cannot be read or is not a valid multi-status document
+     */
+    static int parseStatus(final InputStream in, final Consumer<? super ResourceStatus> consumer) throws IOException
+    {
+        return parse(in, MultiStatusParser::readResponseStatus, consumer);
+    }
+
+    /**
+     * Reads all response elements from the given document using the given response reader.
+     *
+     * @param in
+     *            the response body
+     * @param responseReader
+     *            reads a single response element
+     * @param consumer
+     *            the consumer of the objects read
+     * @return the number of response elements found
+     * @throws IOException
+     *             if the body cannot be read or is not a valid multi-status document
+     */
+    private static <T> int parse(final InputStream in, final ResponseReader<T> responseReader,
+                                 final Consumer<? super T> consumer)
+        throws IOException
+    {
+        try
+        {
+            final XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(in);
+            try
+            {
+                int entries = 0;
+
+                while (reader.hasNext())
+                {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT && isDavElement(reader, "response"))
+                    {
+                        consumer.accept(responseReader.read(reader));
+                        entries++;
+                    }
+                }
+
+                return entries;
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+        catch (final XMLStreamException ex)
+        {
+            throw new IOException("Failed to parse multi-status response", ex);
+        }
+    }
+
+    /**
+     * Reads the timeout granted for the lock with the given token from the lock discovery in the body of a LOCK
+     * response. If the lock is not found, the timeout of the first active lock is returned.
+     *
+     * @param in
+     *            the response body
+     * @param token
+     *            the lock token
+     * @return the timeout in seconds, or -1 if the lock does not time out or no timeout was reported
+     * @throws IOException
+     *             if the body cannot be read or is not well-formed
+     */
+    static long parseLockTimeout(final InputStream in, final String token) throws IOException
+    {
+        try
+        {
+            final XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(in);
+            try
+            {
+                long firstTimeout = -1;
+                boolean first = true;
+
+                while (reader.hasNext())
+                {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT && isDavElement(reader, "activelock"))
+                    {
+                        String lockToken = null;
+                        long timeout = -1;
+
+                        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+                        {
+                            if (isDavElement(reader, "timeout"))
+                            {
+                                timeout = parseTimeout(readText(reader));
+                            }
+                            else if (isDavElement(reader, "locktoken"))
+                            {
+                                // the text of the nested href element
+                                lockToken = readText(reader);
+                            }
+                            else
+                            {
+                                skipElement(reader);
+                            }
+                        }
+
+                        if (token.equals(lockToken))
+                        {
+                            return timeout;
+                        }
+                        else if (first)
+                        {
+                            firstTimeout = timeout;
+                            first = false;
+                        }
+                    }
+                }
+
+                return firstTimeout;
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+        catch (final XMLStreamException ex)
+        {
+            throw new IOException("Failed to parse lock discovery", ex);
+        }
+    }
+
+    /**
+     * Parses a lock timeout value like "Second-3600" or "Infinite". Of several values, the first one is used.
+     *
+     * @param timeout
+     *            the timeout value
+     * @return the timeout in seconds, or -1 if the lock does not time out or the value is malformed
+     */
+    static long parseTimeout(final String timeout)
+    {
+        final int end = timeout.indexOf(',');
+        final String value = ((end < 0) ? timeout : timeout.substring(0, end)).trim();
+
+        return value.regionMatches(true, 0, "Second-", 0, 7) ? parseLong(value.substring(7)) : -1;
+    }
+
+    /**
+     * Creates a new {@link MultiStatusParser} object. Use {@link #parse(InputStream, boolean, Consumer)}.
+     *
+     * @param namesOnly
+     *            whether the document lists property names only
+     */
+    private MultiStatusParser(final boolean namesOnly)
+    {
+        this.namesOnly = namesOnly;
+    }
+
+    /**
+     * Reads a response element. The reader is positioned at its start tag and will be positioned at its end tag.
+     *
+     * @param reader
+     *            the reader
+     * @return the entry
+     * @throws XMLStreamException
+     *             if the document is not well-formed
+     */
+    private ResourceEntry readResponse(final XMLStreamReader reader) throws XMLStreamException
+    {
+        String href = null;
+        int statusCode = -1;
+        responseProperties.clear();
+
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+        {
+            if (isDavElement(reader, "href"))
+            {
+                // there may be more than one, but the first one is the one of interest
+                final String text = readText(reader);
+                if (href == null)
+                {
+                    href = text;
+                }
+            }
+            else if (isDavElement(reader, "status"))
+            {
+                statusCode = parseStatusLine(readText(reader));
+            }
+            else if (isDavElement(reader, "propstat"))
+            {
+                readPropstat(reader);
+            }
+            else
+            {
+                skipElement(reader);
+            }
+        }
+
+        final Properties p = responseProperties;
+
+        return new ResourceEntry(decodeHref(href), statusCode, p.directory, p.contentLength, p.lastModified, p.creationDate,
+                                 p.contentType, p.etag, p.displayName, p.customProperties);
+    }
+
+    /**
+     * Reads the status codes of a response element. The reader is positioned at its start tag and will be positioned at
+     * its end tag.
+     *
+     * @param reader
+     *            the reader
+     * @return the status
+     * @throws XMLStreamException
+     *             if the document is not well-formed
+     */
+    private static ResourceStatus readResponseStatus(final XMLStreamReader reader) throws XMLStreamException
+    {
+        String href = null;
+        int statusCode = -1;
+        Map<QName, Integer> propertyStatusCodes = null;
+
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+        {
+            if (isDavElement(reader, "href"))
+            {
+                final String text = readText(reader);
+                if (href == null)
+                {
+                    href = text;
+                }
+            }
+            else if (isDavElement(reader, "status"))
+            {
+                statusCode = parseStatusLine(readText(reader));
+            }
+            else if (isDavElement(reader, "propstat"))
+            {
+                // the status follows the property names
+                final List<QName> names = new ArrayList<>();
+                int propstatStatusCode = -1;
+
+                while (reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+                {
+                    if (isDavElement(reader, "prop"))
+                    {
+                        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+                        {
+                            names.add(reader.getName());
+                            skipElement(reader);
+                        }
+                    }
+                    else if (isDavElement(reader, "status"))
+                    {
+                        propstatStatusCode = parseStatusLine(readText(reader));
+                    }
+                    else
+                    {
+                        skipElement(reader);
+                    }
+                }
+
+                if (propertyStatusCodes == null)
+                {
+                    propertyStatusCodes = new HashMap<>();
+                }
+                for (final QName name : names)
+                {
+                    propertyStatusCodes.put(name, propstatStatusCode);
+                }
+            }
+            else
+            {
+                skipElement(reader);
+            }
+        }
+
+        return new ResourceStatus(decodeHref(href), statusCode, propertyStatusCodes);
+    }
+
+    /**
+     * Reads a property stat element and takes over its properties if they were reported successfully. The reader is
+     * positioned at its start tag and will be positioned at its end tag.
+     *
+     * @param reader
+     *            the reader
+     * @throws XMLStreamException
+     *             if the document is not well-formed
+     */
+    private void readPropstat(final XMLStreamReader reader) throws XMLStreamException
+    {
+        // the status follows the properties, so keep them aside until we know it
+        propstatProperties.clear();
+        int statusCode = -1;
+
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+        {
+            if (isDavElement(reader, "prop"))
+            {
+                while (reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+                {
+                    if (namesOnly)
+                    {
+                        propstatProperties.putCustomProperty(reader.getName(), "");
+                        skipElement(reader);
+                    }
+                    else
+                    {
+                        readProperty(reader, propstatProperties);
+                    }
+                }
+            }
+            else if (isDavElement(reader, "status"))
+            {
+                statusCode = parseStatusLine(readText(reader));
+            }
+            else
+            {
+                skipElement(reader);
+            }
+        }
+
+        if (statusCode >= 200 && statusCode < 300)
+        {
+            responseProperties.takeOver(propstatProperties);
+        }
+    }
+
+    /**
+     * Reads a single property element. The reader is positioned at its start tag and will be positioned at its end tag.
+     *
+     * @param reader
+     *            the reader
+     * @param properties
+     *            the properties to update
+     * @throws XMLStreamException
+     *             if the document is not well-formed
+     */
+    private static void readProperty(final XMLStreamReader reader, final Properties properties) throws XMLStreamException
+    {
+        if (!DAV_NAMESPACE.equals(reader.getNamespaceURI()))
+        {
+            properties.putCustomProperty(reader.getName(), readText(reader));
+            return;
+        }
+
+        switch (reader.getLocalName())
+        {
+            case "resourcetype":
+                properties.directory = readResourceType(reader);
+                break;
+            case "getcontentlength":
+                properties.contentLength = parseLong(readText(reader));
+                break;
+            case "getlastmodified":
+                properties.lastModified = parseDate(readText(reader), DateTimeFormatter.RFC_1123_DATE_TIME);
+                break;
+            case "creationdate":
+                properties.creationDate = parseDate(readText(reader), DateTimeFormatter.ISO_DATE_TIME);
+                break;
+            case "getcontenttype":
+                properties.contentType = readText(reader);
+                break;
+            case "getetag":
+                properties.etag = readText(reader);
+                break;
+            case "displayname":
+                properties.displayName = readText(reader);
+                break;
+            default:
+                properties.putCustomProperty(reader.getName(), readText(reader));
+                break;
+        }
+    }
+
+    /**
+     * Reads a resource type element and checks whether it denotes a collection. The reader is positioned at its start
+     * tag and will be positioned at its end tag.
+     *
+     * @param reader
+     *            the reader
+     * @return whether the resource is a collection
+     * @throws XMLStreamException
+     *             if the document is not well-formed
+     */
+    private static boolean readResourceType(final XMLStreamReader reader) throws XMLStreamException
+    {
+        boolean collection = false;
+
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+        {
+            collection |= isDavElement(reader, "collection");
+            skipElement(reader);
+        }
+
+        return collection;
+    }
+
+    /**
+     * Returns the text content of the current element, including the text of any nested element. The reader is
+     * positioned at its start tag and will be positioned at its end tag.
+     *
+     * @param reader
+     *            the reader
+     * @return the trimmed text
+     * @throws XMLStreamException
+     *             if the document is not well-formed
+     */
+    private static String readText(final XMLStreamReader reader) throws XMLStreamException
+    {
+        String text = null;
+        StringBuilder sb = null;
+        int depth = 1;
+
+        while (depth > 0)
+        {
+            switch (reader.next())
+            {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                    // most elements contain a single text chunk only
+                    if (text == null)
+                    {
+                        text = reader.getText();
+                    }
+                    else
+                    {
+                        if (sb == null)
+                        {
+                            sb = new StringBuilder(text);
+                        }
+                        sb.append(reader.getText());
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        if (sb != null)
+        {
+            text = sb.toString();
+        }
+
+        return (text == null) ? "" : text.trim();
+    }
+
+    /**
+     * Skips the current element including all of its children. The reader is positioned at its start tag and will be
+     * positioned at its end tag.
+     *
+     * @param reader
+     *            the reader
+     * @throws XMLStreamException
+     *             if the document is not well-formed
+     */
+    private static void skipElement(final XMLStreamReader reader) throws XMLStreamException
+    {
+        int depth = 1;
+
+        while (depth > 0)
+        {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT)
+            {
+                depth++;
+            }
+            else if (event == XMLStreamConstants.END_ELEMENT)
+            {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Checks whether the reader is positioned at an element with the given name in the WebDAV namespace.
+     *
+     * @param reader
+     *            the reader
+     * @param localName
+     *            the local name of the element
+     * @return <code>true</code> if so, <code>false</code> otherwise
+     */
+    private static boolean isDavElement(final XMLStreamReader reader, final String localName)
+    {
+        return localName.equals(reader.getLocalName()) && DAV_NAMESPACE.equals(reader.getNamespaceURI());
+    }
+
+    /**
+     * Extracts the status code from a status line like "HTTP/1.1 200 OK".
+     *
+     * @param statusLine
+     *            the status line
+     * @return the status code, or -1 if the status line is malformed
+     */
+    static int parseStatusLine(final String statusLine)
+    {
+        final int start = statusLine.indexOf(' ') + 1;
+        if (start == 0 || statusLine.length() < start + 3)
+        {
+            return -1;
+        }
+
+        return (int) parseLong(statusLine.substring(start, start + 3));
+    }
+
+    /**
+     * Parses a non-negative number.
+     *
+     * @param text
+     *            the text to parse
+     * @return the number, or -1 if the text is not a number
+     */
+    private static long parseLong(final String text)
+    {
+        try
+        {
+            return Long.parseLong(text);
+        }
+        catch (final NumberFormatException ex)
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * Parses a date.
+     *
+     * @param text
+     *            the text to parse
+     * @param format
+     *            the expected format
+     * @return the date in ms since epoch, or -1 if the text is not a valid date
+     */
+    private static long parseDate(final String text, final DateTimeFormatter format)
+    {
+        try
+        {
+            return format.parse(text, Instant::from).toEpochMilli();
+        }
+        catch (final DateTimeException ex)
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the decoded path of the given href, which may be either an absolute URL or an absolute path.
+     *
+     * @param href
+     *            the href
+     * @return the path
+     */
+    private static String decodeHref(final String href)
+    {
+        if (href == null)
+        {
+            return "";
+        }
+
+        try
+        {
+            final String path = new URI(href).getPath();
+
+            return (path == null) ? href : path;
+        }
+        catch (final URISyntaxException ex)
+        {
+            // some servers do not encode the href properly -> take it as is
+            return href;
+        }
+    }
+
+    /**
+     * Reads a single response element.
+     *
+     * @param <T>
+     *            the type of the object created from the element
+     */
+    @FunctionalInterface
+    private interface ResponseReader<T>
+    {
+        /**
+         * Reads a response element. The reader is positioned at its start tag and will be positioned at its end tag.
+         *
+         * @param reader
+         *            the reader
+         * @return the object created from the element
+         * @throws XMLStreamException
+         *             if the document is not well-formed
+         */
+        T read(XMLStreamReader reader) throws XMLStreamException;
+    }
+
+    /**
+     * The property values found for a resource.
+     */
+    private static class Properties
+    {
+        /**
+         * Whether the resource is a collection.
+         */
+        boolean directory;
+
+        /**
+         * The content length, -1 if unknown.
+         */
+        long contentLength;
+
+        /**
+         * The last modification time, -1 if unknown.
+         */
+        long lastModified;
+
+        /**
+         * The creation time, -1 if unknown.
+         */
+        long creationDate;
+
+        /**
+         * The content type.
+         */
+        String contentType;
+
+        /**
+         * The entity tag.
+         */
+        String etag;
+
+        /**
+         * The display name.
+         */
+        String displayName;
+
+        /**
+         * Any other property, created on demand.
+         */
+        Map<QName, String> customProperties;
+
+        /**
+         * Resets all values.
+         */
+        void clear()
+        {
+            directory = false;
+            contentLength = -1;
+            lastModified = -1;
+            creationDate = -1;
+            contentType = null;
+            etag = null;
+            displayName = null;
+            customProperties = null;
+        }
+
+        /**
+         * Takes over all values set in the given properties.
+         *
+         * @param other
+         *            the other properties
+         */
+        void takeOver(final Properties other)
+        {
+            directory |= other.directory;
+            contentLength = (other.contentLength < 0) ? contentLength : other.contentLength;
+            lastModified = (other.lastModified < 0) ? lastModified : other.lastModified;
+            creationDate = (other.creationDate < 0) ? creationDate : other.creationDate;
+            contentType = (other.contentType == null) ? contentType : other.contentType;
+            etag = (other.etag == null) ? etag : other.etag;
+            displayName = (other.displayName == null) ? displayName : other.displayName;
+
+            if (other.customProperties != null)
+            {
+                if (customProperties == null)
+                {
+                    customProperties = other.customProperties;
+                }
+                else
+                {
+                    customProperties.putAll(other.customProperties);
+                }
+            }
+        }
+
+        /**
+         * Adds a property without special handling.
+         *
+         * @param name
+         *            the property name
+         * @param value
+         *            the property value
+         */
+        void putCustomProperty(final QName name, final String value)
+        {
+            if (customProperties == null)
+            {
+                customProperties = new HashMap<>(4);
+            }
+
+            customProperties.put(name, value);
+        }
+    }
+}
@@ -0,0 +1,504 @@
+package com.xceptance.xlt.webdav.impl;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.http.HttpRequest;
+import org.apache.http.client.methods.HttpUriRequest;
+
+import com.xceptance.xlt.api.util.XltProperties;
+import com.xceptance.xlt.webdav.util.WebDavContext;
+
+/**
+ * Runs tasks of a WebDAV action with bounded concurrency.
+ * <p>
+ * The worker threads are created in the thread group of the calling thread. This way, they belong to the same XLT
+ * session as the calling virtual user, so all requests made by the workers are still logged for the current action.
+ * Network statistics are gathered per thread, so each worker has to complete its requests on its own.
+ * <p>
+ * On Java 21 and later, the workers can be virtual threads instead, see {@link #PROP_VIRTUAL_THREADS}. Virtual threads
+ * do not belong to the thread group of the virtual user, but they still find its WebDAV connection (and hence its
+ * session) as every worker, virtual or not, is bound to the {@link WebDavContext} of the calling thread explicitly. On
+ * older Java versions, the property is ignored.
+ * <p>
+ * If a task fails, the requests still in flight in the other workers are aborted, as interrupting a worker does not
+ * abort a blocking read, and the failure is rethrown only after all workers have ended. This way, no request of the
+ * action is still running or logged once the action has ended.
+ */
+public final class ParallelTaskRunner
+{
+    /**
+     * The property that controls whether the workers are virtual threads instead of platform threads.
+     */
+    public static final String PROP_VIRTUAL_THREADS = "com.xceptance.xlt.webdav.virtualThreads";
+
+    /**
+     * The method <code>Thread.ofVirtual()</code>, <code>null</code> if virtual threads are not available or not
+     * enabled. Looked up reflectively as the library still supports Java 8.
+     */
+    private static final Method OF_VIRTUAL;
+
+    /**
+     * The method <code>Thread.Builder.name(String, long)</code>.
+     */
+    private static final Method BUILDER_NAME;
+
+    /**
+     * The method <code>Thread.Builder.factory()</code>.
+     */
+    private static final Method BUILDER_FACTORY;
+
+    /**
+     * The requests in flight of the run the current worker thread belongs to, <code>null</code> for other threads.
+     */
+    private static final ThreadLocal<InFlightRequests> IN_FLIGHT_REQUESTS = new ThreadLocal<>();
+
+    static
+    {
+        Method ofVirtual = null;
+        Method builderName = null;
+        Method builderFactory = null;
+
+        if (XltProperties.getInstance().getProperty(PROP_VIRTUAL_THREADS, false))
+        {
+            try
+            {
+                final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+
+                builderName = builderClass.getMethod("name", String.class, long.class);
+                builderFactory = builderClass.getMethod("factory");
+                ofVirtual = Thread.class.getMethod("ofVirtual");
+            }
+            catch (final ReflectiveOperationException ex)
+            {
+                // virtual threads not supported, fall back to platform threads
+                ofVirtual = null;
+            }
+        }
+
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = builderName;
+        BUILDER_FACTORY = builderFactory;
+    }
+
+    /**
+     * Runs the given tasks with at most the given number of tasks running at the same time and waits for all of them
+     * to finish. If the concurrency is 1 or less, the tasks are run one after another in the calling thread.
+     * <p>
+     * If a task fails, the remaining tasks are cancelled, the requests still in flight are aborted, and the failure is
+     * rethrown once all workers have ended.
+     *
+     * @param tasks
+     *            the tasks to run
+     * @param concurrency
+     *            the maximum number of tasks running in parallel
+     * @return the results of the tasks in the same order as the tasks
+     * @throws Exception
+     *             the exception thrown by the first failing task
+     */
+    public static <T> List<T> run(final List<? extends Callable<T>> tasks, final int concurrency) throws Exception
+    {
+        final List<T> results = new ArrayList<>(tasks.size());
+
+        if (concurrency <= 1 || tasks.size() <= 1)
+        {
+            for (final Callable<T> task : tasks)
+            {
+                results.add(task.call());
+            }
+
+            return results;
+        }
+
+        final InFlightRequests inFlightRequests = new InFlightRequests();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, tasks.size()),
+                                                                      newThreadFactory(Thread.currentThread(),
+                                                                                       inFlightRequests));
+        boolean completed = false;
+        try
+        {
+            final CompletionService<T> completionService = new ExecutorCompletionService<>(executor);
+            final List<Future<T>> futures = new ArrayList<>(tasks.size());
+            for (final Callable<T> task : tasks)
+            {
+                futures.add(completionService.submit(task));
+            }
+
+            // check the tasks in the order they end, so a failure is noticed while other tasks are still running
+            for (int i = 0; i < futures.size(); i++)
+            {
+                try
+                {
+                    completionService.take().get();
+                }
+                catch (final ExecutionException ex)
+                {
+                    final Throwable cause = ex.getCause();
+                    if (cause instanceof Exception)
+                    {
+                        throw (Exception) cause;
+                    }
+                    else if (cause instanceof Error)
+                    {
+                        throw (Error) cause;
+                    }
+
+                    throw ex;
+                }
+            }
+
+            for (final Future<T> future : futures)
+            {
+                results.add(future.get());
+            }
+
+            completed = true;
+
+            return results;
+        }
+        finally
+        {
+            if (!completed)
+            {
+                // interrupting the workers does not abort a blocking read, so abort the requests explicitly
+                inFlightRequests.abortAll();
+            }
+
+            // cancel the tasks not started yet and wait for the running ones to end, so that none of them is still
+            // sending requests or updating the action once the action has ended
+            executor.shutdownNow();
+            awaitTermination(executor);
+        }
+    }
+
+    /**
+     * Processes all items delivered by the given iterator with at most the given number of items being processed at the
+     * same time. Other than {@link #run(List, int)}, no task object is created per item, and the items are pulled from
+     * the iterator only when a worker is ready to process them. This way, even millions of items can be processed
+     * without holding all of them in memory.
+     * <p>
+     * If processing an item fails, the workers stop taking new items and the failure is rethrown.
+     *
+     * @param items
+     *            the items to process
+     * @param concurrency
+     *            the maximum number of items processed in parallel
+     * @param task
+     *            the task to apply to each item
+     * @throws Exception
+     *             the exception thrown by the first failing task
+     */
+    public static <T> void forEach(final Iterator<? extends T> items, final int concurrency, final ItemTask<? super T> task)
+        throws Exception
+    {
+        final AtomicBoolean failed = new AtomicBoolean();
+        final Lock lock = new ReentrantLock();
+
+        final Callable<Void> worker = new Callable<Void>()
+        {
+            @Override
+            public Void call() throws Exception
+            {
+                try
+                {
+                    T item;
+                    while (!failed.get() && (item = nextItem(items, lock)) != null)
+                    {
+                        task.process(item);
+                    }
+
+                    return null;
+                }
+                catch (final Exception | Error ex)
+                {
+                    failed.set(true);
+                    throw ex;
+                }
+            }
+        };
+
+        final List<Callable<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, concurrency); i++)
+        {
+            workers.add(worker);
+        }
+
+        run(workers, concurrency);
+    }
+
+    /**
+     * Returns whether the workers are virtual threads.
+     *
+     * @return <code>true</code> if virtual threads are enabled and supported, <code>false</code> otherwise
+     */
+    public static boolean isUsingVirtualThreads()
+    {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Registers the given request as being in flight if the current thread is a worker and the request can be
+     * aborted, so it can be aborted in case another task fails. If a task has failed already, the request is aborted
+     * right away.
+     *
+     * @param request
+     *            the request about to be sent
+     * @return the callback to run once the request is complete, i.e. its response has been consumed
+     */
+    static Runnable requestStarted(final HttpRequest request)
+    {
+        final InFlightRequests inFlightRequests = IN_FLIGHT_REQUESTS.get();
+        if (inFlightRequests == null || !(request instanceof HttpUriRequest))
+        {
+            return () -> {
+            };
+        }
+
+        final HttpUriRequest abortableRequest = (HttpUriRequest) request;
+        inFlightRequests.add(abortableRequest);
+
+        return () -> inFlightRequests.remove(abortableRequest);
+    }
+
+    /**
+     * Waits for all workers of the given executor to end. If the calling thread is interrupted, it stops waiting.
+     *
+     * @param executor
+     *            the executor, already shut down
+     */
+    private static void awaitTermination(final ExecutorService executor)
+    {
+        try
+        {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        catch (final InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Creates the factory for the worker threads used on behalf of the given thread. The workers are bound to the WebDAV
+     * connection of the given thread and to the requests in flight of their run while they run.
+     *
+     * @param parent
+     *            the thread that uses the workers
+     * @param inFlightRequests
+     *            the requests in flight of the run
+     * @return the thread factory
+     */
+    private static ThreadFactory newThreadFactory(final Thread parent, final InFlightRequests inFlightRequests)
+    {
+        final ThreadFactory threadFactory = newPlainThreadFactory(parent);
+        final WebDavContext context = WebDavContext.getCurrent();
+
+        return r -> threadFactory.newThread(() -> {
+            WebDavContext.setCurrent(context);
+            IN_FLIGHT_REQUESTS.set(inFlightRequests);
+            try
+            {
+                r.run();
+            }
+            finally
+            {
+                IN_FLIGHT_REQUESTS.remove();
+                WebDavContext.setCurrent(null);
+            }
+        });
+    }
+
+    /**
+     * Creates the factory for virtual or platform worker threads used on behalf of the given thread.
+     *
+     * @param parent
+     *            the thread that uses the workers
+     * @return the thread factory
+     */
+    private static ThreadFactory newPlainThreadFactory(final Thread parent)
+    {
+        if (OF_VIRTUAL != null)
+        {
+            try
+            {
+                final Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), parent.getName() + "-WebDAV-", 1L);
+
+                return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+            }
+            catch (final ReflectiveOperationException ex)
+            {
+                // should not happen, fall back to platform threads
+            }
+        }
+
+        return new WorkerThreadFactory(parent);
+    }
+
+    /**
+     * Returns the next item of the given iterator, which is shared by all workers. Uses an explicit lock instead of a
+     * monitor since the iterator may send requests, which would pin the carrier of a virtual thread.
+     *
+     * @param items
+     *            the iterator
+     * @param lock
+     *            the lock guarding the iterator
+     * @return the next item, or <code>null</code> if there are no more items
+     */
+    private static <T> T nextItem(final Iterator<? extends T> items, final Lock lock)
+    {
+        lock.lock();
+        try
+        {
+            return items.hasNext() ? items.next() : null;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A task to apply to each item processed by {@link ParallelTaskRunner#forEach(Iterator, int, ItemTask)}.
+     *
+     * @param <T>
+     *            the type of the items
+     */
+    public interface ItemTask<T>
+    {
+        /**
+         * Processes the given item.
+         *
+         * @param item
+         *            the item
+         * @throws Exception
+         *             if anything goes wrong
+         */
+        void process(T item) throws Exception;
+    }
+
+    /**
+     * The requests in flight of all workers of a run.
+     */
+    private static final class InFlightRequests
+    {
+        /**
+         * The requests.
+         */
+        private final Set<HttpUriRequest> requests = ConcurrentHashMap.newKeySet();
+
+        /**
+         * Whether the requests have been aborted.
+         */
+        private volatile boolean aborted;
+
+        /**
+         * Adds a request. If the requests have been aborted already, the request is aborted as well.
+         *
+         * @param request
+         *            the request
+         */
+        void add(final HttpUriRequest request)
+        {
+            requests.add(request);
+
+            // check after adding, so a request added while aborting is aborted either here or there
+            if (aborted)
+            {
+                request.abort();
+            }
+        }
+
+        /**
+         * Removes a request that is complete.
+         *
+         * @param request
+         *            the request
+         */
+        void remove(final HttpUriRequest request)
+        {
+            requests.remove(request);
+        }
+
+        /**
+         * Aborts all requests in flight and any request added later on.
+         */
+        void abortAll()
+        {
+            aborted = true;
+
+            for (final HttpUriRequest request : requests)
+            {
+                request.abort();
+            }
+        }
+    }
+
+    /**
+     * Creates daemon worker threads in the thread group of the given parent thread.
+     */
+    private static class WorkerThreadFactory implements ThreadFactory
+    {
+        /**
+         * The thread group to create the threads in.
+         */
+        private final ThreadGroup threadGroup;
+
+        /**
+         * The name prefix of the threads.
+         */
+        private final String namePrefix;
+
+        /**
+         * The number of threads created so far.
+         */
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        /**
+         * Creates a new {@link WorkerThreadFactory} object.
+         *
+         * @param parent
+         *            the thread that uses the workers
+         */
+        WorkerThreadFactory(final Thread parent)
+        {
+            threadGroup = parent.getThreadGroup();
+            namePrefix = parent.getName() + "-WebDAV-";
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Thread newThread(final Runnable r)
+        {
+            final Thread thread = new Thread(threadGroup, r, namePrefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+
+            return thread;
+        }
+    }
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private ParallelTaskRunner()
+    {
+    }
+}
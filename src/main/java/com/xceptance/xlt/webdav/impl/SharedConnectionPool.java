@@ -0,0 +1,126 @@
+package com.xceptance.xlt.webdav.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.config.Registry;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.impl.client.IdleConnectionEvictor;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import com.xceptance.xlt.api.util.XltProperties;
+import com.xceptance.xlt.engine.dns.XltDnsResolver;
+import com.xceptance.xlt.engine.htmlunit.apache.XltDnsResolverAdapterForApache;
+
+/**
+ * Holds the connection pool that is shared by all WebDAV clients in this JVM if shared pooling is enabled. By default,
+ * each client has its own pool, so each virtual user has to open its own connections.
+ * <p>
+ * The pool is configured by the following properties:
+ * <ul>
+ * <li>{@value #PROP_ENABLED}: whether to use a shared pool at all (default: false)</li>
+ * <li>{@value #PROP_MAX_TOTAL}: the maximum number of connections in the pool (default: 200)</li>
+ * <li>{@value #PROP_MAX_PER_ROUTE}: the maximum number of connections per route (default: 20)</li>
+ * <li>{@value #PROP_IDLE_TIMEOUT}: the time in ms after which idle connections are evicted, 0 to disable (default:
+ * 0)</li>
+ * <li>{@value #PROP_VALIDATE_AFTER_INACTIVITY}: the time in ms of inactivity after which a connection is validated before
+ * being reused (default: 2000)</li>
+ * </ul>
+ */
+final class SharedConnectionPool
+{
+    /**
+     * The common property prefix.
+     */
+    private static final String PROP_PREFIX = "com.xceptance.xlt.webdav.connectionPool.";
+
+    /**
+     * Whether to use a shared pool.
+     */
+    static final String PROP_ENABLED = PROP_PREFIX + "shared";
+
+    /**
+     * The maximum number of connections in the pool.
+     */
+    static final String PROP_MAX_TOTAL = PROP_PREFIX + "maxTotal";
+
+    /**
+     * The maximum number of connections per route.
+     */
+    static final String PROP_MAX_PER_ROUTE = PROP_PREFIX + "maxPerRoute";
+
+    /**
+     * The idle time in ms after which connections are evicted.
+     */
+    static final String PROP_IDLE_TIMEOUT = PROP_PREFIX + "idleTimeout";
+
+    /**
+     * The inactivity time in ms after which connections are validated before reuse.
+     */
+    static final String PROP_VALIDATE_AFTER_INACTIVITY = PROP_PREFIX + "validateAfterInactivity";
+
+    /**
+     * The shared connection manager. Created lazily.
+     */
+    private static PoolingHttpClientConnectionManager connectionManager;
+
+    /**
+     * Returns whether shared pooling is enabled.
+     *
+     * @return <code>true</code> if all clients share one pool, <code>false</code> otherwise
+     */
+    static boolean isEnabled()
+    {
+        return XltProperties.getInstance().getProperty(PROP_ENABLED, false);
+    }
+
+    /**
+     * Returns the shared connection manager, creating it first if necessary.
+     *
+     * @param schemeRegistry
+     *            the registry of socket factories to use when the connection manager needs to be created
+     * @return the connection manager
+     */
+    static synchronized PoolingHttpClientConnectionManager getConnectionManager(final Registry<ConnectionSocketFactory> schemeRegistry)
+    {
+        if (connectionManager == null)
+        {
+            final XltProperties props = XltProperties.getInstance();
+
+            // pass our DNS resolver here as the client builder ignores it when a connection manager is given
+            final PoolingHttpClientConnectionManager cm = new PoolingHttpClientConnectionManager(schemeRegistry,
+                                                                                                 new XltDnsResolverAdapterForApache(new XltDnsResolver()));
+            cm.setMaxTotal(props.getProperty(PROP_MAX_TOTAL, 200));
+            cm.setDefaultMaxPerRoute(props.getProperty(PROP_MAX_PER_ROUTE, 20));
+            cm.setValidateAfterInactivity(props.getProperty(PROP_VALIDATE_AFTER_INACTIVITY, 2000));
+
+            // the client builder does not evict idle connections from shared pools, so we have to do it ourselves
+            final long idleTimeout = props.getProperty(PROP_IDLE_TIMEOUT, 0L);
+            if (idleTimeout > 0)
+            {
+                new IdleConnectionEvictor(cm, idleTimeout, TimeUnit.MILLISECONDS).start();
+            }
+
+            connectionManager = cm;
+        }
+
+        return connectionManager;
+    }
+
+    /**
+     * Returns the maximum number of connections per route of the shared pool.
+     *
+     * @return the maximum number of connections
+     */
+    static synchronized int getMaxPerRoute()
+    {
+        return (connectionManager == null) ? XltProperties.getInstance().getProperty(PROP_MAX_PER_ROUTE, 20)
+                                           : connectionManager.getDefaultMaxPerRoute();
+    }
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private SharedConnectionPool()
+    {
+    }
+}
@@ -0,0 +1,162 @@
+package com.xceptance.xlt.webdav.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.conn.EofSensorInputStream;
+import org.apache.http.conn.EofSensorWatcher;
+import org.apache.http.entity.HttpEntityWrapper;
+
+/**
+ * A response entity that hands the content of the wrapped entity through unbuffered, but notifies a listener as soon
+ * as the content stream has been read to the end, was closed, or failed. This way, the request details can be logged
+ * once the response is complete without having to keep the whole content in memory.
+ *
+ * @see CloseableHttpClientWrapper
+ */
+class StreamingResponseEntity extends HttpEntityWrapper
+{
+    /**
+     * Listener that gets notified when the response content has been consumed.
+     */
+    interface Listener
+    {
+        /**
+         * Called exactly once when the response content has been read to the end, was closed, or reading it failed.
+         *
+         * @param ex
+         *            the exception that occurred while reading the content, or <code>null</code> if there was none
+         */
+        void contentConsumed(IOException ex);
+    }
+
+    /**
+     * The listener to notify.
+     */
+    private final Listener listener;
+
+    /**
+     * Whether the listener has already been notified.
+     */
+    private boolean notified;
+
+    /**
+     * Creates a new {@link StreamingResponseEntity} object.
+     *
+     * @param wrappedEntity
+     *            the entity to wrap
+     * @param listener
+     *            the listener to notify
+     */
+    StreamingResponseEntity(final HttpEntity wrappedEntity, final Listener listener)
+    {
+        super(wrappedEntity);
+
+        this.listener = listener;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public InputStream getContent() throws IOException
+    {
+        final InputStream content;
+        try
+        {
+            content = super.getContent();
+        }
+        catch (final IOException ex)
+        {
+            notifyListener(ex);
+            throw ex;
+        }
+
+        return new EofSensorInputStream(content, new EofSensorWatcher()
+        {
+            @Override
+            public boolean eofDetected(final InputStream wrapped) throws IOException
+            {
+                // close the wrapped stream first to release the connection
+                try
+                {
+                    wrapped.close();
+                }
+                finally
+                {
+                    notifyListener(null);
+                }
+
+                return false;
+            }
+
+            @Override
+            public boolean streamClosed(final InputStream wrapped) throws IOException
+            {
+                try
+                {
+                    wrapped.close();
+                }
+                finally
+                {
+                    notifyListener(null);
+                }
+
+                return false;
+            }
+
+            @Override
+            public boolean streamAbort(final InputStream wrapped) throws IOException
+            {
+                notifyListener(new IOException("Reading the response content was aborted"));
+
+                return true;
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isStreaming()
+    {
+        return !notified;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeTo(final OutputStream outStream) throws IOException
+    {
+        // route the content through our stream to get notified
+        try (final InputStream in = getContent())
+        {
+            final byte[] buffer = new byte[8192];
+
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) != -1)
+            {
+                outStream.write(buffer, 0, bytesRead);
+            }
+        }
+    }
+
+    /**
+     * Notifies the listener unless this has been done before.
+     *
+     * @param ex
+     *            the exception that occurred while reading the content, if any
+     */
+    private void notifyListener(final IOException ex)
+    {
+        if (!notified)
+        {
+            notified = true;
+            listener.contentConsumed(ex);
+        }
+    }
+}
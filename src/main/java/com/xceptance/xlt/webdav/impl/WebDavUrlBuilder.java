@@ -0,0 +1,288 @@
+package com.xceptance.xlt.webdav.impl;
+
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Builds encoded absolute URLs for the resources of a WebDAV connection. Sardine needs encoded URLs, but returns
+ * decoded ones, so any path needs to be encoded before it can be used in subsequent requests.
+ * <p>
+ * The encoded host and WebDAV base directory parts are computed only once per connection, so only the relative part
+ * needs to be encoded for each URL. Since scenarios tend to access the same paths over and over again, the most
+ * recently built URLs are cached.
+ */
+public final class WebDavUrlBuilder
+{
+    /**
+     * The maximum number of URLs to cache.
+     */
+    private static final int CACHE_SIZE = 256;
+
+    /**
+     * The hex digits used for percent-encoding.
+     */
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * The ASCII characters that may appear unencoded in a path. These are the same as accepted by {@link URI} in paths,
+     * except for the percent character which is always encoded.
+     */
+    private static final boolean[] LEGAL_PATH_CHARS = new boolean[128];
+
+    static
+    {
+        for (char c = 'a'; c <= 'z'; c++)
+        {
+            LEGAL_PATH_CHARS[c] = true;
+        }
+        for (char c = 'A'; c <= 'Z'; c++)
+        {
+            LEGAL_PATH_CHARS[c] = true;
+        }
+        for (char c = '0'; c <= '9'; c++)
+        {
+            LEGAL_PATH_CHARS[c] = true;
+        }
+        for (final char c : "_-!.~'()*,;:$&+=/@".toCharArray())
+        {
+            LEGAL_PATH_CHARS[c] = true;
+        }
+    }
+
+    /**
+     * The host name (incl. protocol) as configured.
+     */
+    private final String hostName;
+
+    /**
+     * The WebDAV base directory as configured.
+     */
+    private final String webDavPath;
+
+    /**
+     * The encoded host URL without a trailing slash. Computed lazily, possibly more than once if threads race.
+     */
+    private volatile String hostUrl;
+
+    /**
+     * The encoded URL of the WebDAV base directory with a trailing slash. Computed lazily, possibly more than once if
+     * threads race.
+     */
+    private volatile String baseUrl;
+
+    /**
+     * Guards the URL cache. An explicit lock does not pin the carrier of a virtual thread while waiting.
+     */
+    private final Lock cacheLock = new ReentrantLock();
+
+    /**
+     * The most recently built URLs, keyed by relative path.
+     */
+    private final Map<String, String> relativeUrlCache = new LinkedHashMap<String, String>(CACHE_SIZE, 0.75f, true)
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, String> eldest)
+        {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Creates a new {@link WebDavUrlBuilder} object.
+     *
+     * @param hostName
+     *            the host name and the protocol to use
+     * @param webDavPath
+     *            the WebDAV base directory relative to the host
+     */
+    public WebDavUrlBuilder(final String hostName, final String webDavPath)
+    {
+        this.hostName = hostName;
+        this.webDavPath = webDavPath;
+    }
+
+    /**
+     * Returns the encoded absolute URL for the passed path relative to the WebDAV base directory.
+     *
+     * @param relativePath
+     *            the relative path
+     * @return the encoded URL
+     */
+    public String getUrl(final String relativePath)
+    {
+        cacheLock.lock();
+        try
+        {
+            String url = relativeUrlCache.get(relativePath);
+            if (url == null)
+            {
+                final String path = StringUtils.defaultString(StringUtils.stripStart(relativePath, "/"));
+
+                url = appendEncodedPath(new StringBuilder(getBaseUrl().length() + path.length() + 16).append(getBaseUrl()), path).toString();
+                relativeUrlCache.put(relativePath, url);
+            }
+
+            return url;
+        }
+        finally
+        {
+            cacheLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the encoded absolute URL for the passed absolute path on the host.
+     *
+     * @param absolutePath
+     *            the absolute path
+     * @return the encoded URL
+     */
+    public String getUrlForAbsolutePath(final String absolutePath)
+    {
+        final String path = StringUtils.defaultString(StringUtils.stripStart(absolutePath, "/"));
+
+        return appendEncodedPath(new StringBuilder(getHostUrl().length() + path.length() + 16).append(getHostUrl()).append('/'),
+                                 path).toString();
+    }
+
+    /**
+     * Returns the encoded host URL, computing it first if necessary.
+     *
+     * @return the host URL
+     */
+    private String getHostUrl()
+    {
+        if (hostUrl == null)
+        {
+            hostUrl = StringUtils.stripEnd(encodeUrl(StringUtils.stripEnd(hostName, "/") + "/"), "/");
+        }
+
+        return hostUrl;
+    }
+
+    /**
+     * Returns the encoded URL of the WebDAV base directory, computing it first if necessary.
+     *
+     * @return the base URL
+     */
+    private String getBaseUrl()
+    {
+        if (baseUrl == null)
+        {
+            baseUrl = encodeUrl(StringUtils.stripEnd(hostName, "/") + "/" + StringUtils.strip(webDavPath, "/") + "/");
+        }
+
+        return baseUrl;
+    }
+
+    /**
+     * Percent-encodes the passed path and appends it to the given builder. The result is the same as produced by the
+     * multi-argument constructors of {@link URI}, i.e. non-ASCII characters are passed through unencoded, except for
+     * control and space characters, which are encoded as UTF-8.
+     *
+     * @param sb
+     *            the target builder
+     * @param path
+     *            the decoded path
+     * @return the builder
+     */
+    private static StringBuilder appendEncodedPath(final StringBuilder sb, final String path)
+    {
+        final int length = path.length();
+        for (int i = 0; i < length; i++)
+        {
+            final char c = path.charAt(i);
+            if (c < 128 && LEGAL_PATH_CHARS[c])
+            {
+                sb.append(c);
+            }
+            else if (c < 128)
+            {
+                appendEscaped(sb, c);
+            }
+            else if (!isIllegalNonAsciiChar(c))
+            {
+                sb.append(c);
+            }
+            else
+            {
+                // find the end of the run of characters to encode and encode them in one go
+                int end = i + 1;
+                while (end < length && path.charAt(end) >= 128 && isIllegalNonAsciiChar(path.charAt(end)))
+                {
+                    end++;
+                }
+
+                for (final byte b : path.substring(i, end).getBytes(StandardCharsets.UTF_8))
+                {
+                    appendEscaped(sb, b & 0xFF);
+                }
+
+                i = end - 1;
+            }
+        }
+
+        return sb;
+    }
+
+    /**
+     * Returns whether the passed non-ASCII character must be encoded, i.e. whether it is a control or space character.
+     *
+     * @param c
+     *            the character
+     * @return <code>true</code> if the character must be encoded, <code>false</code> otherwise
+     */
+    private static boolean isIllegalNonAsciiChar(final char c)
+    {
+        return Character.isISOControl(c) || Character.isSpaceChar(c);
+    }
+
+    /**
+     * Appends the percent-encoded form of the passed byte value.
+     *
+     * @param sb
+     *            the target builder
+     * @param b
+     *            the byte value (0-255)
+     */
+    private static void appendEscaped(final StringBuilder sb, final int b)
+    {
+        sb.append('%').append(HEX_DIGITS[b >> 4]).append(HEX_DIGITS[b & 0xF]);
+    }
+
+    /**
+     * Encodes special characters in the given URL and returns the encoded URL.
+     *
+     * @param url
+     *            the absolute URL to sanitize
+     * @return the encoded URL
+     */
+    private static String encodeUrl(final String url)
+    {
+        // split the URL, encode it, and put it back together
+        try
+        {
+            final URL u = new URL(url);
+            final URI uri = new URI(u.getProtocol(), u.getUserInfo(), u.getHost(), u.getPort(), u.getPath(), u.getQuery(), u.getRef());
+
+            return uri.toURL().toString();
+        }
+        catch (MalformedURLException | URISyntaxException e)
+        {
+            // turn this into a runtime exception so we don't have to do the catch it
+            // craziness everywhere, bad is bad for the surrounding code
+            throw new RuntimeException(e);
+        }
+    }
+}
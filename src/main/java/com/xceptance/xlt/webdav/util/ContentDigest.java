@@ -0,0 +1,158 @@
+package com.xceptance.xlt.webdav.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/**
+ * Computes a checksum or message digest over content that is passed in piece by piece, for instance while it is being
+ * streamed. Supported algorithms are "CRC32" and any {@link MessageDigest} algorithm available in the JVM, such as
+ * "MD5" or "SHA-256". The result is returned as lower-case hex string.
+ */
+public final class ContentDigest
+{
+    /**
+     * The name of the CRC32 algorithm.
+     */
+    public static final String CRC32 = "CRC32";
+
+    /**
+     * The hex digits.
+     */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * The name of the algorithm.
+     */
+    private final String algorithm;
+
+    /**
+     * The checksum in case of CRC32, <code>null</code> otherwise.
+     */
+    private final Checksum checksum;
+
+    /**
+     * The message digest in case of any other algorithm, <code>null</code> otherwise.
+     */
+    private final MessageDigest messageDigest;
+
+    /**
+     * Creates a new {@link ContentDigest} object.
+     *
+     * @param algorithm
+     *            the name of the algorithm
+     * @throws IllegalArgumentException
+     *             if the algorithm is not supported
+     */
+    public ContentDigest(final String algorithm)
+    {
+        this.algorithm = algorithm;
+
+        if (CRC32.equalsIgnoreCase(algorithm))
+        {
+            checksum = new CRC32();
+            messageDigest = null;
+        }
+        else
+        {
+            checksum = null;
+            try
+            {
+                messageDigest = MessageDigest.getInstance(algorithm);
+            }
+            catch (final NoSuchAlgorithmException ex)
+            {
+                throw new IllegalArgumentException("Unsupported digest algorithm: " + algorithm, ex);
+            }
+        }
+    }
+
+    /**
+     * Returns the name of the algorithm.
+     *
+     * @return the algorithm
+     */
+    public String getAlgorithm()
+    {
+        return algorithm;
+    }
+
+    /**
+     * Adds the given bytes to the digest.
+     *
+     * @param bytes
+     *            the buffer
+     * @param offset
+     *            the start offset in the buffer
+     * @param length
+     *            the number of bytes to add
+     */
+    public void update(final byte[] bytes, final int offset, final int length)
+    {
+        if (checksum != null)
+        {
+            checksum.update(bytes, offset, length);
+        }
+        else
+        {
+            messageDigest.update(bytes, offset, length);
+        }
+    }
+
+    /**
+     * Completes the computation and returns the digest as hex string. The digest is reset afterwards.
+     *
+     * @return the digest value
+     */
+    public String getHexValue()
+    {
+        if (checksum != null)
+        {
+            final String value = String.format("%08x", checksum.getValue());
+            checksum.reset();
+
+            return value;
+        }
+        else
+        {
+            final byte[] bytes = messageDigest.digest();
+            final char[] chars = new char[bytes.length * 2];
+
+            for (int i = 0; i < bytes.length; i++)
+            {
+                chars[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+                chars[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xF];
+            }
+
+            return new String(chars);
+        }
+    }
+
+    /**
+     * Reads the passed stream to the end and returns the digest of its content. The stream is not closed.
+     *
+     * @param inputStream
+     *            the stream to read
+     * @param algorithm
+     *            the name of the algorithm
+     * @return the digest value as hex string
+     * @throws IOException
+     *             if reading the stream failed
+     */
+    public static String compute(final InputStream inputStream, final String algorithm) throws IOException
+    {
+        final ContentDigest digest = new ContentDigest(algorithm);
+        final byte[] buffer = new byte[16 * 1024];
+
+        int bytesRead;
+        while ((bytesRead = inputStream.read(buffer)) != -1)
+        {
+            digest.update(buffer, 0, bytesRead);
+        }
+
+        return digest.getHexValue();
+    }
+}
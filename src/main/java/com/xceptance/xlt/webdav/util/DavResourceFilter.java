@@ -0,0 +1,342 @@
+package com.xceptance.xlt.webdav.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+
+import com.github.sardine.DavResource;
+import com.xceptance.xlt.api.util.XltRandom;
+
+/**
+ * A fluent filter over a list of {@link DavResource} objects. Other than chaining the methods of
+ * {@link DavResourceListUtils}, all criteria are combined and evaluated lazily in a single pass over the list when one of
+ * the terminal methods is called. No intermediate lists are created and each name is lower-cased at most once per pass.
+ * <p>
+ * Example:
+ *
+ * <pre>
+ * DavResource file = DavResourceListUtils.filter(resources).files().withEnding(".txt").notMatching("tmp").random();
+ * </pre>
+ *
+ * A filter can be evaluated any number of times, but must not be modified while being evaluated.
+ */
+public final class DavResourceFilter
+{
+    /**
+     * The resources to filter.
+     */
+    private final List<DavResource> resources;
+
+    /**
+     * The criteria a resource must meet.
+     */
+    private final List<Predicate<Candidate>> criteria = new ArrayList<>();
+
+    /**
+     * Creates a new {@link DavResourceFilter} object.
+     *
+     * @param resources
+     *            the resources to filter, may be <code>null</code>
+     */
+    public DavResourceFilter(final List<DavResource> resources)
+    {
+        this.resources = resources;
+    }
+
+    /**
+     * Accepts files only.
+     *
+     * @return this filter
+     */
+    public DavResourceFilter files()
+    {
+        criteria.add(c -> !c.resource.isDirectory());
+
+        return this;
+    }
+
+    /**
+     * Accepts directories only.
+     *
+     * @return this filter
+     */
+    public DavResourceFilter directories()
+    {
+        criteria.add(c -> c.resource.isDirectory());
+
+        return this;
+    }
+
+    /**
+     * Accepts resources whose name ends with the given suffix, ignoring case.
+     *
+     * @param suffix
+     *            the suffix
+     * @return this filter
+     */
+    public DavResourceFilter withEnding(final String suffix)
+    {
+        final String lowerCaseSuffix = suffix.toLowerCase(Locale.ROOT);
+        criteria.add(c -> c.getLowerCaseName().endsWith(lowerCaseSuffix));
+
+        return this;
+    }
+
+    /**
+     * Accepts resources whose content type contains the given phrase, ignoring case. Resources without a content type
+     * (such as directories) are never accepted.
+     *
+     * @param contentType
+     *            the content type or a part of it
+     * @return this filter
+     */
+    public DavResourceFilter withContentType(final String contentType)
+    {
+        final String lowerCaseContentType = contentType.toLowerCase(Locale.ROOT);
+        criteria.add(c -> {
+            final String type = c.resource.getContentType();
+            return type != null && type.toLowerCase(Locale.ROOT).contains(lowerCaseContentType);
+        });
+
+        return this;
+    }
+
+    /**
+     * Accepts resources whose name contains the given phrase, ignoring case.
+     *
+     * @param matchPhrase
+     *            the phrase
+     * @return this filter
+     */
+    public DavResourceFilter matching(final String matchPhrase)
+    {
+        final String lowerCasePhrase = matchPhrase.toLowerCase(Locale.ROOT);
+        criteria.add(c -> c.getLowerCaseName().contains(lowerCasePhrase));
+
+        return this;
+    }
+
+    /**
+     * Accepts resources whose name does not contain the given phrase, ignoring case.
+     *
+     * @param matchPhrase
+     *            the phrase
+     * @return this filter
+     */
+    public DavResourceFilter notMatching(final String matchPhrase)
+    {
+        final String lowerCasePhrase = matchPhrase.toLowerCase(Locale.ROOT);
+        criteria.add(c -> !c.getLowerCaseName().contains(lowerCasePhrase));
+
+        return this;
+    }
+
+    /**
+     * Accepts resources that meet the given custom criterion.
+     *
+     * @param predicate
+     *            the criterion
+     * @return this filter
+     */
+    public DavResourceFilter where(final Predicate<? super DavResource> predicate)
+    {
+        criteria.add(c -> predicate.test(c.resource));
+
+        return this;
+    }
+
+    /**
+     * Returns the number of resources accepted.
+     *
+     * @return the number of resources
+     */
+    public int count()
+    {
+        int count = 0;
+
+        final Candidate candidate = new Candidate();
+        if (resources != null)
+        {
+            for (final DavResource resource : resources)
+            {
+                if (accept(candidate, resource))
+                {
+                    count++;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the first resource accepted. Stops evaluating as soon as it is found.
+     *
+     * @return the resource, or <code>null</code> if none is accepted
+     */
+    public DavResource first()
+    {
+        final Candidate candidate = new Candidate();
+        if (resources != null)
+        {
+            for (final DavResource resource : resources)
+            {
+                if (accept(candidate, resource))
+                {
+                    return resource;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns a random resource out of those accepted. Each accepted resource has the same chance to be chosen, but
+     * without collecting them first.
+     *
+     * @return the resource, or <code>null</code> if none is accepted
+     */
+    public DavResource random()
+    {
+        final List<DavResource> sample = sample(1);
+
+        return sample.isEmpty() ? null : sample.get(0);
+    }
+
+    /**
+     * Returns a random sample of the given size out of the resources accepted, using reservoir sampling. Each accepted
+     * resource has the same chance to be part of the sample. If fewer resources are accepted, all of them are returned.
+     *
+     * @param size
+     *            the maximum size of the sample
+     * @return the sample
+     */
+    public List<DavResource> sample(final int size)
+    {
+        final List<DavResource> sample = new ArrayList<>(Math.max(0, size));
+        if (size <= 0 || resources == null)
+        {
+            return sample;
+        }
+
+        int accepted = 0;
+
+        final Candidate candidate = new Candidate();
+        for (final DavResource resource : resources)
+        {
+            if (accept(candidate, resource))
+            {
+                accepted++;
+
+                if (sample.size() < size)
+                {
+                    sample.add(resource);
+                }
+                else
+                {
+                    // replace a sampled resource with probability size/accepted
+                    final int i = XltRandom.nextInt(accepted);
+                    if (i < size)
+                    {
+                        sample.set(i, resource);
+                    }
+                }
+            }
+        }
+
+        return sample;
+    }
+
+    /**
+     * Returns all resources accepted.
+     *
+     * @return the resources
+     */
+    public List<DavResource> toList()
+    {
+        final List<DavResource> results = new ArrayList<>();
+
+        final Candidate candidate = new Candidate();
+        if (resources != null)
+        {
+            for (final DavResource resource : resources)
+            {
+                if (accept(candidate, resource))
+                {
+                    results.add(resource);
+                }
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Checks whether the given resource meets all criteria.
+     *
+     * @param candidate
+     *            the reusable candidate holder
+     * @param resource
+     *            the resource
+     * @return <code>true</code> if accepted, <code>false</code> otherwise
+     */
+    private boolean accept(final Candidate candidate, final DavResource resource)
+    {
+        candidate.reset(resource);
+
+        for (int i = 0; i < criteria.size(); i++)
+        {
+            if (!criteria.get(i).test(candidate))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * The resource currently evaluated, together with the values derived from it so far.
+     */
+    private static class Candidate
+    {
+        /**
+         * The resource.
+         */
+        DavResource resource;
+
+        /**
+         * The lower-case name, computed on demand.
+         */
+        private String lowerCaseName;
+
+        /**
+         * Sets the resource to evaluate next.
+         *
+         * @param resource
+         *            the resource
+         */
+        void reset(final DavResource resource)
+        {
+            this.resource = resource;
+            lowerCaseName = null;
+        }
+
+        /**
+         * Returns the lower-case name of the resource.
+         *
+         * @return the name
+         */
+        String getLowerCaseName()
+        {
+            if (lowerCaseName == null)
+            {
+                lowerCaseName = resource.getName().toLowerCase(Locale.ROOT);
+            }
+
+            return lowerCaseName;
+        }
+    }
+}
@@ -8,11 +8,28 @@ import com.xceptance.xlt.api.util.XltRandom;
 
 /**
  * Utility class to filter a list of {@link DavResource} objects according various criteria.
+ * <p>
+ * Each method scans the whole list and returns a new list. To combine several criteria in a single pass, use
+ * {@link #filter(List)} instead. If a listing is filtered repeatedly, consider building a {@link ResourceCatalog} from
+ * it once.
  *
  * @author Karsten Sommer (Xceptance Software Technologies GmbH)
  */
 public abstract class DavResourceListUtils
 {
+    /**
+     * Returns a filter for the given list of {@link DavResource} objects, which evaluates all criteria added to it in a
+     * single pass.
+     *
+     * @param davResources
+     *            the list of resources to filter
+     * @return the filter
+     */
+    public static DavResourceFilter filter(final List<DavResource> davResources)
+    {
+        return new DavResourceFilter(davResources);
+    }
+
     /**
      * Filters the given list of {@link DavResource} objects and returns only those resources that denote files.
      *
@@ -51,12 +68,13 @@ public abstract class DavResourceListUtils
     public static List<DavResource> getFilesByEnding(final List<DavResource> davResources, final String suffix)
     {
         final List<DavResource> results = new ArrayList<DavResource>();
+        final String lowerCaseSuffix = suffix.toLowerCase();
 
         if (davResources != null)
         {
             for (final DavResource resource : davResources)
             {
-                if (!resource.isDirectory() && resource.getName().toLowerCase().endsWith(suffix.toLowerCase()))
+                if (!resource.isDirectory() && resource.getName().toLowerCase().endsWith(lowerCaseSuffix))
                 {
                     results.add(resource);
                 }
@@ -104,12 +122,15 @@ public abstract class DavResourceListUtils
     public static List<DavResource> getResourcesByContentType(final List<DavResource> davResources, final String contentType)
     {
         final List<DavResource> results = new ArrayList<DavResource>();
+        final String lowerCaseContentType = contentType.toLowerCase();
 
         if (davResources != null)
         {
             for (final DavResource resource : davResources)
             {
-                if (resource.getContentType().toLowerCase().contains(contentType.toLowerCase()))
+                // directories usually have no content type
+                final String type = resource.getContentType();
+                if (type != null && type.toLowerCase().contains(lowerCaseContentType))
                 {
                     results.add(resource);
                 }
@@ -129,12 +150,13 @@ public abstract class DavResourceListUtils
     public static List<DavResource> getMatchingResources(final List<DavResource> davResources, final String matchPhrase)
     {
         final List<DavResource> results = new ArrayList<DavResource>();
+        final String lowerCasePhrase = matchPhrase.toLowerCase();
 
         if (davResources != null)
         {
             for (final DavResource resource : davResources)
             {
-                if (resource.getName().toLowerCase().contains(matchPhrase.toLowerCase()))
+                if (resource.getName().toLowerCase().contains(lowerCasePhrase))
                 {
                     results.add(resource);
                 }
@@ -154,12 +176,13 @@ public abstract class DavResourceListUtils
     public static List<DavResource> getNotMatchingResources(final List<DavResource> davResources, final String matchPhrase)
     {
         final List<DavResource> results = new ArrayList<DavResource>();
+        final String lowerCasePhrase = matchPhrase.toLowerCase();
 
         if (davResources != null)
         {
             for (final DavResource resource : davResources)
             {
-                if (!resource.getName().toLowerCase().contains(matchPhrase.toLowerCase()))
+                if (!resource.getName().toLowerCase().contains(lowerCasePhrase))
                 {
                     results.add(resource);
                 }
@@ -0,0 +1,376 @@
+package com.xceptance.xlt.webdav.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.xceptance.xlt.api.util.XltRandom;
+
+/**
+ * Describes synthetic file content that is generated on the fly while being read, so large uploads need neither byte
+ * arrays in memory nor fixture files on disk. The content is fully determined by its length, seed, and pattern, so
+ * the same content can be generated again later on, for instance to verify a download.
+ *
+ * @see com.xceptance.xlt.webdav.actions.WebDavPut
+ */
+public class GeneratedContent
+{
+    /**
+     * The kind of bytes to generate.
+     */
+    public enum Pattern
+    {
+        /**
+         * Pseudo-random bytes that do not compress at all.
+         */
+        RANDOM,
+
+        /**
+         * Pseudo-random text from a small alphabet that compresses to roughly half of its size.
+         */
+        COMPRESSIBLE
+    }
+
+    /**
+     * The characters used for compressible content.
+     */
+    private static final byte[] ALPHABET = "etaoinshrdlu .,\n".getBytes();
+
+    /**
+     * The length of the content in bytes.
+     */
+    private final long length;
+
+    /**
+     * The seed to initialize the generator with.
+     */
+    private final long seed;
+
+    /**
+     * The kind of bytes to generate.
+     */
+    private final Pattern pattern;
+
+    /**
+     * Creates a new {@link GeneratedContent} object.
+     *
+     * @param length
+     *            the length of the content in bytes
+     * @param seed
+     *            the seed to initialize the generator with
+     * @param pattern
+     *            the kind of bytes to generate
+     */
+    public GeneratedContent(final long length, final long seed, final Pattern pattern)
+    {
+        if (length < 0)
+        {
+            throw new IllegalArgumentException("Length must not be negative: " + length);
+        }
+
+        this.length = length;
+        this.seed = seed;
+        this.pattern = pattern;
+    }
+
+    /**
+     * Creates content of the given length with a random seed.
+     *
+     * @param length
+     *            the length of the content in bytes
+     * @param pattern
+     *            the kind of bytes to generate
+     * @return the content
+     */
+    public static GeneratedContent withLength(final long length, final Pattern pattern)
+    {
+        return new GeneratedContent(length, XltRandom.nextLong(), pattern);
+    }
+
+    /**
+     * Creates content with a random seed and a random length between the given bounds (both inclusive). The length is
+     * either distributed uniformly or log-uniformly. The latter yields many small and few large files, which is
+     * typical for real-world file systems.
+     *
+     * @param minLength
+     *            the minimum length in bytes
+     * @param maxLength
+     *            the maximum length in bytes
+     * @param logUniform
+     *            whether to distribute the length log-uniformly instead of uniformly
+     * @param pattern
+     *            the kind of bytes to generate
+     * @return the content
+     */
+    public static GeneratedContent withRandomLength(final long minLength, final long maxLength, final boolean logUniform,
+                                                    final Pattern pattern)
+    {
+        if (minLength < 0 || maxLength < minLength)
+        {
+            throw new IllegalArgumentException("Invalid length range: " + minLength + " - " + maxLength);
+        }
+
+        final double r = XltRandom.nextDouble();
+        final long length;
+        if (logUniform)
+        {
+            // shift by one to cope with a minimum of 0
+            final double logMin = Math.log(minLength + 1);
+            final double logMax = Math.log(maxLength + 1);
+
+            length = Math.round(Math.exp(logMin + r * (logMax - logMin))) - 1;
+        }
+        else
+        {
+            length = minLength + (long) (r * (maxLength - minLength + 1));
+        }
+
+        return new GeneratedContent(Math.max(minLength, Math.min(maxLength, length)), XltRandom.nextLong(), pattern);
+    }
+
+    /**
+     * Returns the length of the content.
+     *
+     * @return the length in bytes
+     */
+    public long getLength()
+    {
+        return length;
+    }
+
+    /**
+     * Returns the seed the generator is initialized with.
+     *
+     * @return the seed
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+     * Returns the kind of bytes generated.
+     *
+     * @return the pattern
+     */
+    public Pattern getPattern()
+    {
+        return pattern;
+    }
+
+    /**
+     * Opens a new stream that generates the content from the start.
+     *
+     * @return the stream
+     */
+    public InputStream openStream()
+    {
+        return new GeneratingInputStream(0, length);
+    }
+
+    /**
+     * Opens a new stream that generates only the given part of the content, for instance to upload it in chunks.
+     *
+     * @param offset
+     *            the offset of the first byte
+     * @param count
+     *            the number of bytes to generate
+     * @return the stream
+     */
+    public InputStream openStream(final long offset, final long count)
+    {
+        if (offset < 0 || count < 0 || offset + count > length)
+        {
+            throw new IllegalArgumentException("Invalid part: offset " + offset + ", length " + count + " (content length " + length + ")");
+        }
+
+        return new GeneratingInputStream(offset, count);
+    }
+
+    /**
+     * Computes the digest of the content, for instance to verify a download of previously uploaded content.
+     *
+     * @param algorithm
+     *            the digest algorithm (see {@link ContentDigest})
+     * @return the digest value as hex string
+     */
+    public String digest(final String algorithm)
+    {
+        try (final InputStream in = openStream())
+        {
+            return ContentDigest.compute(in, algorithm);
+        }
+        catch (final IOException ex)
+        {
+            // cannot happen as the content is generated in memory
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Generates the content while it is being read. Each block of 8 bytes is derived from the seed and the position of
+     * the block using the SplitMix64 function, so the content can be generated starting at any position and is the same
+     * on any platform.
+     */
+    private class GeneratingInputStream extends InputStream
+    {
+        /**
+         * The number of bytes still to generate.
+         */
+        private long remaining;
+
+        /**
+         * The index of the next block to generate.
+         */
+        private long blockIndex;
+
+        /**
+         * The current block to take the next bytes from.
+         */
+        private long block;
+
+        /**
+         * The number of bytes left in {@link #block}.
+         */
+        private int bytesInBlock;
+
+        /**
+         * Creates a new {@link GeneratingInputStream} object.
+         *
+         * @param offset
+         *            the offset of the first byte
+         * @param count
+         *            the number of bytes to generate
+         */
+        GeneratingInputStream(final long offset, final long count)
+        {
+            remaining = count;
+            blockIndex = offset / 8;
+
+            // discard the leading bytes of the first block
+            final int skip = (int) (offset % 8);
+            if (skip > 0)
+            {
+                block = nextBlock() >>> (8 * skip);
+                bytesInBlock = 8 - skip;
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int read()
+        {
+            if (remaining == 0)
+            {
+                return -1;
+            }
+
+            remaining--;
+
+            return nextByte() & 0xFF;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int read(final byte[] b, final int off, final int len)
+        {
+            if (len == 0)
+            {
+                return 0;
+            }
+            if (remaining == 0)
+            {
+                return -1;
+            }
+
+            final int n = (int) Math.min(len, remaining);
+            final int end = off + n;
+            for (int i = off; i < end; i++)
+            {
+                b[i] = nextByte();
+            }
+
+            remaining -= n;
+
+            return n;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long skip(final long n)
+        {
+            final long skipped = Math.max(0, Math.min(n, remaining));
+
+            // use up the current block first (if the whole block is used up, its value does not matter anymore)
+            final int fromBlock = (int) Math.min(skipped, bytesInBlock);
+            block >>>= 8 * fromBlock;
+            bytesInBlock -= fromBlock;
+
+            // then jump directly to the target block
+            final long bytesToSkip = skipped - fromBlock;
+            if (bytesToSkip > 0)
+            {
+                blockIndex += bytesToSkip / 8;
+
+                final int rest = (int) (bytesToSkip % 8);
+                if (rest > 0)
+                {
+                    block = nextBlock() >>> (8 * rest);
+                    bytesInBlock = 8 - rest;
+                }
+            }
+
+            remaining -= skipped;
+
+            return skipped;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int available()
+        {
+            return (int) Math.min(Integer.MAX_VALUE, remaining);
+        }
+
+        /**
+         * Returns the next content byte.
+         *
+         * @return the byte
+         */
+        private byte nextByte()
+        {
+            if (bytesInBlock == 0)
+            {
+                block = nextBlock();
+                bytesInBlock = 8;
+            }
+
+            final int b = (int) block;
+            block >>>= 8;
+            bytesInBlock--;
+
+            return (pattern == Pattern.COMPRESSIBLE) ? ALPHABET[b & 0x0F] : (byte) b;
+        }
+
+        /**
+         * Generates the next block of 8 bytes.
+         *
+         * @return the block
+         */
+        private long nextBlock()
+        {
+            long z = seed + (blockIndex++ + 1) * 0x9E3779B97F4A7C15L;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+
+            return z ^ (z >>> 31);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.xceptance.xlt.webdav.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Describes a directory tree of generated files, which can be uploaded as test data without having it on disk. Each
+ * directory (including the root) holds the same number of sub directories and files, down to the configured depth. The
+ * files are filled with {@link GeneratedContent} with a length randomly chosen from the configured range.
+ * <p>
+ * Directories are named "dir-&lt;n&gt;" and files "file-&lt;n&gt;.bin".
+ */
+public class GeneratedTree
+{
+    /**
+     * The number of directory levels below the root.
+     */
+    private final int depth;
+
+    /**
+     * The number of sub directories per directory.
+     */
+    private final int directoriesPerDirectory;
+
+    /**
+     * The number of files per directory.
+     */
+    private final int filesPerDirectory;
+
+    /**
+     * The minimum file size.
+     */
+    private long minFileSize;
+
+    /**
+     * The maximum file size.
+     */
+    private long maxFileSize;
+
+    /**
+     * Whether file sizes are distributed log-uniformly.
+     */
+    private boolean logUniform;
+
+    /**
+     * The kind of bytes to generate.
+     */
+    private GeneratedContent.Pattern pattern = GeneratedContent.Pattern.RANDOM;
+
+    /**
+     * Creates a new {@link GeneratedTree} object with files of 1 KB each.
+     *
+     * @param depth
+     *            the number of directory levels below the root
+     * @param directoriesPerDirectory
+     *            the number of sub directories per directory
+     * @param filesPerDirectory
+     *            the number of files per directory
+     */
+    public GeneratedTree(final int depth, final int directoriesPerDirectory, final int filesPerDirectory)
+    {
+        if (depth < 0 || directoriesPerDirectory < 0 || filesPerDirectory < 0)
+        {
+            throw new IllegalArgumentException("Tree dimensions must not be negative");
+        }
+
+        this.depth = depth;
+        this.directoriesPerDirectory = directoriesPerDirectory;
+        this.filesPerDirectory = filesPerDirectory;
+
+        minFileSize = maxFileSize = 1024;
+    }
+
+    /**
+     * Sets the range of the file sizes.
+     *
+     * @param minSize
+     *            the minimum file size in bytes
+     * @param maxSize
+     *            the maximum file size in bytes
+     * @param logUniform
+     *            whether to distribute the sizes log-uniformly (many small, few large files) instead of uniformly
+     * @return this tree
+     */
+    public GeneratedTree fileSize(final long minSize, final long maxSize, final boolean logUniform)
+    {
+        if (minSize < 0 || maxSize < minSize)
+        {
+            throw new IllegalArgumentException("Invalid size range: " + minSize + " - " + maxSize);
+        }
+
+        minFileSize = minSize;
+        maxFileSize = maxSize;
+        this.logUniform = logUniform;
+
+        return this;
+    }
+
+    /**
+     * Sets the kind of bytes to fill the files with.
+     *
+     * @param pattern
+     *            the pattern
+     * @return this tree
+     */
+    public GeneratedTree pattern(final GeneratedContent.Pattern pattern)
+    {
+        this.pattern = pattern;
+
+        return this;
+    }
+
+    /**
+     * Returns the paths of all directories below the root, relative to the root and ending with a slash. Parent
+     * directories always come before their children.
+     *
+     * @return the directory paths
+     */
+    public List<String> getDirectories()
+    {
+        final List<String> directories = new ArrayList<>();
+
+        // breadth-first, level by level
+        int levelStart = 0;
+        for (int level = 1; level <= depth; level++)
+        {
+            final int levelEnd = directories.size();
+
+            if (level == 1)
+            {
+                for (int i = 0; i < directoriesPerDirectory; i++)
+                {
+                    directories.add("dir-" + i + "/");
+                }
+            }
+            else
+            {
+                for (int parent = levelStart; parent < levelEnd; parent++)
+                {
+                    for (int i = 0; i < directoriesPerDirectory; i++)
+                    {
+                        directories.add(directories.get(parent) + "dir-" + i + "/");
+                    }
+                }
+            }
+
+            levelStart = levelEnd;
+        }
+
+        return directories;
+    }
+
+    /**
+     * Returns the total number of files in the tree.
+     *
+     * @return the number of files
+     */
+    public long getFileCount()
+    {
+        long directories = 1;
+        long levelDirectories = 1;
+        for (int level = 1; level <= depth; level++)
+        {
+            levelDirectories *= directoriesPerDirectory;
+            directories += levelDirectories;
+        }
+
+        return directories * filesPerDirectory;
+    }
+
+    /**
+     * Returns the paths of all files, relative to the root. The paths are created lazily while iterating.
+     *
+     * @return the file paths
+     */
+    public Iterator<String> files()
+    {
+        final List<String> directories = getDirectories();
+
+        return new Iterator<String>()
+        {
+            /**
+             * The index of the current directory, -1 for the root.
+             */
+            private int directory = -1;
+
+            /**
+             * The index of the next file in the current directory.
+             */
+            private int file;
+
+            @Override
+            public boolean hasNext()
+            {
+                return filesPerDirectory > 0 && directory < directories.size();
+            }
+
+            @Override
+            public String next()
+            {
+                if (!hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
+
+                final String path = ((directory < 0) ? "" : directories.get(directory)) + "file-" + file + ".bin";
+
+                if (++file == filesPerDirectory)
+                {
+                    file = 0;
+                    directory++;
+                }
+
+                return path;
+            }
+        };
+    }
+
+    /**
+     * Creates the content for a file with a size randomly chosen from the configured range.
+     *
+     * @return the content
+     */
+    public GeneratedContent createContent()
+    {
+        return GeneratedContent.withRandomLength(minFileSize, maxFileSize, logUniform, pattern);
+    }
+}
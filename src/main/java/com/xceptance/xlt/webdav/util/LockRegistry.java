@@ -0,0 +1,409 @@
+package com.xceptance.xlt.webdav.util;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Keeps track of the locks a virtual user holds on the server, see
+ * {@link com.xceptance.xlt.webdav.actions.WebDavLock}. Any request that modifies a locked resource, for instance a PUT,
+ * MOVE or DELETE, has to submit the lock token in an "If" header. This is done automatically for all requests of the
+ * user via {@link #getIfHeader(String...)}, so scenarios do not need to care about lock tokens at all.
+ * <p>
+ * A lock covers the locked resource itself and, if it was taken with depth infinity, anything below it. A lock taken
+ * with depth 0 on a directory still covers its immediate members, as adding or removing a member modifies the
+ * directory itself (RFC 4918, section 7.5). Locks are forgotten when they are released, when the locked resource was
+ * deleted or moved away by the user, when their timeout has passed without a refresh, or when the server rejected a
+ * request submitting their token with 412 (Precondition Failed).
+ */
+public final class LockRegistry
+{
+    /**
+     * The locks held, keyed by the decoded path of the locked resource without trailing slash.
+     */
+    private final Map<String, HeldLock> locks = new HashMap<>();
+
+    /**
+     * Guards the locks.
+     */
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * Supplies the current time in milliseconds.
+     */
+    private final LongSupplier clock;
+
+    /**
+     * Creates a new {@link LockRegistry} object.
+     */
+    public LockRegistry()
+    {
+        this(System::currentTimeMillis);
+    }
+
+    /**
+     * Creates a new {@link LockRegistry} object using the given clock to determine whether locks have expired.
+     *
+     * @param clock
+     *            supplies the current time in milliseconds
+     */
+    LockRegistry(final LongSupplier clock)
+    {
+        this.clock = clock;
+    }
+
+    /**
+     * Remembers a lock that has been acquired.
+     *
+     * @param url
+     *            the URL of the locked resource
+     * @param token
+     *            the lock token
+     * @param deep
+     *            whether the lock covers anything below the resource as well
+     * @param timeout
+     *            the timeout granted by the server in seconds, or -1 if the lock does not time out
+     */
+    public void add(final String url, final String token, final boolean deep, final long timeout)
+    {
+        final HeldLock heldLock = new HeldLock(url, token, deep, getExpirationTime(timeout));
+
+        lock.lock();
+        try
+        {
+            locks.put(toKey(url), heldLock);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Updates the expiration time of the lock on the resource at the given URL after it has been refreshed.
+     *
+     * @param url
+     *            the URL of the locked resource
+     * @param timeout
+     *            the timeout granted by the server in seconds, or -1 if the lock does not time out
+     */
+    public void refreshed(final String url, final long timeout)
+    {
+        lock.lock();
+        try
+        {
+            final HeldLock heldLock = locks.get(toKey(url));
+            if (heldLock != null)
+            {
+                heldLock.expirationTime = getExpirationTime(timeout);
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forgets the lock on the resource at the given URL, for instance after it has been released.
+     *
+     * @param url
+     *            the URL of the locked resource
+     */
+    public void remove(final String url)
+    {
+        lock.lock();
+        try
+        {
+            locks.remove(toKey(url));
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forgets the locks on the resource at the given URL and anything below it after it has been deleted or moved away,
+     * as the server drops these locks as well.
+     *
+     * @param url
+     *            the resource URL
+     */
+    public void removeTree(final String url)
+    {
+        final String key = toKey(url);
+        final String prefix = key + "/";
+
+        lock.lock();
+        try
+        {
+            for (final Iterator<String> it = locks.keySet().iterator(); it.hasNext();)
+            {
+                final String path = it.next();
+                if (path.equals(key) || path.startsWith(prefix))
+                {
+                    it.remove();
+                }
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forgets the locks whose tokens were submitted in the given "If" header after the server answered the request with
+     * 412 (Precondition Failed), which means that at least one of these locks is not known to the server anymore, for
+     * instance because it has expired or was released by someone else. As the response does not tell which one, all
+     * of them are dropped.
+     *
+     * @param ifHeader
+     *            the value of the "If" header as built by {@link #getIfHeader(String...)}
+     */
+    public void dropLocksSentIn(final String ifHeader)
+    {
+        lock.lock();
+        try
+        {
+            for (final Iterator<HeldLock> it = locks.values().iterator(); it.hasNext();)
+            {
+                if (ifHeader.contains("(<" + it.next().token + ">)"))
+                {
+                    it.remove();
+                }
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the token of the lock held on the resource at the given URL. Locks on parent directories are not
+     * considered.
+     *
+     * @param url
+     *            the URL of the locked resource
+     * @return the lock token, or <code>null</code> if the resource is not locked by the user or the lock has expired
+     */
+    public String getToken(final String url)
+    {
+        lock.lock();
+        try
+        {
+            final HeldLock heldLock = getValidLock(toKey(url), clock.getAsLong());
+
+            return (heldLock == null) ? null : heldLock.token;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of locks held, including any that have expired but were not looked at since.
+     *
+     * @return the number of locks
+     */
+    public int size()
+    {
+        lock.lock();
+        try
+        {
+            return locks.size();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Builds the value of the "If" header for a request that modifies the resources at the given URLs. The header
+     * lists the token of each lock covering any of the resources, tagged with the URL of the locked resource, for
+     * example "&lt;http://host/dav/dir/&gt; (&lt;opaquelocktoken:1234&gt;)". Expired locks are skipped and forgotten.
+     *
+     * @param urls
+     *            the URLs of the resources modified, for instance source and target of a MOVE
+     * @return the header value, or <code>null</code> if none of the resources is locked by the user
+     */
+    public String getIfHeader(final String... urls)
+    {
+        final Set<HeldLock> applicableLocks = new LinkedHashSet<>();
+
+        lock.lock();
+        try
+        {
+            if (locks.isEmpty())
+            {
+                return null;
+            }
+
+            final long now = clock.getAsLong();
+            for (final String url : urls)
+            {
+                collectApplicableLocks(toKey(url), now, applicableLocks);
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        if (applicableLocks.isEmpty())
+        {
+            return null;
+        }
+
+        final List<String> conditions = new ArrayList<>(applicableLocks.size());
+        for (final HeldLock heldLock : applicableLocks)
+        {
+            conditions.add("<" + heldLock.url + "> (<" + heldLock.token + ">)");
+        }
+
+        return StringUtils.join(conditions, ' ');
+    }
+
+    /**
+     * Collects the valid locks covering the resource with the given key, i.e. a lock on the resource itself, any lock
+     * on its immediate parent directory, whose member list is modified as well, and deep locks on any of its other
+     * parent directories. The caller has to hold the lock.
+     *
+     * @param key
+     *            the key of the resource
+     * @param now
+     *            the current time in milliseconds
+     * @param applicableLocks
+     *            the set to add the locks found to
+     */
+    private void collectApplicableLocks(final String key, final long now, final Set<HeldLock> applicableLocks)
+    {
+        final HeldLock ownLock = getValidLock(key, now);
+        if (ownLock != null)
+        {
+            applicableLocks.add(ownLock);
+        }
+
+        final int parentIndex = key.lastIndexOf('/');
+        for (int i = parentIndex; i >= 0; i = key.lastIndexOf('/', i - 1))
+        {
+            final HeldLock parentLock = getValidLock(key.substring(0, i), now);
+            if (parentLock != null && (parentLock.deep || i == parentIndex))
+            {
+                applicableLocks.add(parentLock);
+            }
+
+            if (i == 0)
+            {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Returns the lock held on the resource with the given key unless it has expired, in which case it is forgotten.
+     * The caller has to hold the lock.
+     *
+     * @param key
+     *            the key of the resource
+     * @param now
+     *            the current time in milliseconds
+     * @return the lock, or <code>null</code> if there is no valid lock on the resource
+     */
+    private HeldLock getValidLock(final String key, final long now)
+    {
+        final HeldLock heldLock = locks.get(key);
+        if (heldLock != null && heldLock.expirationTime <= now)
+        {
+            locks.remove(key);
+
+            return null;
+        }
+
+        return heldLock;
+    }
+
+    /**
+     * Returns the time a lock granted with the given timeout expires.
+     *
+     * @param timeout
+     *            the timeout in seconds, or -1 if the lock does not time out
+     * @return the expiration time in milliseconds
+     */
+    private long getExpirationTime(final long timeout)
+    {
+        return (timeout < 0) ? Long.MAX_VALUE : clock.getAsLong() + timeout * 1000;
+    }
+
+    /**
+     * Returns the key for the given URL, i.e. its decoded path without trailing slash.
+     *
+     * @param url
+     *            the encoded URL
+     * @return the key
+     */
+    private static String toKey(final String url)
+    {
+        return StringUtils.removeEnd(URI.create(url).getPath(), "/");
+    }
+
+    /**
+     * A lock held by the user.
+     */
+    private static final class HeldLock
+    {
+        /**
+         * The URL of the locked resource.
+         */
+        private final String url;
+
+        /**
+         * The lock token.
+         */
+        private final String token;
+
+        /**
+         * Whether the lock covers anything below the resource as well.
+         */
+        private final boolean deep;
+
+        /**
+         * The time the lock expires in milliseconds, {@link Long#MAX_VALUE} if it does not time out.
+         */
+        private long expirationTime;
+
+        /**
+         * Creates a new {@link HeldLock} object.
+         *
+         * @param url
+         *            the URL of the locked resource
+         * @param token
+         *            the lock token
+         * @param deep
+         *            whether the lock covers anything below the resource as well
+         * @param expirationTime
+         *            the time the lock expires in milliseconds
+         */
+        private HeldLock(final String url, final String token, final boolean deep, final long expirationTime)
+        {
+            this.url = url;
+            this.token = token;
+            this.deep = deep;
+            this.expirationTime = expirationTime;
+        }
+    }
+}
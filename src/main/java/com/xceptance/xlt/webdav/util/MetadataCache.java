@@ -0,0 +1,396 @@
+package com.xceptance.xlt.webdav.util;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.github.sardine.DavResource;
+
+/**
+ * Remembers what a virtual user knows about the resources on the server from its own operations: which resources exist
+ * or do not exist, and the metadata of the resources listed. Scenarios that only need to know what the user has seen or
+ * done before can look it up here instead of asking the server again, see
+ * {@link com.xceptance.xlt.webdav.actions.WebDavExists#useMetadataCache()} and
+ * {@link com.xceptance.xlt.webdav.actions.WebDavList#useMetadataCache()}.
+ * <p>
+ * The cache is filled by the actions of the user: listings store the metadata of the resources found, uploads and
+ * created directories mark resources as existing, deletions mark them as missing, and moves or copies update source and
+ * target accordingly. Changes made by other users are not noticed, of course. The cache holds a limited number of
+ * entries, evicting the least recently used ones first.
+ * <p>
+ * The cache is disabled by default. Enable it for all users via the property "{@value #PROP_MAX_ENTRIES}", or for a
+ * single user via {@link WebDavContext#enableMetadataCache(int)}.
+ */
+public final class MetadataCache
+{
+    /**
+     * The property that enables the cache and configures the maximum number of entries per user.
+     */
+    public static final String PROP_MAX_ENTRIES = "com.xceptance.xlt.webdav.metadataCache.maxEntries";
+
+    /**
+     * Marks a resource that is known to exist, but whose metadata is not known.
+     */
+    private static final Object EXISTING = new Object();
+
+    /**
+     * Marks a resource that is known not to exist.
+     */
+    private static final Object MISSING = new Object();
+
+    /**
+     * The knowledge about the resources, keyed by decoded path without trailing slash. The values are either
+     * {@link ResourceEntry} objects, {@link #EXISTING} or {@link #MISSING}.
+     */
+    private final Map<String, Object> entries;
+
+    /**
+     * The keys of {@link #entries} in sorted order, so all entries below a directory can be found without a full scan.
+     */
+    private final NavigableSet<String> sortedKeys = new TreeSet<>();
+
+    /**
+     * Guards the entries.
+     */
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * The number of lookups that could be answered.
+     */
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     * The number of lookups that could not be answered.
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a new {@link MetadataCache} object.
+     *
+     * @param maxEntries
+     *            the maximum number of entries
+     */
+    public MetadataCache(final int maxEntries)
+    {
+        entries = new LinkedHashMap<String, Object>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Object> eldest)
+            {
+                if (size() > maxEntries)
+                {
+                    sortedKeys.remove(eldest.getKey());
+
+                    return true;
+                }
+
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns whether the resource at the given URL is known to exist.
+     *
+     * @param url
+     *            the resource URL
+     * @return {@link Boolean#TRUE} if it exists, {@link Boolean#FALSE} if it does not exist, or <code>null</code> if
+     *         unknown
+     */
+    public Boolean exists(final String url)
+    {
+        final Object value = lookup(toKey(url));
+
+        return (value == null) ? null : Boolean.valueOf(value != MISSING);
+    }
+
+    /**
+     * Returns the metadata of the resource at the given URL, as obtained from the most recent listing.
+     *
+     * @param url
+     *            the resource URL
+     * @return the metadata, or <code>null</code> if unknown
+     */
+    public ResourceEntry getEntry(final String url)
+    {
+        final Object value = lookup(toKey(url));
+
+        return (value instanceof ResourceEntry) ? (ResourceEntry) value : null;
+    }
+
+    /**
+     * Remembers the metadata of a resource found in a listing.
+     *
+     * @param entry
+     *            the resource
+     */
+    public void put(final ResourceEntry entry)
+    {
+        store(StringUtils.removeEnd(entry.getPath(), "/"), entry);
+    }
+
+    /**
+     * Remembers the metadata of a resource found in a listing.
+     *
+     * @param resource
+     *            the resource
+     */
+    public void put(final DavResource resource)
+    {
+        final String path = StringUtils.removeEnd(resource.getPath(), "/");
+        final Long contentLength = resource.getContentLength();
+
+        store(path, new ResourceEntry(path, -1, resource.isDirectory(), (contentLength == null) ? -1 : contentLength,
+                                      (resource.getModified() == null) ? -1 : resource.getModified().getTime(),
+                                      (resource.getCreation() == null) ? -1 : resource.getCreation().getTime(),
+                                      resource.getContentType(), resource.getEtag(), resource.getDisplayName(), null));
+    }
+
+    /**
+     * Remembers whether the resource at the given URL exists, as found out by a request. Any metadata known is kept if
+     * the resource exists.
+     *
+     * @param url
+     *            the resource URL
+     * @param exists
+     *            whether the resource exists
+     */
+    public void existenceChecked(final String url, final boolean exists)
+    {
+        final String key = toKey(url);
+
+        lock.lock();
+        try
+        {
+            if (!exists)
+            {
+                removeTree(key);
+                putEntry(key, MISSING);
+            }
+            else if (!(entries.get(key) instanceof ResourceEntry))
+            {
+                putEntry(key, EXISTING);
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marks the resource at the given URL as existing after it has been created or modified. Any metadata known is
+     * dropped as it is outdated.
+     *
+     * @param url
+     *            the resource URL
+     */
+    public void modified(final String url)
+    {
+        store(toKey(url), EXISTING);
+    }
+
+    /**
+     * Marks the resource at the given URL and anything below it as missing after it has been deleted.
+     *
+     * @param url
+     *            the resource URL
+     */
+    public void deleted(final String url)
+    {
+        final String key = toKey(url);
+
+        lock.lock();
+        try
+        {
+            removeTree(key);
+            putEntry(key, MISSING);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Updates the cache after the resource at the given source URL has been copied to the target URL.
+     *
+     * @param sourceUrl
+     *            the source URL
+     * @param targetUrl
+     *            the target URL
+     */
+    public void copied(final String sourceUrl, final String targetUrl)
+    {
+        final String key = toKey(targetUrl);
+
+        lock.lock();
+        try
+        {
+            // whatever was below the target before is replaced
+            removeTree(key);
+            putEntry(key, EXISTING);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Updates the cache after the resource at the given source URL has been moved to the target URL.
+     *
+     * @param sourceUrl
+     *            the source URL
+     * @param targetUrl
+     *            the target URL
+     */
+    public void moved(final String sourceUrl, final String targetUrl)
+    {
+        deleted(sourceUrl);
+        copied(sourceUrl, targetUrl);
+    }
+
+    /**
+     * Forgets everything.
+     */
+    public void clear()
+    {
+        lock.lock();
+        try
+        {
+            entries.clear();
+            sortedKeys.clear();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of lookups that could be answered from the cache so far.
+     *
+     * @return the number of hits
+     */
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups that could not be answered from the cache so far.
+     *
+     * @return the number of misses
+     */
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * Looks up the value for the given key and counts the lookup.
+     *
+     * @param key
+     *            the key
+     * @return the value, or <code>null</code> if unknown
+     */
+    private Object lookup(final String key)
+    {
+        final Object value;
+
+        lock.lock();
+        try
+        {
+            value = entries.get(key);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        (value == null ? misses : hits).incrementAndGet();
+
+        return value;
+    }
+
+    /**
+     * Stores the value for the given key.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value
+     */
+    private void store(final String key, final Object value)
+    {
+        lock.lock();
+        try
+        {
+            putEntry(key, value);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stores the value for the given key and indexes the key. The caller has to hold the lock.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value
+     */
+    private void putEntry(final String key, final Object value)
+    {
+        // index the key first, as storing the entry may evict the eldest one including its key
+        sortedKeys.add(key);
+        entries.put(key, value);
+    }
+
+    /**
+     * Removes the entries for the given key and anything below it. The caller has to hold the lock.
+     *
+     * @param key
+     *            the key
+     */
+    private void removeTree(final String key)
+    {
+        final String prefix = key + "/";
+
+        // all keys starting with the prefix sort between the prefix and the prefix followed by the largest character
+        final Set<String> keysBelow = sortedKeys.subSet(prefix, true, prefix + '\uffff', true);
+        for (final String path : keysBelow)
+        {
+            entries.remove(path);
+        }
+        keysBelow.clear();
+
+        entries.remove(key);
+        sortedKeys.remove(key);
+    }
+
+    /**
+     * Returns the key for the given URL, i.e. its decoded path without trailing slash.
+     *
+     * @param url
+     *            the encoded URL
+     * @return the key
+     */
+    private static String toKey(final String url)
+    {
+        return StringUtils.removeEnd(URI.create(url).getPath(), "/");
+    }
+}
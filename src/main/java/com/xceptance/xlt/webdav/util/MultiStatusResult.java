@@ -0,0 +1,143 @@
+package com.xceptance.xlt.webdav.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Collects the per-resource outcomes reported in the multi-status (207) responses to one or more requests of an
+ * action. Pass it as consumer to {@link com.xceptance.xlt.webdav.impl.CustomizedSardineImpl}'s
+ * <code>executeMultiStatus()</code>. All resources are counted, but only failed ones are kept, as successful ones are
+ * usually of no interest and may be plenty. The result may be filled by several threads at the same time.
+ */
+public class MultiStatusResult implements Consumer<ResourceStatus>
+{
+    /**
+     * The resources for which the operation failed.
+     */
+    private final List<ResourceStatus> failures = new ArrayList<>();
+
+    /**
+     * The number of resources reported.
+     */
+    private int resourceCount;
+
+    /**
+     * Guards the values.
+     */
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * Adds the outcome for a resource.
+     *
+     * @param status
+     *            the outcome
+     */
+    @Override
+    public void accept(final ResourceStatus status)
+    {
+        lock.lock();
+        try
+        {
+            resourceCount++;
+
+            if (!status.isSuccessful())
+            {
+                failures.add(status);
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds the outcomes collected by the given result, for instance for a single request, to this result.
+     *
+     * @param other
+     *            the result to add, must not be filled anymore
+     */
+    public void addAll(final MultiStatusResult other)
+    {
+        final List<ResourceStatus> otherFailures = other.getFailures();
+        final int otherResourceCount = other.getResourceCount();
+
+        lock.lock();
+        try
+        {
+            resourceCount += otherResourceCount;
+            failures.addAll(otherFailures);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of resources reported.
+     *
+     * @return the number of resources
+     */
+    public int getResourceCount()
+    {
+        lock.lock();
+        try
+        {
+            return resourceCount;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of resources for which the operation failed.
+     *
+     * @return the number of failures
+     */
+    public int getFailureCount()
+    {
+        lock.lock();
+        try
+        {
+            return failures.size();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the resources for which the operation failed.
+     *
+     * @return a copy of the failures
+     */
+    public List<ResourceStatus> getFailures()
+    {
+        lock.lock();
+        try
+        {
+            return new ArrayList<>(failures);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns whether the operation succeeded for all resources reported.
+     *
+     * @return <code>true</code> if there were no failures, <code>false</code> otherwise
+     */
+    public boolean isSuccessful()
+    {
+        return getFailureCount() == 0;
+    }
+}
@@ -0,0 +1,865 @@
+package com.xceptance.xlt.webdav.util;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+
+import com.github.sardine.DavResource;
+import com.xceptance.xlt.api.util.XltRandom;
+
+/**
+ * A compact, read-only index of the resources of a listing, meant to be built once and queried many times. Other than
+ * the methods in {@link DavResourceListUtils}, which scan the whole list and create a new list on each call, the
+ * catalog keeps the attributes of the resources in arrays and precomputes the lower-case names as well as indexes by
+ * type, file extension, content type, and size. This way, most selections and random picks take constant or
+ * logarithmic time and do not copy anything.
+ * <p>
+ * Catalogs can be created either from a list of {@link DavResource} objects or, via {@link #builder()}, from the
+ * {@link ResourceEntry} objects of a streamed listing. The selections returned are unmodifiable views of the catalog.
+ *
+ * @param <T>
+ *            the type of the resources
+ */
+public final class ResourceCatalog<T>
+{
+    /**
+     * The resources.
+     */
+    private final Object[] resources;
+
+    /**
+     * The paths of the resources.
+     */
+    private final String[] paths;
+
+    /**
+     * The lower-case names of the resources.
+     */
+    private final String[] lowerCaseNames;
+
+    /**
+     * The content lengths of the resources, -1 if unknown.
+     */
+    private final long[] contentLengths;
+
+    /**
+     * The last modification times of the resources, -1 if unknown.
+     */
+    private final long[] lastModified;
+
+    /**
+     * Whether the resources are directories.
+     */
+    private final boolean[] directories;
+
+    /**
+     * The indexes of all resources.
+     */
+    private final int[] allIndexes;
+
+    /**
+     * The indexes of all files.
+     */
+    private final int[] fileIndexes;
+
+    /**
+     * The indexes of all directories.
+     */
+    private final int[] directoryIndexes;
+
+    /**
+     * The indexes of all files, sorted by content length.
+     */
+    private final int[] filesBySize;
+
+    /**
+     * The indexes of all files, keyed by the lower-case file extension (without the dot).
+     */
+    private final Map<String, int[]> filesByExtension;
+
+    /**
+     * The indexes of all resources, keyed by the lower-case media type (without any parameters).
+     */
+    private final Map<String, int[]> resourcesByContentType;
+
+    /**
+     * Creates a catalog from the given list of {@link DavResource} objects, for example the result of a
+     * {@link com.xceptance.xlt.webdav.actions.WebDavList} action.
+     *
+     * @param davResources
+     *            the resources, may be <code>null</code>
+     * @return the catalog
+     */
+    public static ResourceCatalog<DavResource> of(final Collection<DavResource> davResources)
+    {
+        final Builder<DavResource> builder = new Builder<>((davResources == null) ? 0 : davResources.size());
+
+        if (davResources != null)
+        {
+            for (final DavResource resource : davResources)
+            {
+                builder.add(resource, resource.getPath(), resource.isDirectory(),
+                            (resource.getContentLength() == null) ? -1 : resource.getContentLength(),
+                            (resource.getModified() == null) ? -1 : resource.getModified().getTime(),
+                            resource.getContentType());
+            }
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Returns a builder that creates a catalog from {@link ResourceEntry} objects. As the builder is a consumer of
+     * entries, it can be passed directly to a streaming listing, for example
+     * {@link com.xceptance.xlt.webdav.actions.WebDavList#streamTo(Consumer)}.
+     *
+     * @return the builder
+     */
+    public static EntryBuilder builder()
+    {
+        return new EntryBuilder();
+    }
+
+    /**
+     * Creates a new {@link ResourceCatalog} object from the data collected by the given builder.
+     *
+     * @param builder
+     *            the builder
+     */
+    private ResourceCatalog(final Builder<T> builder)
+    {
+        final int size = builder.size;
+
+        resources = Arrays.copyOf(builder.resources, size);
+        paths = Arrays.copyOf(builder.paths, size);
+        lowerCaseNames = Arrays.copyOf(builder.lowerCaseNames, size);
+        contentLengths = Arrays.copyOf(builder.contentLengths, size);
+        lastModified = Arrays.copyOf(builder.lastModified, size);
+        directories = Arrays.copyOf(builder.directories, size);
+
+        // build the indexes
+        allIndexes = new int[size];
+        int fileCount = 0;
+        for (int i = 0; i < size; i++)
+        {
+            allIndexes[i] = i;
+            fileCount += directories[i] ? 0 : 1;
+        }
+
+        fileIndexes = new int[fileCount];
+        directoryIndexes = new int[size - fileCount];
+
+        final Map<String, IndexBuilder> byExtension = new HashMap<>();
+        final Map<String, IndexBuilder> byContentType = new HashMap<>();
+
+        for (int i = 0, f = 0, d = 0; i < size; i++)
+        {
+            if (directories[i])
+            {
+                directoryIndexes[d++] = i;
+            }
+            else
+            {
+                fileIndexes[f++] = i;
+
+                final String extension = getExtension(lowerCaseNames[i]);
+                if (extension != null)
+                {
+                    byExtension.computeIfAbsent(extension, k -> new IndexBuilder()).add(i);
+                }
+            }
+
+            final String mediaType = builder.mediaTypes[i];
+            if (mediaType != null)
+            {
+                byContentType.computeIfAbsent(mediaType, k -> new IndexBuilder()).add(i);
+            }
+        }
+
+        filesByExtension = toIndexMap(byExtension);
+        resourcesByContentType = toIndexMap(byContentType);
+
+        // sort the files by size (indexes are boxed only once while building the catalog)
+        final Integer[] sorted = new Integer[fileCount];
+        for (int i = 0; i < fileCount; i++)
+        {
+            sorted[i] = fileIndexes[i];
+        }
+        Arrays.sort(sorted, (a, b) -> Long.compare(contentLengths[a], contentLengths[b]));
+
+        filesBySize = new int[fileCount];
+        for (int i = 0; i < fileCount; i++)
+        {
+            filesBySize[i] = sorted[i];
+        }
+    }
+
+    /**
+     * Returns the number of resources in the catalog.
+     *
+     * @return the number of resources
+     */
+    public int size()
+    {
+        return resources.length;
+    }
+
+    /**
+     * Returns all resources in the catalog in the order they were added.
+     *
+     * @return the resources
+     */
+    public List<T> getAll()
+    {
+        return new Selection(allIndexes, 0, allIndexes.length);
+    }
+
+    /**
+     * Returns all resources that denote files.
+     *
+     * @return the file resources
+     */
+    public List<T> getFiles()
+    {
+        return new Selection(fileIndexes, 0, fileIndexes.length);
+    }
+
+    /**
+     * Returns all resources that denote directories.
+     *
+     * @return the directory resources
+     */
+    public List<T> getDirectories()
+    {
+        return new Selection(directoryIndexes, 0, directoryIndexes.length);
+    }
+
+    /**
+     * Returns all files whose name ends with the given suffix, ignoring case. Suffixes that are a file extension (like
+     * ".txt") are looked up in the index, any other suffix requires a scan of all files.
+     *
+     * @param suffix
+     *            the suffix
+     * @return the matching file resources
+     */
+    public List<T> getFilesByEnding(final String suffix)
+    {
+        final String lowerCaseSuffix = suffix.toLowerCase(Locale.ROOT);
+
+        if (lowerCaseSuffix.lastIndexOf('.') == 0)
+        {
+            final int[] indexes = filesByExtension.get(lowerCaseSuffix.substring(1));
+
+            return (indexes == null) ? Collections.<T>emptyList() : new Selection(indexes, 0, indexes.length);
+        }
+
+        final IndexBuilder matches = new IndexBuilder();
+        for (final int i : fileIndexes)
+        {
+            if (lowerCaseNames[i].endsWith(lowerCaseSuffix))
+            {
+                matches.add(i);
+            }
+        }
+
+        return new Selection(matches.indexes, 0, matches.size);
+    }
+
+    /**
+     * Returns all resources whose content type contains the given phrase, ignoring case. Resources without a content
+     * type never match. As there are usually only a few distinct content types, only these have to be checked.
+     * <p>
+     * Other than {@link DavResourceListUtils#getResourcesByContentType(List, String)}, only the media type is matched,
+     * as parameters like the charset are stripped when the catalog is built. Hence, "text/plain" matches
+     * "text/plain; charset=UTF-8", but a phrase including a parameter never matches.
+     *
+     * @param contentType
+     *            the content type or a part of it, for example "image/"
+     * @return the matching resources
+     */
+    public List<T> getResourcesByContentType(final String contentType)
+    {
+        final String lowerCaseContentType = contentType.toLowerCase(Locale.ROOT);
+
+        // an exact match is just one of the media types containing the phrase, e.g. "application/json" is contained in
+        // "application/json-patch+json" as well
+        final List<int[]> matchingTypes = new ArrayList<>();
+        for (final Map.Entry<String, int[]> entry : resourcesByContentType.entrySet())
+        {
+            if (entry.getKey().contains(lowerCaseContentType))
+            {
+                matchingTypes.add(entry.getValue());
+            }
+        }
+
+        if (matchingTypes.size() == 1)
+        {
+            // already in the original order
+            final int[] indexes = matchingTypes.get(0);
+            return new Selection(indexes, 0, indexes.length);
+        }
+
+        final IndexBuilder matches = new IndexBuilder();
+        for (final int[] indexes : matchingTypes)
+        {
+            for (final int i : indexes)
+            {
+                matches.add(i);
+            }
+        }
+
+        // keep the original order
+        matches.sort();
+
+        return new Selection(matches.indexes, 0, matches.size);
+    }
+
+    /**
+     * Returns all files with a content length in the given range, ordered by content length.
+     *
+     * @param minLength
+     *            the minimum length (inclusive)
+     * @param maxLength
+     *            the maximum length (inclusive)
+     * @return the matching file resources
+     */
+    public List<T> getFilesBySize(final long minLength, final long maxLength)
+    {
+        final int from = findFirstFileBySize(minLength);
+        // there is no length beyond the maximum, so avoid the overflow and take all remaining files
+        final int to = (maxLength == Long.MAX_VALUE) ? filesBySize.length : findFirstFileBySize(maxLength + 1);
+
+        return new Selection(filesBySize, from, Math.max(from, to));
+    }
+
+    /**
+     * Returns all resources whose name contains the given phrase, ignoring case.
+     *
+     * @param matchPhrase
+     *            the phrase
+     * @return the matching resources
+     */
+    public List<T> getMatchingResources(final String matchPhrase)
+    {
+        return getResourcesByName(matchPhrase, true);
+    }
+
+    /**
+     * Returns all resources whose name does not contain the given phrase, ignoring case.
+     *
+     * @param matchPhrase
+     *            the phrase
+     * @return the non-matching resources
+     */
+    public List<T> getNotMatchingResources(final String matchPhrase)
+    {
+        return getResourcesByName(matchPhrase, false);
+    }
+
+    /**
+     * Returns a random resource.
+     *
+     * @return the resource, or <code>null</code> if the catalog is empty
+     */
+    public T getRandom()
+    {
+        return getRandom(getAll());
+    }
+
+    /**
+     * Returns a random file.
+     *
+     * @return the file resource, or <code>null</code> if there is no file
+     */
+    public T getRandomFile()
+    {
+        return getRandom(getFiles());
+    }
+
+    /**
+     * Returns a random directory.
+     *
+     * @return the directory resource, or <code>null</code> if there is no directory
+     */
+    public T getRandomDirectory()
+    {
+        return getRandom(getDirectories());
+    }
+
+    /**
+     * Returns a random resource from the given selection. Selections of this catalog support random access, so this
+     * takes constant time.
+     *
+     * @param selection
+     *            the selection
+     * @return the resource, or <code>null</code> if the selection is empty
+     */
+    public static <T> T getRandom(final List<T> selection)
+    {
+        return selection.isEmpty() ? null : selection.get(XltRandom.nextInt(selection.size()));
+    }
+
+    /**
+     * Returns the path of the resource at the given position.
+     *
+     * @param index
+     *            the position in the catalog
+     * @return the path
+     */
+    public String getPath(final int index)
+    {
+        return paths[index];
+    }
+
+    /**
+     * Returns whether the resource at the given position is a directory.
+     *
+     * @param index
+     *            the position in the catalog
+     * @return <code>true</code> if it is a directory, <code>false</code> otherwise
+     */
+    public boolean isDirectory(final int index)
+    {
+        return directories[index];
+    }
+
+    /**
+     * Returns the content length of the resource at the given position.
+     *
+     * @param index
+     *            the position in the catalog
+     * @return the content length, -1 if unknown
+     */
+    public long getContentLength(final int index)
+    {
+        return contentLengths[index];
+    }
+
+    /**
+     * Returns the last modification time of the resource at the given position.
+     *
+     * @param index
+     *            the position in the catalog
+     * @return the time in ms since epoch, -1 if unknown
+     */
+    public long getLastModified(final int index)
+    {
+        return lastModified[index];
+    }
+
+    /**
+     * Scans all names for the given phrase.
+     *
+     * @param matchPhrase
+     *            the phrase
+     * @param match
+     *            whether to return the matching or the non-matching resources
+     * @return the resources
+     */
+    private List<T> getResourcesByName(final String matchPhrase, final boolean match)
+    {
+        final String lowerCasePhrase = matchPhrase.toLowerCase(Locale.ROOT);
+
+        final IndexBuilder matches = new IndexBuilder();
+        for (int i = 0; i < lowerCaseNames.length; i++)
+        {
+            if (lowerCaseNames[i].contains(lowerCasePhrase) == match)
+            {
+                matches.add(i);
+            }
+        }
+
+        return new Selection(matches.indexes, 0, matches.size);
+    }
+
+    /**
+     * Returns the position of the first file in {@link #filesBySize} with at least the given length.
+     *
+     * @param length
+     *            the length
+     * @return the position
+     */
+    private int findFirstFileBySize(final long length)
+    {
+        int low = 0;
+        int high = filesBySize.length;
+
+        while (low < high)
+        {
+            final int mid = (low + high) >>> 1;
+            if (contentLengths[filesBySize[mid]] < length)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Returns the extension of the given file name.
+     *
+     * @param name
+     *            the file name
+     * @return the extension without the dot, or <code>null</code> if there is none
+     */
+    private static String getExtension(final String name)
+    {
+        final int dot = name.lastIndexOf('.');
+
+        return (dot < 0) ? null : name.substring(dot + 1);
+    }
+
+    /**
+     * Turns a map of index builders into a map of index arrays.
+     *
+     * @param builders
+     *            the index builders
+     * @return the index arrays
+     */
+    private static Map<String, int[]> toIndexMap(final Map<String, IndexBuilder> builders)
+    {
+        final Map<String, int[]> indexes = new HashMap<>(builders.size() * 2);
+        for (final Map.Entry<String, IndexBuilder> entry : builders.entrySet())
+        {
+            indexes.put(entry.getKey(), entry.getValue().toArray());
+        }
+
+        return indexes;
+    }
+
+    /**
+     * An unmodifiable list view of a range of an index array.
+     */
+    private class Selection extends AbstractList<T> implements RandomAccess
+    {
+        /**
+         * The index array.
+         */
+        private final int[] indexes;
+
+        /**
+         * The start of the range (inclusive).
+         */
+        private final int from;
+
+        /**
+         * The end of the range (exclusive).
+         */
+        private final int to;
+
+        /**
+         * Creates a new {@link Selection} object.
+         *
+         * @param indexes
+         *            the index array
+         * @param from
+         *            the start of the range (inclusive)
+         * @param to
+         *            the end of the range (exclusive)
+         */
+        Selection(final int[] indexes, final int from, final int to)
+        {
+            this.indexes = indexes;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(final int index)
+        {
+            if (index < 0 || index >= to - from)
+            {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+
+            return (T) resources[indexes[from + index]];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size()
+        {
+            return to - from;
+        }
+    }
+
+    /**
+     * A growable array of indexes.
+     */
+    private static class IndexBuilder
+    {
+        /**
+         * The indexes.
+         */
+        private int[] indexes = new int[16];
+
+        /**
+         * The number of indexes.
+         */
+        private int size;
+
+        /**
+         * Adds an index.
+         *
+         * @param index
+         *            the index
+         */
+        void add(final int index)
+        {
+            if (size == indexes.length)
+            {
+                indexes = Arrays.copyOf(indexes, size * 2);
+            }
+
+            indexes[size++] = index;
+        }
+
+        /**
+         * Sorts the indexes.
+         */
+        void sort()
+        {
+            Arrays.sort(indexes, 0, size);
+        }
+
+        /**
+         * Returns the indexes as array of the exact size.
+         *
+         * @return the indexes
+         */
+        int[] toArray()
+        {
+            return Arrays.copyOf(indexes, size);
+        }
+    }
+
+    /**
+     * Collects the attributes of the resources to put into a catalog.
+     *
+     * @param <T>
+     *            the type of the resources
+     */
+    private static class Builder<T>
+    {
+        /**
+         * The resources.
+         */
+        Object[] resources;
+
+        /**
+         * The paths of the resources.
+         */
+        String[] paths;
+
+        /**
+         * The lower-case names of the resources.
+         */
+        String[] lowerCaseNames;
+
+        /**
+         * The content lengths of the resources.
+         */
+        long[] contentLengths;
+
+        /**
+         * The last modification times of the resources.
+         */
+        long[] lastModified;
+
+        /**
+         * Whether the resources are directories.
+         */
+        boolean[] directories;
+
+        /**
+         * The lower-case media types of the resources.
+         */
+        String[] mediaTypes;
+
+        /**
+         * The number of resources collected so far.
+         */
+        int size;
+
+        /**
+         * Media types are shared by many resources, so keep just one instance of each.
+         */
+        private final Map<String, String> mediaTypeCache = new HashMap<>();
+
+        /**
+         * Creates a new {@link Builder} object.
+         *
+         * @param capacity
+         *            the expected number of resources
+         */
+        Builder(final int capacity)
+        {
+            final int n = Math.max(16, capacity);
+
+            resources = new Object[n];
+            paths = new String[n];
+            lowerCaseNames = new String[n];
+            contentLengths = new long[n];
+            lastModified = new long[n];
+            directories = new boolean[n];
+            mediaTypes = new String[n];
+        }
+
+        /**
+         * Adds a resource.
+         *
+         * @param resource
+         *            the resource
+         * @param path
+         *            the path
+         * @param directory
+         *            whether it is a directory
+         * @param contentLength
+         *            the content length, -1 if unknown
+         * @param modified
+         *            the last modification time, -1 if unknown
+         * @param contentType
+         *            the content type, may be <code>null</code>
+         */
+        void add(final T resource, final String path, final boolean directory, final long contentLength,
+                 final long modified, final String contentType)
+        {
+            if (size == resources.length)
+            {
+                final int n = size * 2;
+
+                resources = Arrays.copyOf(resources, n);
+                paths = Arrays.copyOf(paths, n);
+                lowerCaseNames = Arrays.copyOf(lowerCaseNames, n);
+                contentLengths = Arrays.copyOf(contentLengths, n);
+                lastModified = Arrays.copyOf(lastModified, n);
+                directories = Arrays.copyOf(directories, n);
+                mediaTypes = Arrays.copyOf(mediaTypes, n);
+            }
+
+            resources[size] = resource;
+            paths[size] = path;
+            lowerCaseNames[size] = getName(path).toLowerCase(Locale.ROOT);
+            contentLengths[size] = contentLength;
+            lastModified[size] = modified;
+            directories[size] = directory;
+            mediaTypes[size] = toMediaType(contentType);
+            size++;
+        }
+
+        /**
+         * Creates the catalog.
+         *
+         * @return the catalog
+         */
+        ResourceCatalog<T> build()
+        {
+            return new ResourceCatalog<>(this);
+        }
+
+        /**
+         * Returns the lower-case media type of the given content type, shared with other resources.
+         *
+         * @param contentType
+         *            the content type, may be <code>null</code>
+         * @return the media type, or <code>null</code> if there is none
+         */
+        private String toMediaType(final String contentType)
+        {
+            if (contentType == null)
+            {
+                return null;
+            }
+
+            final String mediaType = mediaTypeCache.get(contentType);
+            if (mediaType != null)
+            {
+                return mediaType;
+            }
+
+            // strip any parameters like the charset
+            final int semicolon = contentType.indexOf(';');
+            final String value = (semicolon < 0) ? contentType : contentType.substring(0, semicolon);
+
+            final String newMediaType = value.trim().toLowerCase(Locale.ROOT);
+            mediaTypeCache.put(contentType, newMediaType);
+
+            return newMediaType;
+        }
+
+        /**
+         * Returns the last segment of the given path.
+         *
+         * @param path
+         *            the path
+         * @return the name
+         */
+        private static String getName(final String path)
+        {
+            final int end = path.endsWith("/") ? path.length() - 1 : path.length();
+            final int start = path.lastIndexOf('/', end - 1) + 1;
+
+            return path.substring(start, Math.max(start, end));
+        }
+    }
+
+    /**
+     * Creates a catalog from the {@link ResourceEntry} objects passed to it.
+     */
+    public static final class EntryBuilder implements Consumer<ResourceEntry>
+    {
+        /**
+         * The builder doing the actual work.
+         */
+        private final Builder<ResourceEntry> builder = new Builder<>(1024);
+
+        /**
+         * Creates a new {@link EntryBuilder} object.
+         */
+        private EntryBuilder()
+        {
+        }
+
+        /**
+         * Adds the given entry to the catalog.
+         *
+         * @param entry
+         *            the entry
+         */
+        @Override
+        public void accept(final ResourceEntry entry)
+        {
+            builder.add(entry, entry.getPath(), entry.isDirectory(), entry.getContentLength(), entry.getLastModified(),
+                        entry.getContentType());
+        }
+
+        /**
+         * Creates the catalog from the entries added so far.
+         *
+         * @return the catalog
+         */
+        public ResourceCatalog<ResourceEntry> build()
+        {
+            return builder.build();
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.xceptance.xlt.webdav.util;
+
+import java.util.Collections;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+/**
+ * A compact description of a resource as reported in a multi-status response. Other than Sardine's
+ * {@link com.github.sardine.DavResource}, it holds only the plain values of the commonly used properties, so large
+ * listings can be processed with little memory.
+ */
+public class ResourceEntry
+{
+    /**
+     * The decoded path of the resource.
+     */
+    private final String path;
+
+    /**
+     * The status code given for the resource as a whole, -1 if none was given.
+     */
+    private final int statusCode;
+
+    /**
+     * Whether the resource is a collection.
+     */
+    private final boolean directory;
+
+    /**
+     * The content length, -1 if unknown.
+     */
+    private final long contentLength;
+
+    /**
+     * The last modification time in ms since epoch, -1 if unknown.
+     */
+    private final long lastModified;
+
+    /**
+     * The creation time in ms since epoch, -1 if unknown.
+     */
+    private final long creationDate;
+
+    /**
+     * The content type, may be <code>null</code>.
+     */
+    private final String contentType;
+
+    /**
+     * The entity tag, may be <code>null</code>.
+     */
+    private final String etag;
+
+    /**
+     * The display name, may be <code>null</code>.
+     */
+    private final String displayName;
+
+    /**
+     * Any other property reported, may be <code>null</code>.
+     */
+    private final Map<QName, String> customProperties;
+
+    /**
+     * Creates a new {@link ResourceEntry} object.
+     *
+     * @param path
+     *            the decoded path of the resource
+     * @param statusCode
+     *            the status code given for the resource as a whole, -1 if none
+     * @param directory
+     *            whether the resource is a collection
+     * @param contentLength
+     *            the content length, -1 if unknown
+     * @param lastModified
+     *            the last modification time in ms since epoch, -1 if unknown
+     * @param creationDate
+     *            the creation time in ms since epoch, -1 if unknown
+     * @param contentType
+     *            the content type, may be <code>null</code>
+     * @param etag
+     *            the entity tag, may be <code>null</code>
+     * @param displayName
+     *            the display name, may be <code>null</code>
+     * @param customProperties
+     *            any other property reported, may be <code>null</code>
+     */
+    public ResourceEntry(final String path, final int statusCode, final boolean directory, final long contentLength,
+                         final long lastModified, final long creationDate, final String contentType, final String etag,
+                         final String displayName, final Map<QName, String> customProperties)
+    {
+        this.path = path;
+        this.statusCode = statusCode;
+        this.directory = directory;
+        this.contentLength = contentLength;
+        this.lastModified = lastModified;
+        this.creationDate = creationDate;
+        this.contentType = contentType;
+        this.etag = etag;
+        this.displayName = displayName;
+        this.customProperties = customProperties;
+    }
+
+    /**
+     * Returns the decoded path of the resource. Pass it to {@link com.xceptance.xlt.webdav.impl.AbstractWebDavAction}'s
+     * <code>getAbsoluteUrl()</code> to use it in subsequent actions.
+     *
+     * @return the path
+     */
+    public String getPath()
+    {
+        return path;
+    }
+
+    /**
+     * Returns the name of the resource, i.e. the last segment of its path.
+     *
+     * @return the name
+     */
+    public String getName()
+    {
+        final int end = path.endsWith("/") ? path.length() - 1 : path.length();
+        final int start = path.lastIndexOf('/', end - 1) + 1;
+
+        return path.substring(start, Math.max(start, end));
+    }
+
+    /**
+     * Returns the status code given for the resource as a whole. Listings usually report a status per property only,
+     * while the results of operations like DELETE or COPY report a status per resource.
+     *
+     * @return the status code, -1 if none was given
+     */
+    public int getStatusCode()
+    {
+        return statusCode;
+    }
+
+    /**
+     * Returns whether the resource is a collection.
+     *
+     * @return <code>true</code> if it is a directory, <code>false</code> otherwise
+     */
+    public boolean isDirectory()
+    {
+        return directory;
+    }
+
+    /**
+     * Returns the content length.
+     *
+     * @return the content length, -1 if unknown
+     */
+    public long getContentLength()
+    {
+        return contentLength;
+    }
+
+    /**
+     * Returns the last modification time.
+     *
+     * @return the time in ms since epoch, -1 if unknown
+     */
+    public long getLastModified()
+    {
+        return lastModified;
+    }
+
+    /**
+     * Returns the creation time.
+     *
+     * @return the time in ms since epoch, -1 if unknown
+     */
+    public long getCreationDate()
+    {
+        return creationDate;
+    }
+
+    /**
+     * Returns the content type.
+     *
+     * @return the content type, may be <code>null</code>
+     */
+    public String getContentType()
+    {
+        return contentType;
+    }
+
+    /**
+     * Returns the entity tag.
+     *
+     * @return the entity tag, may be <code>null</code>
+     */
+    public String getEtag()
+    {
+        return etag;
+    }
+
+    /**
+     * Returns the display name.
+     *
+     * @return the display name, may be <code>null</code>
+     */
+    public String getDisplayName()
+    {
+        return displayName;
+    }
+
+    /**
+     * Returns any other property reported for the resource. For property name listings, these are the names of all
+     * properties available, each with an empty value.
+     *
+     * @return the properties and their text values, never <code>null</code>
+     */
+    public Map<QName, String> getCustomProperties()
+    {
+        return (customProperties == null) ? Collections.<QName, String>emptyMap() : customProperties;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return path;
+    }
+}
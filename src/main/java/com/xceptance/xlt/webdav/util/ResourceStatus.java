@@ -0,0 +1,128 @@
+package com.xceptance.xlt.webdav.util;
+
+import java.util.Collections;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+/**
+ * The outcome of an operation for a single resource as reported in a multi-status (207) response, for instance when a
+ * COPY, MOVE or DELETE request on a collection failed for some of its members, or when a PROPPATCH request could not
+ * set some of the properties.
+ */
+public class ResourceStatus
+{
+    /**
+     * The decoded path of the resource.
+     */
+    private final String path;
+
+    /**
+     * The status code given for the resource as a whole, -1 if none.
+     */
+    private final int statusCode;
+
+    /**
+     * The status codes given per property, may be <code>null</code>.
+     */
+    private final Map<QName, Integer> propertyStatusCodes;
+
+    /**
+     * Creates a new {@link ResourceStatus} object.
+     *
+     * @param path
+     *            the decoded path of the resource
+     * @param statusCode
+     *            the status code given for the resource as a whole, -1 if none
+     * @param propertyStatusCodes
+     *            the status codes given per property, may be <code>null</code>
+     */
+    public ResourceStatus(final String path, final int statusCode, final Map<QName, Integer> propertyStatusCodes)
+    {
+        this.path = path;
+        this.statusCode = statusCode;
+        this.propertyStatusCodes = propertyStatusCodes;
+    }
+
+    /**
+     * Returns the decoded path of the resource.
+     *
+     * @return the path
+     */
+    public String getPath()
+    {
+        return path;
+    }
+
+    /**
+     * Returns the status code given for the resource as a whole.
+     *
+     * @return the status code, or -1 if only property status codes were given
+     */
+    public int getStatusCode()
+    {
+        return statusCode;
+    }
+
+    /**
+     * Returns the status codes given per property.
+     *
+     * @return the status codes keyed by property name, never <code>null</code>
+     */
+    public Map<QName, Integer> getPropertyStatusCodes()
+    {
+        return (propertyStatusCodes == null) ? Collections.<QName, Integer>emptyMap() : propertyStatusCodes;
+    }
+
+    /**
+     * Returns whether the operation succeeded for the resource, i.e. whether all status codes given denote success.
+     *
+     * @return <code>true</code> if successful, <code>false</code> otherwise
+     */
+    public boolean isSuccessful()
+    {
+        if (statusCode >= 0 && !isSuccess(statusCode))
+        {
+            return false;
+        }
+
+        if (propertyStatusCodes != null)
+        {
+            for (final Integer propertyStatusCode : propertyStatusCodes.values())
+            {
+                if (!isSuccess(propertyStatusCode))
+                {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks whether the given status code denotes success.
+     *
+     * @param code
+     *            the status code
+     * @return <code>true</code> if it is a 2xx code, <code>false</code> otherwise
+     */
+    private static boolean isSuccess(final int code)
+    {
+        return code >= 200 && code < 300;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        if (propertyStatusCodes == null)
+        {
+            return path + " (" + statusCode + ")";
+        }
+
+        return path + " (" + ((statusCode < 0) ? "" : statusCode + ", ") + propertyStatusCodes + ")";
+    }
+}
@@ -0,0 +1,251 @@
+package com.xceptance.xlt.webdav.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Remembers the validators (entity tag and last modification date) of the files a virtual user has downloaded, so that
+ * repeated downloads can be sent as conditional requests, just like sync clients do. Only the validators are kept, not
+ * the content. The cache holds a limited number of entries, evicting the least recently used ones first.
+ * <p>
+ * Each WebDAV connection has its own cache, see {@link WebDavContext#getValidatorCache()}. It is used by
+ * {@link com.xceptance.xlt.webdav.actions.WebDavGet} if conditional requests are enabled.
+ */
+public final class ValidatorCache
+{
+    /**
+     * The property that configures the maximum number of entries per cache.
+     */
+    public static final String PROP_MAX_ENTRIES = "com.xceptance.xlt.webdav.validatorCache.maxEntries";
+
+    /**
+     * The validators, keyed by URL.
+     */
+    private final Map<String, Validators> entries;
+
+    /**
+     * Guards the entries.
+     */
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * The number of conditional requests answered with "304 Not Modified".
+     */
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     * The number of requests that had to fetch the content.
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a new {@link ValidatorCache} object.
+     *
+     * @param maxEntries
+     *            the maximum number of entries
+     */
+    public ValidatorCache(final int maxEntries)
+    {
+        entries = new LinkedHashMap<String, Validators>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Validators> eldest)
+            {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the validators known for the given URL.
+     *
+     * @param url
+     *            the URL
+     * @return the validators, or <code>null</code> if none are known
+     */
+    public Validators get(final String url)
+    {
+        lock.lock();
+        try
+        {
+            return entries.get(url);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remembers the validators for the given URL. If neither validator is given, any entry for the URL is removed.
+     *
+     * @param url
+     *            the URL
+     * @param etag
+     *            the entity tag as sent by the server, may be <code>null</code>
+     * @param lastModified
+     *            the last modification date as sent by the server, may be <code>null</code>
+     */
+    public void put(final String url, final String etag, final String lastModified)
+    {
+        if (etag == null && lastModified == null)
+        {
+            remove(url);
+            return;
+        }
+
+        lock.lock();
+        try
+        {
+            entries.put(url, new Validators(etag, lastModified));
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forgets the validators for the given URL.
+     *
+     * @param url
+     *            the URL
+     */
+    public void remove(final String url)
+    {
+        lock.lock();
+        try
+        {
+            entries.remove(url);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forgets all validators.
+     */
+    public void clear()
+    {
+        lock.lock();
+        try
+        {
+            entries.clear();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return the number of entries
+     */
+    public int size()
+    {
+        lock.lock();
+        try
+        {
+            return entries.size();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Counts a conditional request answered with "304 Not Modified".
+     */
+    public void recordHit()
+    {
+        hits.incrementAndGet();
+    }
+
+    /**
+     * Counts a request that had to fetch the content.
+     */
+    public void recordMiss()
+    {
+        misses.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of conditional requests answered with "304 Not Modified" so far.
+     *
+     * @return the number of hits
+     */
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of requests that had to fetch the content so far.
+     *
+     * @return the number of misses
+     */
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * The validators of a resource.
+     */
+    public static final class Validators
+    {
+        /**
+         * The entity tag, may be <code>null</code>.
+         */
+        private final String etag;
+
+        /**
+         * The last modification date in HTTP format, may be <code>null</code>.
+         */
+        private final String lastModified;
+
+        /**
+         * Creates a new {@link Validators} object.
+         *
+         * @param etag
+         *            the entity tag
+         * @param lastModified
+         *            the last modification date
+         */
+        Validators(final String etag, final String lastModified)
+        {
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * Returns the entity tag.
+         *
+         * @return the entity tag, or <code>null</code> if unknown
+         */
+        public String getEtag()
+        {
+            return etag;
+        }
+
+        /**
+         * Returns the last modification date in HTTP format.
+         *
+         * @return the date, or <code>null</code> if unknown
+         */
+        public String getLastModified()
+        {
+            return lastModified;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.xceptance.xlt.webdav.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+
+import com.xceptance.xlt.webdav.impl.GeneratedContentEntity;
+import com.xceptance.xlt.webdav.impl.InstrumentedAsyncClient;
+import com.xceptance.xlt.webdav.impl.InstrumentedAsyncClient.AsyncResponse;
+
+/**
+ * Performs WebDAV operations asynchronously, returning a {@link CompletableFuture} for each of them. The requests are
+ * sent via non-blocking I/O (see {@link InstrumentedAsyncClient}), so no thread is blocked while a request is in flight
+ * and a single virtual user can keep many requests open at the same time, for example to simulate a large number of
+ * slow or long-running connections, and react to their results once they arrive.
+ * <p>
+ * The client uses the server and credentials of the connection of the current virtual user as opened by
+ * {@link com.xceptance.xlt.webdav.actions.WebDavConnect}, but has connections of its own. Requests are logged just like
+ * the requests of the actions, i.e. for the action being active at the time the request is sent. So start the
+ * operations from within an action and wait for their futures before the action ends. Failed operations complete their
+ * futures exceptionally, with a {@link com.github.sardine.impl.SardineException} (possibly wrapped) for unexpected
+ * status codes.
+ * <p>
+ * Close the client when done to release its connections and I/O threads. Any operation not finished by then is
+ * completed with a {@link CancellationException}.
+ */
+public class WebDavAsyncClient implements Closeable
+{
+    /**
+     * The connection of the virtual user.
+     */
+    private final WebDavContext context;
+
+    /**
+     * The client that performs the requests.
+     */
+    private final InstrumentedAsyncClient client;
+
+    /**
+     * Creates a new {@link WebDavAsyncClient} object for the current virtual user.
+     *
+     * @param maxInFlight
+     *            the maximum number of connections and hence of requests in flight at the same time, any further
+     *            operations are queued until a connection is available
+     */
+    public WebDavAsyncClient(final int maxInFlight)
+    {
+        context = WebDavContext.getCurrent();
+        if (context == null)
+        {
+            throw new IllegalStateException("No WebDAV connection open for the current user, run WebDavConnect first");
+        }
+
+        client = new InstrumentedAsyncClient(context, maxInFlight);
+    }
+
+    /**
+     * Checks whether a resource exists using the HEAD request method.
+     *
+     * @param relativePath
+     *            the resource path relative to your WebDAV base directory
+     * @return the future result, <code>true</code> if the resource exists
+     */
+    public CompletableFuture<Boolean> exists(final String relativePath)
+    {
+        return client.exists(getUrl(relativePath));
+    }
+
+    /**
+     * Downloads a file using the GET request method. The content is discarded while it is being received.
+     *
+     * @param relativePath
+     *            the resource path relative to your WebDAV base directory
+     * @return the future number of bytes read
+     */
+    public CompletableFuture<Long> get(final String relativePath)
+    {
+        return client.get(getUrl(relativePath));
+    }
+
+    /**
+     * Uploads a file using the PUT request method.
+     *
+     * @param relativePath
+     *            the resource path relative to your WebDAV base directory
+     * @param fileContent
+     *            the file content to upload
+     * @return the future completion
+     */
+    public CompletableFuture<Void> put(final String relativePath, final byte[] fileContent)
+    {
+        return client.put(getUrl(relativePath), new ByteArrayEntity(fileContent));
+    }
+
+    /**
+     * Uploads generated content using the PUT request method.
+     *
+     * @param relativePath
+     *            the resource path relative to your WebDAV base directory
+     * @param generatedContent
+     *            the description of the content to generate and upload
+     * @return the future completion
+     */
+    public CompletableFuture<Void> put(final String relativePath, final GeneratedContent generatedContent)
+    {
+        return client.put(getUrl(relativePath), new GeneratedContentEntity(generatedContent));
+    }
+
+    /**
+     * Creates a directory using the MKCOL request method.
+     *
+     * @param relativePath
+     *            the directory path relative to your WebDAV base directory
+     * @return the future completion
+     */
+    public CompletableFuture<Void> createDirectory(final String relativePath)
+    {
+        return client.createDirectory(getUrl(relativePath));
+    }
+
+    /**
+     * Deletes a resource using the DELETE request method.
+     *
+     * @param relativePath
+     *            the resource path relative to your WebDAV base directory
+     * @return the future completion
+     */
+    public CompletableFuture<Void> delete(final String relativePath)
+    {
+        return client.delete(getUrl(relativePath));
+    }
+
+    /**
+     * Copies a resource using the COPY request method.
+     *
+     * @param relativeSourcePath
+     *            the source path relative to your WebDAV base directory
+     * @param relativeTargetPath
+     *            the target path relative to your WebDAV base directory
+     * @return the future completion
+     */
+    public CompletableFuture<Void> copy(final String relativeSourcePath, final String relativeTargetPath)
+    {
+        return client.copy(getUrl(relativeSourcePath), getUrl(relativeTargetPath));
+    }
+
+    /**
+     * Moves a resource using the MOVE request method.
+     *
+     * @param relativeSourcePath
+     *            the source path relative to your WebDAV base directory
+     * @param relativeTargetPath
+     *            the target path relative to your WebDAV base directory
+     * @return the future completion
+     */
+    public CompletableFuture<Void> move(final String relativeSourcePath, final String relativeTargetPath)
+    {
+        return client.move(getUrl(relativeSourcePath), getUrl(relativeTargetPath));
+    }
+
+    /**
+     * Lists a resource using the PROPFIND request method.
+     *
+     * @param relativePath
+     *            the resource path relative to your WebDAV base directory
+     * @param depth
+     *            the depth of the listing, -1 for infinity
+     * @return the future entries, including the resource itself
+     */
+    public CompletableFuture<List<ResourceEntry>> list(final String relativePath, final int depth)
+    {
+        return client.list(getUrl(relativePath), depth);
+    }
+
+    /**
+     * Sends any other request. The response is not validated.
+     *
+     * @param request
+     *            the request, use {@link #getUrl(String)} to build its URL
+     * @param bufferContent
+     *            whether to keep the response content, otherwise it is discarded while it is being received
+     * @return the future response
+     */
+    public CompletableFuture<AsyncResponse> execute(final HttpUriRequest request, final boolean bufferContent)
+    {
+        return client.execute(request, bufferContent);
+    }
+
+    /**
+     * Closes the connections of this client and stops its I/O threads. Operations not finished yet are completed with a
+     * {@link CancellationException}. The connection of the virtual user stays open.
+     *
+     * @throws IOException
+     *             if the client cannot be shut down properly
+     */
+    @Override
+    public void close() throws IOException
+    {
+        client.close();
+    }
+
+    /**
+     * Returns an absolute URL for the passed relative path.
+     *
+     * @param relativePath
+     *            the relative path to append
+     * @return the resulting absolute URL
+     */
+    public String getUrl(final String relativePath)
+    {
+        return context.getUrlBuilder().getUrl(relativePath);
+    }
+}
@@ -1,61 +1,416 @@
 package com.xceptance.xlt.webdav.util;
 
 import java.io.IOException;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import com.xceptance.xlt.api.engine.Session;
+import com.xceptance.xlt.api.engine.SessionShutdownListener;
+import com.xceptance.xlt.api.util.XltException;
+import com.xceptance.xlt.api.util.XltProperties;
 import com.xceptance.xlt.webdav.impl.AbstractWebDavAction;
+import com.xceptance.xlt.webdav.impl.CustomizedSardineImpl;
+import com.xceptance.xlt.webdav.impl.WebDavUrlBuilder;
 
 /**
- * Context class to perform basic action flow and logging. Internally every created WebdavAction is stored in a map
- * related to user id (Session.getCurrent().getUserID()). This will build an action chain of your "activeAction" and all
- * "previousAction"'s. You can access your actions by using this context and its .getActiveAction() method.
+ * The WebDAV connection of a virtual user. It is opened by {@link com.xceptance.xlt.webdav.actions.WebDavConnect} and
+ * owns the Sardine client as well as the connection settings, which all subsequent actions of the user share. It also
+ * keeps track of the currently active action, so the request details can be logged for the right action.
+ * <p>
+ * The context is bound to the thread of the virtual user, so looking it up is cheap and actions do not need to refer to
+ * their predecessors. Threads working on behalf of the user, for instance the workers of parallel actions, have to be
+ * bound explicitly via {@link #setCurrent(WebDavContext)}, which is done by
+ * {@link com.xceptance.xlt.webdav.impl.ParallelTaskRunner}. It also remembers the XLT session of the user, since the
+ * session cannot be looked up from threads outside the thread group of the user, for instance virtual threads.
+ * <p>
+ * Opening a new connection closes the previous one of the same thread. The client is released automatically when the
+ * XLT session ends, but you may still call {@link #cleanUp()} to release it earlier.
  *
  * @author @author Karsten Sommer (Xceptance Software Technologies GmbH)
  */
-public abstract class WebDavContext
+public final class WebDavContext implements SessionShutdownListener
 {
     /**
-     * UserID related storage for your action to be performed <String UserID, AbstractWebdavAction activeAction>
+     * The context of the current virtual user. Deliberately not inherited, as threads started by the user may outlive
+     * the context or be pooled and reused for other users.
      */
-    private static final Map<String, AbstractWebDavAction<?>> activeActions = new ConcurrentHashMap<>();
+    private static final ThreadLocal<WebDavContext> currentContext = new ThreadLocal<>();
 
     /**
-     * Returns last created action related to session userID Called implicit by AbstractWebdavAction's constructor to
-     * build an action chain
+     * The XLT session of the virtual user.
+     */
+    private final Session session;
+
+    /**
+     * The Sardine client, <code>null</code> once the context has been closed.
+     */
+    private volatile CustomizedSardineImpl sardine;
+
+    /**
+     * The action currently active.
+     */
+    private volatile AbstractWebDavAction<?> activeAction;
+
+    /**
+     * The host name and the protocol to use.
+     */
+    private final String hostName;
+
+    /**
+     * The WebDAV base directory relative to the host.
+     */
+    private final String webDavPath;
+
+    /**
+     * The user name to use if the server requires authentication.
+     */
+    private final String userName;
+
+    /**
+     * The password to use if the server requires authentication.
+     */
+    private final String userPassword;
+
+    /**
+     * Builds the encoded URLs for host name and WebDAV directory.
+     */
+    private final WebDavUrlBuilder urlBuilder;
+
+    /**
+     * The validators of the files downloaded so far.
+     */
+    private final ValidatorCache validatorCache;
+
+    /**
+     * What the user knows about the resources on the server, <code>null</code> if not enabled.
+     */
+    private volatile MetadataCache metadataCache;
+
+    /**
+     * The locks the user holds on the server.
+     */
+    private final LockRegistry locks = new LockRegistry();
+
+    /**
+     * Opens a new connection for the current virtual user and makes it the current one. Any connection previously
+     * opened in this thread is closed. Called implicitly by the constructor of
+     * {@link com.xceptance.xlt.webdav.actions.WebDavConnect}.
+     *
+     * @param hostName
+     *            the host name and the protocol to use
+     * @param webDavPath
+     *            the WebDAV base directory relative to the host
+     * @param userName
+     *            the user name if authorization is required, can be null
+     * @param userPassword
+     *            the password if authorization is required, can be null
+     * @return the new context
+     * @throws XltException
+     *             if the previous connection cannot be closed
+     */
+    public static WebDavContext open(final String hostName, final String webDavPath, final String userName,
+                                     final String userPassword)
+    {
+        // do not leak the client of a previous connection, nobody can reach it anymore once replaced
+        try
+        {
+            cleanUp();
+        }
+        catch (final IOException ex)
+        {
+            throw new XltException("Failed to close the previous WebDAV connection", ex);
+        }
+
+        final WebDavContext context = new WebDavContext(hostName, webDavPath, userName, userPassword);
+
+        // release the client when the session ends, even if the test case does not clean up
+        context.session.addShutdownListener(context);
+        currentContext.set(context);
+
+        return context;
+    }
+
+    /**
+     * Returns the connection of the current virtual user.
+     *
+     * @return the context, or <code>null</code> if no connection has been opened or it has been closed already
+     */
+    public static WebDavContext getCurrent()
+    {
+        final WebDavContext context = currentContext.get();
+
+        return (context == null || context.isClosed()) ? null : context;
+    }
+
+    /**
+     * Binds the given connection to the current thread, for instance a worker thread performing requests on behalf of
+     * a virtual user, or unbinds any connection if <code>null</code> is passed. Other than {@link #open}, this does not
+     * close the connection bound before.
+     *
+     * @param context
+     *            the context to bind, may be <code>null</code>
+     */
+    public static void setCurrent(final WebDavContext context)
+    {
+        if (context == null)
+        {
+            currentContext.remove();
+        }
+        else
+        {
+            currentContext.set(context);
+        }
+    }
+
+    /**
+     * Returns the currently active action of the current virtual user. Called implicitly to attribute any request to
+     * the right action.
      *
-     * @return Current WebdavAction related to userID
+     * @return the current action, or <code>null</code> if there is none
      */
     public static AbstractWebDavAction<?> getActiveAction()
     {
-        return activeActions.get(Session.getCurrent().getUserID());
+        final WebDavContext context = currentContext.get();
+
+        return (context == null) ? null : context.activeAction;
     }
 
     /**
-     * Sets action as active action related to session userID Called implicit by AbstractWebdavAction's constructor to
-     * build an action chain
+     * Sets the currently active action of the current virtual user. Called implicitly by the constructor of
+     * {@link AbstractWebDavAction}.
      *
      * @param activeAction
      *            current WebdavAction which is getting to be performed
      */
     public static void setActiveAction(final AbstractWebDavAction<?> activeAction)
     {
-        activeActions.put(Session.getCurrent().getUserID(), activeAction);
+        final WebDavContext context = currentContext.get();
+        if (context != null)
+        {
+            context.activeAction = activeAction;
+        }
     }
 
     /**
-     * Shutdowns users sardine client and releases users "activeAction" (IMPORTANT after test case completion to avoid
-     * endless chaining of actions and resulting memory leaks)
+     * Shuts down the Sardine client of the current virtual user and releases the connection. Happens automatically when
+     * the XLT session ends, but can be called earlier.
      *
      * @throws IOException
+     *             if the client cannot be shut down properly
      */
     public static void cleanUp() throws IOException
     {
-        final AbstractWebDavAction<?> action = activeActions.remove(Session.getCurrent().getUserID());
-        if (action != null)
+        final WebDavContext context = currentContext.get();
+        if (context != null)
+        {
+            currentContext.remove();
+            context.session.removeShutdownListener(context);
+
+            context.close();
+        }
+    }
+
+    /**
+     * Creates a new {@link WebDavContext} object and a Sardine client configured accordingly.
+     *
+     * @param hostName
+     *            the host name and the protocol to use
+     * @param webDavPath
+     *            the WebDAV base directory relative to the host
+     * @param userName
+     *            the user name if authorization is required, can be null
+     * @param userPassword
+     *            the password if authorization is required, can be null
+     */
+    private WebDavContext(final String hostName, final String webDavPath, final String userName, final String userPassword)
+    {
+        session = Session.getCurrent();
+        this.hostName = hostName;
+        this.webDavPath = webDavPath;
+        this.userName = userName;
+        this.userPassword = userPassword;
+        urlBuilder = new WebDavUrlBuilder(hostName, webDavPath);
+
+        final XltProperties props = XltProperties.getInstance();
+        validatorCache = new ValidatorCache(props.getProperty(ValidatorCache.PROP_MAX_ENTRIES, 1000));
+
+        final int metadataCacheSize = props.getProperty(MetadataCache.PROP_MAX_ENTRIES, 0);
+        if (metadataCacheSize > 0)
+        {
+            metadataCache = new MetadataCache(metadataCacheSize);
+        }
+
+        // Creates configured sardine client
+        sardine = new CustomizedSardineImpl();
+        sardine.setCredentials(userName, userPassword);
+
+        // ok, let us see if gzip is desired
+        if (props.getProperty("com.xceptance.xlt.http.gzip", true))
+        {
+            sardine.enableCompression();
+        }
+        else
+        {
+            sardine.disableCompression();
+        }
+    }
+
+    /**
+     * Shuts down the Sardine client and drops the reference to the active action.
+     *
+     * @throws IOException
+     *             if the client cannot be shut down properly
+     */
+    public void close() throws IOException
+    {
+        final CustomizedSardineImpl client = sardine;
+
+        sardine = null;
+        activeAction = null;
+
+        if (client != null)
+        {
+            client.shutdown();
+        }
+    }
+
+    /**
+     * Returns whether this context has been closed already.
+     *
+     * @return <code>true</code> if closed, <code>false</code> otherwise
+     */
+    public boolean isClosed()
+    {
+        return sardine == null;
+    }
+
+    /**
+     * Called when the XLT session ends. Closes this context.
+     */
+    @Override
+    public void shutdown()
+    {
+        try
         {
-            action.releaseClient();
+            close();
         }
+        catch (final IOException ex)
+        {
+            // the session is over anyway, nothing left to do
+        }
+    }
+
+    /**
+     * Returns the Sardine client.
+     *
+     * @return the client, or <code>null</code> if the context has been closed
+     */
+    public CustomizedSardineImpl getSardine()
+    {
+        return sardine;
+    }
+
+    /**
+     * Returns the XLT session of the virtual user this connection belongs to.
+     *
+     * @return the session
+     */
+    public Session getSession()
+    {
+        return session;
+    }
+
+    /**
+     * Returns the host name.
+     *
+     * @return the host name
+     */
+    public String getHostName()
+    {
+        return hostName;
+    }
+
+    /**
+     * Returns the WebDAV base directory relative to the host.
+     *
+     * @return the WebDAV path
+     */
+    public String getWebDavPath()
+    {
+        return webDavPath;
+    }
+
+    /**
+     * Returns the user name used if the server requires authentication.
+     *
+     * @return the user name
+     */
+    public String getUserName()
+    {
+        return userName;
+    }
+
+    /**
+     * Returns the password used if the server requires authentication.
+     *
+     * @return the password
+     */
+    public String getUserPassword()
+    {
+        return userPassword;
+    }
+
+    /**
+     * Returns the builder for the encoded URLs of this connection.
+     *
+     * @return the URL builder
+     */
+    public WebDavUrlBuilder getUrlBuilder()
+    {
+        return urlBuilder;
+    }
+
+    /**
+     * Returns the validators of the files downloaded via this connection.
+     *
+     * @return the validator cache
+     */
+    public ValidatorCache getValidatorCache()
+    {
+        return validatorCache;
+    }
+
+    /**
+     * Returns what the user knows about the resources on the server from its own operations.
+     *
+     * @return the metadata cache, or <code>null</code> if not enabled
+     */
+    public MetadataCache getMetadataCache()
+    {
+        return metadataCache;
+    }
+
+    /**
+     * Returns the locks the user holds on the server. The lock tokens are submitted automatically with any request
+     * modifying a locked resource.
+     *
+     * @return the lock registry
+     */
+    public LockRegistry getLocks()
+    {
+        return locks;
+    }
+
+    /**
+     * Enables the metadata cache for this connection, replacing any existing one.
+     *
+     * @param maxEntries
+     *            the maximum number of entries
+     * @return the new metadata cache
+     */
+    public MetadataCache enableMetadataCache(final int maxEntries)
+    {
+        final MetadataCache cache = new MetadataCache(maxEntries);
+        metadataCache = cache;
+
+        return cache;
     }
 }
@@ -0,0 +1,145 @@
+package com.xceptance.xlt.webdav.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import com.xceptance.xlt.webdav.impl.ParallelTaskRunner;
+
+/**
+ * Utility methods to handle content streams.
+ */
+public abstract class WebDavStreamUtils
+{
+    /**
+     * The size of the buffers used to read content streams.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The maximum number of idle buffers kept in {@link #BUFFER_POOL}.
+     */
+    private static final int MAX_POOLED_BUFFERS = 64;
+
+    /**
+     * The buffer used to read content streams, one per thread to avoid allocating it anew for each download.
+     */
+    private static final ThreadLocal<byte[]> READ_BUFFER = new ThreadLocal<byte[]>()
+    {
+        @Override
+        protected byte[] initialValue()
+        {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+
+    /**
+     * The buffers used to read content streams if the workers are virtual threads, <code>null</code> otherwise. Each
+     * virtual thread lives for a single task only, so a buffer per thread would be allocated anew for each task and
+     * never be reused. Instead, the buffers are shared by all threads.
+     */
+    private static final BlockingQueue<byte[]> BUFFER_POOL = ParallelTaskRunner.isUsingVirtualThreads()
+        ? new ArrayBlockingQueue<byte[]>(MAX_POOLED_BUFFERS) : null;
+
+    /**
+     * Reads the given stream to the end without keeping its content. The stream is not closed.
+     *
+     * @param inputStream
+     *            the stream to read
+     * @param digest
+     *            the digest to feed with the content, may be <code>null</code>
+     * @return the number of bytes read
+     * @throws IOException
+     *             if reading the stream failed
+     */
+    public static long drain(final InputStream inputStream, final ContentDigest digest) throws IOException
+    {
+        final byte[] data = acquireBuffer();
+        try
+        {
+            long totalBytes = 0;
+            int bytesRead;
+            while ((bytesRead = inputStream.read(data, 0, data.length)) != -1)
+            {
+                if (digest != null)
+                {
+                    digest.update(data, 0, bytesRead);
+                }
+
+                totalBytes += bytesRead;
+            }
+
+            return totalBytes;
+        }
+        finally
+        {
+            releaseBuffer(data);
+        }
+    }
+
+    /**
+     * Copies the given input stream to the given output stream until the end of the input. No stream is closed.
+     *
+     * @param inputStream
+     *            the stream to read
+     * @param outputStream
+     *            the stream to write to
+     * @return the number of bytes copied
+     * @throws IOException
+     *             if reading or writing failed
+     */
+    public static long copy(final InputStream inputStream, final OutputStream outputStream) throws IOException
+    {
+        final byte[] data = acquireBuffer();
+        try
+        {
+            long totalBytes = 0;
+            int bytesRead;
+            while ((bytesRead = inputStream.read(data, 0, data.length)) != -1)
+            {
+                outputStream.write(data, 0, bytesRead);
+                totalBytes += bytesRead;
+            }
+
+            return totalBytes;
+        }
+        finally
+        {
+            releaseBuffer(data);
+        }
+    }
+
+    /**
+     * Returns a buffer to read a content stream with, either the buffer of the current thread or one from the pool.
+     *
+     * @return the buffer
+     */
+    private static byte[] acquireBuffer()
+    {
+        if (BUFFER_POOL == null)
+        {
+            return READ_BUFFER.get();
+        }
+
+        final byte[] buffer = BUFFER_POOL.poll();
+
+        return (buffer == null) ? new byte[BUFFER_SIZE] : buffer;
+    }
+
+    /**
+     * Hands a buffer obtained via {@link #acquireBuffer()} back once the content stream has been read. The buffer is
+     * dropped if the pool is full already.
+     *
+     * @param buffer
+     *            the buffer
+     */
+    private static void releaseBuffer(final byte[] buffer)
+    {
+        if (BUFFER_POOL != null)
+        {
+            BUFFER_POOL.offer(buffer);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.xceptance.xlt.webdav.util;
 
+import java.util.List;
+
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.junit.Assert;
@@ -50,4 +52,25 @@ public class WebDavValidationUtils
         Assert.assertTrue("Unexpected status code: " + actualStatusCode + " is not one of " + ArrayUtils.toString(expectedStatusCodes),
                           ArrayUtils.contains(expectedStatusCodes, actualStatusCode));
     }
+
+    /**
+     * Validates that the operation succeeded for all resources reported in multi-status responses. The first few
+     * failures are listed in the error message.
+     *
+     * @param result
+     *            the collected multi-status outcomes
+     * @throws AssertionError
+     *             if validation fails
+     */
+    public static void validateMultiStatus(final MultiStatusResult result) throws AssertionError
+    {
+        final List<ResourceStatus> failures = result.getFailures();
+        if (!failures.isEmpty())
+        {
+            final int shown = Math.min(failures.size(), 5);
+
+            Assert.fail("Operation failed for " + failures.size() + " of " + result.getResourceCount() + " resources: " +
+                        StringUtils.join(failures.subList(0, shown), ", ") + (failures.size() > shown ? ", ..." : ""));
+        }
+    }
 }
@@ -0,0 +1,136 @@
+package com.xceptance.xlt.webdav.impl;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Tests the implementation of {@link CustomizedSardineImpl}.
+ */
+public class CustomizedSardineImplTest
+{
+    @Test
+    public void testCreatePropPatchBody() throws Exception
+    {
+        final Map<QName, String> propertiesToSet = new LinkedHashMap<>();
+        propertiesToSet.put(new QName("DAV:", "displayname"), "Tom & Jerry's <\"best\">");
+        propertiesToSet.put(new QName("urn:x\"y", "color"), "red");
+        propertiesToSet.put(new QName("plain"), "");
+
+        final Element root = parse(CustomizedSardineImpl.createPropPatchBody(propertiesToSet,
+                                                                             Arrays.asList(new QName("urn:x", "size"),
+                                                                                           new QName("DAV:", "getetag"))));
+
+        Assert.assertEquals("DAV:", root.getNamespaceURI());
+        Assert.assertEquals("propertyupdate", root.getLocalName());
+
+        final Element[] properties = getProperties(root, "set");
+        Assert.assertEquals(3, properties.length);
+        assertProperty(properties[0], "DAV:", "displayname", "Tom & Jerry's <\"best\">");
+        assertProperty(properties[1], "urn:x\"y", "color", "red");
+        assertProperty(properties[2], null, "plain", "");
+
+        final Element[] removed = getProperties(root, "remove");
+        Assert.assertEquals(2, removed.length);
+        assertProperty(removed[0], "urn:x", "size", "");
+        assertProperty(removed[1], "DAV:", "getetag", "");
+    }
+
+    @Test
+    public void testCreatePropPatchBody_SetOnly() throws Exception
+    {
+        final Element root = parse(CustomizedSardineImpl.createPropPatchBody(Collections.singletonMap(new QName("urn:x", "color"),
+                                                                                                      "blue"),
+                                                                             Collections.<QName>emptyList()));
+
+        Assert.assertEquals(1, getProperties(root, "set").length);
+        Assert.assertEquals(0, root.getElementsByTagNameNS("DAV:", "remove").getLength());
+    }
+
+    @Test
+    public void testCreatePropPatchBody_RemoveOnly() throws Exception
+    {
+        final Element root = parse(CustomizedSardineImpl.createPropPatchBody(Collections.<QName, String>emptyMap(),
+                                                                             Collections.singletonList(new QName("urn:x", "color"))));
+
+        Assert.assertEquals(0, root.getElementsByTagNameNS("DAV:", "set").getLength());
+        Assert.assertEquals(1, getProperties(root, "remove").length);
+    }
+
+    /**
+     * Parses the given request body.
+     *
+     * @param body
+     *            the body
+     * @return the root element
+     * @throws Exception
+     *             if the body is not well-formed
+     */
+    private static Element parse(final String body) throws Exception
+    {
+        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+
+        final Document document = factory.newDocumentBuilder().parse(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+
+        return document.getDocumentElement();
+    }
+
+    /**
+     * Returns the property elements of the single "set" or "remove" element of the given request body.
+     *
+     * @param root
+     *            the root element
+     * @param instruction
+     *            "set" or "remove"
+     * @return the property elements
+     */
+    private static Element[] getProperties(final Element root, final String instruction)
+    {
+        final NodeList instructions = root.getElementsByTagNameNS("DAV:", instruction);
+        Assert.assertEquals(1, instructions.getLength());
+
+        final Element prop = (Element) ((Element) instructions.item(0)).getElementsByTagNameNS("DAV:", "prop").item(0);
+        final NodeList children = prop.getChildNodes();
+
+        final Element[] properties = new Element[children.getLength()];
+        for (int i = 0; i < properties.length; i++)
+        {
+            properties[i] = (Element) children.item(i);
+        }
+
+        return properties;
+    }
+
+    /**
+     * Checks the name and value of the given property element.
+     *
+     * @param property
+     *            the element
+     * @param namespace
+     *            the expected namespace
+     * @param localName
+     *            the expected local name
+     * @param value
+     *            the expected value
+     */
+    private static void assertProperty(final Element property, final String namespace, final String localName,
+                                       final String value)
+    {
+        Assert.assertEquals(namespace, property.getNamespaceURI());
+        Assert.assertEquals(localName, property.getLocalName());
+        Assert.assertEquals(value, property.getTextContent());
+    }
+}
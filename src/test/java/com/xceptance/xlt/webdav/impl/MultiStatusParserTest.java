@@ -0,0 +1,173 @@
+package com.xceptance.xlt.webdav.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.xceptance.xlt.webdav.util.ResourceEntry;
+import com.xceptance.xlt.webdav.util.ResourceStatus;
+
+/**
+ * Tests the implementation of {@link MultiStatusParser}.
+ */
+public class MultiStatusParserTest
+{
+    /**
+     * A listing of a directory with a file, where one property of the file was not found.
+     */
+    private static final String LISTING = "<?xml version=\"1.0\" encoding=\"utf-8\"?>" +
+                                          "<D:multistatus xmlns:D=\"DAV:\" xmlns:X=\"urn:x\">" +
+                                          "<D:response><D:href>/dav/dir%20a/</D:href><D:propstat><D:prop>" +
+                                          "<D:resourcetype><D:collection/></D:resourcetype>" +
+                                          "</D:prop><D:status>HTTP/1.1 200 OK</D:status></D:propstat></D:response>" +
+                                          "<D:response><D:href>http://host/dav/dir%20a/f%C3%BC.txt</D:href><D:propstat><D:prop>" +
+                                          "<D:resourcetype/><D:getcontentlength>1234</D:getcontentlength>" +
+                                          "<D:getcontenttype>text/plain</D:getcontenttype><D:getetag>\"abc\"</D:getetag>" +
+                                          "<D:getlastmodified>Sat, 17 Oct 2026 10:00:00 GMT</D:getlastmodified>" +
+                                          "<X:color>red</X:color>" +
+                                          "</D:prop><D:status>HTTP/1.1 200 OK</D:status></D:propstat>" +
+                                          "<D:propstat><D:prop><D:displayname>ignored</D:displayname></D:prop>" +
+                                          "<D:status>HTTP/1.1 404 Not Found</D:status></D:propstat></D:response>" +
+                                          "</D:multistatus>";
+
+    /**
+     * A LOCK response body with the lock discovery of two locks.
+     */
+    private static final String LOCK_DISCOVERY = "<?xml version=\"1.0\" encoding=\"utf-8\"?>" +
+                                                 "<D:prop xmlns:D=\"DAV:\"><D:lockdiscovery>" +
+                                                 "<D:activelock><D:locktype><D:write/></D:locktype>" +
+                                                 "<D:lockscope><D:shared/></D:lockscope><D:depth>0</D:depth>" +
+                                                 "<D:timeout>Second-60</D:timeout>" +
+                                                 "<D:locktoken><D:href>urn:uuid:other</D:href></D:locktoken>" +
+                                                 "</D:activelock>" +
+                                                 "<D:activelock><D:locktype><D:write/></D:locktype>" +
+                                                 "<D:lockscope><D:shared/></D:lockscope><D:depth>0</D:depth>" +
+                                                 "<D:owner><D:href>tester</D:href></D:owner>" +
+                                                 "<D:timeout>Second-3600</D:timeout>" +
+                                                 "<D:locktoken>\n  <D:href>urn:uuid:mine</D:href>\n</D:locktoken>" +
+                                                 "</D:activelock>" +
+                                                 "</D:lockdiscovery></D:prop>";
+
+    @Test
+    public void testParse() throws IOException
+    {
+        final List<ResourceEntry> entries = new ArrayList<>();
+
+        Assert.assertEquals(2, MultiStatusParser.parse(toStream(LISTING), entries::add));
+        Assert.assertEquals(2, entries.size());
+
+        final ResourceEntry directory = entries.get(0);
+        Assert.assertEquals("/dav/dir a/", directory.getPath());
+        Assert.assertTrue(directory.isDirectory());
+
+        final ResourceEntry file = entries.get(1);
+        Assert.assertEquals("/dav/dir a/fü.txt", file.getPath());
+        Assert.assertEquals("fü.txt", file.getName());
+        Assert.assertFalse(file.isDirectory());
+        Assert.assertEquals(1234, file.getContentLength());
+        Assert.assertEquals("text/plain", file.getContentType());
+        Assert.assertEquals("\"abc\"", file.getEtag());
+        Assert.assertEquals(1792231200000L, file.getLastModified());
+        Assert.assertEquals("red", file.getCustomProperties().get(new QName("urn:x", "color")));
+
+        // properties of a failed property stat are not taken over
+        Assert.assertNull(file.getDisplayName());
+    }
+
+    @Test
+    public void testParse_NamesOnly() throws IOException
+    {
+        final List<ResourceEntry> entries = new ArrayList<>();
+        MultiStatusParser.parse(toStream(LISTING), true, entries::add);
+
+        final ResourceEntry file = entries.get(1);
+        Assert.assertEquals("", file.getCustomProperties().get(new QName("urn:x", "color")));
+        Assert.assertEquals(-1, file.getContentLength());
+    }
+
+    @Test(expected = IOException.class)
+    public void testParse_Malformed() throws IOException
+    {
+        MultiStatusParser.parse(toStream("<D:multistatus xmlns:D=\"DAV:\"><D:response>"), entry -> {
+        });
+    }
+
+    @Test
+    public void testParseStatus() throws IOException
+    {
+        final String body = "<?xml version=\"1.0\" encoding=\"utf-8\"?>" +
+                            "<D:multistatus xmlns:D=\"DAV:\">" +
+                            "<D:response><D:href>/dav/a/locked.txt</D:href><D:status>HTTP/1.1 423 Locked</D:status>" +
+                            "</D:response>" +
+                            "<D:response><D:href>/dav/a/b.txt</D:href><D:propstat><D:prop><D:displayname/></D:prop>" +
+                            "<D:status>HTTP/1.1 403 Forbidden</D:status></D:propstat>" +
+                            "<D:propstat><D:prop><D:getetag/></D:prop>" +
+                            "<D:status>HTTP/1.1 424 Failed Dependency</D:status></D:propstat></D:response>" +
+                            "<D:response><D:href>/dav/a/c.txt</D:href><D:propstat><D:prop><D:displayname/></D:prop>" +
+                            "<D:status>HTTP/1.1 200 OK</D:status></D:propstat></D:response>" +
+                            "</D:multistatus>";
+
+        final List<ResourceStatus> statuses = new ArrayList<>();
+        Assert.assertEquals(3, MultiStatusParser.parseStatus(toStream(body), statuses::add));
+
+        Assert.assertEquals("/dav/a/locked.txt", statuses.get(0).getPath());
+        Assert.assertEquals(423, statuses.get(0).getStatusCode());
+        Assert.assertFalse(statuses.get(0).isSuccessful());
+
+        Assert.assertEquals(-1, statuses.get(1).getStatusCode());
+        Assert.assertEquals(Integer.valueOf(403), statuses.get(1).getPropertyStatusCodes().get(new QName("DAV:", "displayname")));
+        Assert.assertEquals(Integer.valueOf(424), statuses.get(1).getPropertyStatusCodes().get(new QName("DAV:", "getetag")));
+        Assert.assertFalse(statuses.get(1).isSuccessful());
+
+        Assert.assertTrue(statuses.get(2).isSuccessful());
+    }
+
+    @Test
+    public void testParseStatusLine()
+    {
+        Assert.assertEquals(207, MultiStatusParser.parseStatusLine("HTTP/1.1 207 Multi-Status"));
+        Assert.assertEquals(404, MultiStatusParser.parseStatusLine("HTTP/1.1 404"));
+        Assert.assertEquals(-1, MultiStatusParser.parseStatusLine("garbage"));
+    }
+
+    @Test
+    public void testParseLockTimeout() throws IOException
+    {
+        Assert.assertEquals(3600, MultiStatusParser.parseLockTimeout(toStream(LOCK_DISCOVERY), "urn:uuid:mine"));
+
+        // an unknown lock falls back to the first one
+        Assert.assertEquals(60, MultiStatusParser.parseLockTimeout(toStream(LOCK_DISCOVERY), "urn:uuid:unknown"));
+
+        // no lock at all
+        Assert.assertEquals(-1, MultiStatusParser.parseLockTimeout(toStream("<D:prop xmlns:D=\"DAV:\"/>"), "urn:uuid:mine"));
+    }
+
+    @Test
+    public void testParseTimeout()
+    {
+        Assert.assertEquals(3600, MultiStatusParser.parseTimeout("Second-3600"));
+        Assert.assertEquals(10, MultiStatusParser.parseTimeout(" second-10 , Infinite"));
+        Assert.assertEquals(-1, MultiStatusParser.parseTimeout("Infinite"));
+        Assert.assertEquals(-1, MultiStatusParser.parseTimeout("Second-abc"));
+    }
+
+    /**
+     * Returns a stream of the UTF-8 bytes of the given string.
+     *
+     * @param s
+     *            the string
+     * @return the stream
+     */
+    private static InputStream toStream(final String s)
+    {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,155 @@
+package com.xceptance.xlt.webdav.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.client.methods.HttpGet;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the implementation of {@link ParallelTaskRunner}.
+ */
+public class ParallelTaskRunnerTest
+{
+    @Test
+    public void testRun()
+    {
+        final List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+        {
+            final int value = i;
+            tasks.add(() -> value * value);
+        }
+
+        try
+        {
+            final List<Integer> results = ParallelTaskRunner.run(tasks, 4);
+
+            Assert.assertEquals(20, results.size());
+            for (int i = 0; i < 20; i++)
+            {
+                Assert.assertEquals(Integer.valueOf(i * i), results.get(i));
+            }
+        }
+        catch (final Exception ex)
+        {
+            Assert.fail(ex.toString());
+        }
+    }
+
+    @Test
+    public void testRun_FailureAbortsRequestsInFlight() throws InterruptedException
+    {
+        final CountDownLatch requestSent = new CountDownLatch(1);
+        final AtomicBoolean ended = new AtomicBoolean();
+
+        final Callable<Void> slowTask = () -> {
+            // simulates a blocking read that ignores interrupts and ends only when the request is aborted
+            final HttpGet request = new HttpGet("http://host/dav/big.bin");
+            final Runnable requestCompleted = ParallelTaskRunner.requestStarted(request);
+            requestSent.countDown();
+
+            while (!request.isAborted())
+            {
+                Thread.yield();
+            }
+            ended.set(true);
+            requestCompleted.run();
+
+            return null;
+        };
+
+        final Callable<Void> failingTask = () -> {
+            requestSent.await();
+            throw new IOException("Segment failed");
+        };
+
+        try
+        {
+            ParallelTaskRunner.run(Arrays.asList(slowTask, failingTask), 2);
+            Assert.fail("Exception expected");
+        }
+        catch (final Exception ex)
+        {
+            Assert.assertEquals("Segment failed", ex.getMessage());
+        }
+
+        Assert.assertTrue("The other task must have ended before the failure is rethrown", ended.get());
+    }
+
+    @Test
+    public void testRun_RequestsAfterFailureAreAborted()
+    {
+        final AtomicBoolean aborted = new AtomicBoolean();
+
+        final Callable<Void> lateTask = () -> {
+            // the workers are interrupted only after the requests in flight have been aborted, so wait for that
+            while (!Thread.currentThread().isInterrupted())
+            {
+                Thread.yield();
+            }
+
+            final HttpGet request = new HttpGet("http://host/dav/next.bin");
+            ParallelTaskRunner.requestStarted(request).run();
+            aborted.set(request.isAborted());
+
+            return null;
+        };
+
+        final Callable<Void> failingTask = () -> {
+            throw new IOException("Failed");
+        };
+
+        try
+        {
+            ParallelTaskRunner.run(Arrays.asList(lateTask, failingTask), 2);
+            Assert.fail("Exception expected");
+        }
+        catch (final Exception ex)
+        {
+            Assert.assertEquals("Failed", ex.getMessage());
+        }
+
+        Assert.assertTrue(aborted.get());
+    }
+
+    @Test
+    public void testRequestStarted_NotInWorker()
+    {
+        final HttpGet request = new HttpGet("http://host/dav/a.txt");
+        ParallelTaskRunner.requestStarted(request).run();
+
+        Assert.assertFalse(request.isAborted());
+    }
+
+    @Test
+    public void testForEach() throws Exception
+    {
+        final List<Integer> items = new ArrayList<>();
+        for (int i = 1; i <= 1000; i++)
+        {
+            items.add(i);
+        }
+
+        final AtomicInteger sum = new AtomicInteger();
+        ParallelTaskRunner.forEach(items.iterator(), 8, sum::addAndGet);
+
+        Assert.assertEquals(500500, sum.get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testForEach_Failure() throws Exception
+    {
+        ParallelTaskRunner.forEach(Collections.nCopies(100, "x").iterator(), 4, item -> {
+            throw new IllegalStateException();
+        });
+    }
+}
@@ -0,0 +1,67 @@
+package com.xceptance.xlt.webdav.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the implementation of {@link WebDavUrlBuilder}.
+ */
+public class WebDavUrlBuilderTest
+{
+    /**
+     * The builder under test.
+     */
+    private final WebDavUrlBuilder builder = new WebDavUrlBuilder("http://host:8080/", "/dav/base/");
+
+    @Test
+    public void testGetUrl()
+    {
+        Assert.assertEquals("http://host:8080/dav/base/dir/a.txt", builder.getUrl("dir/a.txt"));
+        Assert.assertEquals("http://host:8080/dav/base/dir/a.txt", builder.getUrl("/dir/a.txt"));
+        Assert.assertEquals("http://host:8080/dav/base/dir/", builder.getUrl("dir/"));
+        Assert.assertEquals("http://host:8080/dav/base/", builder.getUrl(""));
+        Assert.assertEquals("http://host:8080/dav/base/", builder.getUrl(null));
+    }
+
+    @Test
+    public void testGetUrl_EncodesAsciiCharacters()
+    {
+        Assert.assertEquals("http://host:8080/dav/base/a%20b/c%23d%3Fe%25f", builder.getUrl("a b/c#d?e%f"));
+        Assert.assertEquals("http://host:8080/dav/base/%5B%5D%7B%7D%3C%3E%22%5C%5E%60%7C", builder.getUrl("[]{}<>\"\\^`|"));
+        Assert.assertEquals("http://host:8080/dav/base/%09%7F", builder.getUrl("\t\u007f"));
+
+        // characters allowed in paths are kept
+        Assert.assertEquals("http://host:8080/dav/base/_-!.~'()*,;:$&+=@", builder.getUrl("_-!.~'()*,;:$&+=@"));
+    }
+
+    @Test
+    public void testGetUrl_NonAsciiCharacters()
+    {
+        // passed through unencoded
+        Assert.assertEquals("http://host:8080/dav/base/füße/€/😀", builder.getUrl("füße/€/😀"));
+
+        // except for control and space characters, which are encoded as UTF-8
+        Assert.assertEquals("http://host:8080/dav/base/x%C2%A0y%C2%85z%E2%80%A8%E3%80%80", builder.getUrl("x y\u0085z 　"));
+    }
+
+    @Test
+    public void testGetUrl_SameAsUri() throws Exception
+    {
+        final String path = "a b/ü x/€ 😀/[]%/\u0085　";
+
+        Assert.assertEquals(new java.net.URI("http", null, "host", 8080, "/dav/base/" + path, null, null).toString(), builder.getUrl(path));
+    }
+
+    @Test
+    public void testGetUrlForAbsolutePath()
+    {
+        Assert.assertEquals("http://host:8080/other/a%20b", builder.getUrlForAbsolutePath("/other/a b"));
+        Assert.assertEquals("http://host:8080/", builder.getUrlForAbsolutePath("/"));
+    }
+
+    @Test
+    public void testBaseUrl()
+    {
+        Assert.assertEquals("http://host/my%20dav/a", new WebDavUrlBuilder("http://host/", "my dav/").getUrl("a"));
+    }
+}
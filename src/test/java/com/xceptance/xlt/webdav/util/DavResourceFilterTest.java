@@ -0,0 +1,134 @@
+package com.xceptance.xlt.webdav.util;
+
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.sardine.DavResource;
+
+/**
+ * Tests the implementation of {@link DavResourceFilter}.
+ */
+public class DavResourceFilterTest
+{
+    /**
+     * The resources to filter: a directory followed by ten text files and ten binary files.
+     */
+    private final List<DavResource> resources = new ArrayList<>();
+
+    @Before
+    public void setUp() throws URISyntaxException
+    {
+        resources.add(new TestResource("/dav/dir/", DavResource.HTTPD_UNIX_DIRECTORY_CONTENT_TYPE));
+        for (int i = 0; i < 10; i++)
+        {
+            resources.add(new TestResource("/dav/file" + i + ".txt", "text/plain"));
+            resources.add(new TestResource("/dav/FILE" + i + ".BIN", "application/octet-stream"));
+        }
+    }
+
+    @Test
+    public void testCriteria()
+    {
+        Assert.assertEquals(21, new DavResourceFilter(resources).count());
+        Assert.assertEquals(20, new DavResourceFilter(resources).files().count());
+        Assert.assertEquals(10, new DavResourceFilter(resources).withEnding(".bin").count());
+        Assert.assertEquals(10, new DavResourceFilter(resources).withContentType("TEXT/").count());
+        Assert.assertEquals(2, new DavResourceFilter(resources).files().matching("file3").count());
+        Assert.assertEquals(1, new DavResourceFilter(resources).files().matching("file3").notMatching(".bin").count());
+        Assert.assertEquals("file3.txt", new DavResourceFilter(resources).matching("3").first().getName());
+        Assert.assertEquals(0, new DavResourceFilter(null).files().count());
+    }
+
+    @Test
+    public void testSample_Empty()
+    {
+        Assert.assertTrue(new DavResourceFilter(resources).sample(0).isEmpty());
+        Assert.assertTrue(new DavResourceFilter(resources).sample(-1).isEmpty());
+        Assert.assertTrue(new DavResourceFilter(null).sample(3).isEmpty());
+        Assert.assertTrue(new DavResourceFilter(resources).withEnding(".doc").sample(3).isEmpty());
+        Assert.assertNull(new DavResourceFilter(resources).withEnding(".doc").random());
+    }
+
+    @Test
+    public void testSample_FewerAccepted()
+    {
+        // all accepted resources are returned in their original order
+        final List<DavResource> sample = new DavResourceFilter(resources).matching("file1").sample(5);
+
+        Assert.assertEquals(2, sample.size());
+        Assert.assertEquals("file1.txt", sample.get(0).getName());
+        Assert.assertEquals("FILE1.BIN", sample.get(1).getName());
+    }
+
+    @Test
+    public void testSample_AcceptedOnly()
+    {
+        for (int run = 0; run < 100; run++)
+        {
+            final List<DavResource> sample = new DavResourceFilter(resources).withEnding(".txt").sample(4);
+
+            Assert.assertEquals(4, sample.size());
+            Assert.assertEquals(4, new HashSet<>(sample).size());
+            for (final DavResource resource : sample)
+            {
+                Assert.assertTrue(resource.getName().endsWith(".txt"));
+            }
+        }
+    }
+
+    @Test
+    public void testSample_Uniform()
+    {
+        final int runs = 20000;
+        final List<DavResource> textFiles = new DavResourceFilter(resources).withEnding(".txt").toList();
+        final int[] hits = new int[textFiles.size()];
+
+        final DavResourceFilter filter = new DavResourceFilter(resources).withEnding(".txt");
+        for (int run = 0; run < runs; run++)
+        {
+            for (final DavResource resource : filter.sample(3))
+            {
+                hits[textFiles.indexOf(resource)]++;
+            }
+        }
+
+        // each file is expected in 3 out of 10 samples, i.e. 6000 times with a standard deviation of about 65
+        final Set<Integer> outliers = new HashSet<>();
+        for (int i = 0; i < hits.length; i++)
+        {
+            if (Math.abs(hits[i] - runs * 3 / 10) > 400)
+            {
+                outliers.add(i);
+            }
+        }
+        Assert.assertTrue("Unexpected frequencies for files " + outliers, outliers.isEmpty());
+    }
+
+    /**
+     * A resource created without a server response.
+     */
+    private static class TestResource extends DavResource
+    {
+        /**
+         * Creates a new {@link TestResource} object.
+         *
+         * @param path
+         *            the resource path
+         * @param contentType
+         *            the content type
+         * @throws URISyntaxException
+         *             if the path is invalid
+         */
+        TestResource(final String path, final String contentType) throws URISyntaxException
+        {
+            super(path, null, null, contentType, 100L, null, null, null, null, null, null);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.xceptance.xlt.webdav.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.xceptance.xlt.webdav.util.GeneratedContent.Pattern;
+
+/**
+ * Tests the implementation of {@link GeneratedContent}.
+ */
+public class GeneratedContentTest
+{
+    @Test
+    public void testOpenStream_Deterministic() throws IOException
+    {
+        for (final Pattern pattern : Pattern.values())
+        {
+            final byte[] content = readAll(new GeneratedContent(1000, 42, pattern).openStream());
+
+            Assert.assertEquals(1000, content.length);
+            Assert.assertArrayEquals(content, readAll(new GeneratedContent(1000, 42, pattern).openStream()));
+            Assert.assertFalse(Arrays.equals(content, readAll(new GeneratedContent(1000, 43, pattern).openStream())));
+        }
+    }
+
+    @Test
+    public void testOpenStream_Part() throws IOException
+    {
+        for (final Pattern pattern : Pattern.values())
+        {
+            final GeneratedContent generatedContent = new GeneratedContent(1000, 42, pattern);
+            final byte[] content = readAll(generatedContent.openStream());
+
+            // aligned and unaligned to the blocks generated at once, within a block and across several blocks
+            for (final int[] part : new int[][]
+                {
+                    {
+                        0, 1000
+                    },
+                    {
+                        0, 8
+                    },
+                    {
+                        8, 16
+                    },
+                    {
+                        3, 2
+                    },
+                    {
+                        5, 7
+                    },
+                    {
+                        13, 500
+                    },
+                    {
+                        999, 1
+                    },
+                    {
+                        1000, 0
+                    }
+                })
+            {
+                Assert.assertArrayEquals("Part " + part[0] + "+" + part[1] + " (" + pattern + ")",
+                                         Arrays.copyOfRange(content, part[0], part[0] + part[1]),
+                                         readAll(generatedContent.openStream(part[0], part[1])));
+            }
+        }
+    }
+
+    @Test
+    public void testSkip() throws IOException
+    {
+        for (final Pattern pattern : Pattern.values())
+        {
+            final GeneratedContent generatedContent = new GeneratedContent(1000, 42, pattern);
+            final byte[] content = readAll(generatedContent.openStream());
+
+            for (final int skip : new int[]
+                {
+                    0, 1, 7, 8, 9, 100, 997
+                })
+            {
+                final InputStream in = generatedContent.openStream();
+                Assert.assertEquals(3, in.read(new byte[3]));
+                Assert.assertEquals(skip, in.skip(skip));
+
+                Assert.assertArrayEquals("Skip " + skip + " (" + pattern + ")", Arrays.copyOfRange(content, 3 + skip, 1000),
+                                         readAll(in));
+            }
+
+            // skipping stops at the end of the content or part
+            final InputStream in = generatedContent.openStream(10, 20);
+            Assert.assertEquals(20, in.skip(100));
+            Assert.assertEquals(-1, in.read());
+            Assert.assertEquals(0, in.skip(1));
+        }
+    }
+
+    @Test
+    public void testSkip_LargeContent() throws IOException
+    {
+        final long length = 10L * 1024 * 1024 * 1024;
+        final GeneratedContent generatedContent = new GeneratedContent(length, 42, Pattern.RANDOM);
+
+        final InputStream in = generatedContent.openStream();
+        Assert.assertEquals(length - 5, in.skip(length - 5));
+
+        Assert.assertArrayEquals(readAll(generatedContent.openStream(length - 5, 5)), readAll(in));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOpenStream_NegativeOffset()
+    {
+        new GeneratedContent(100, 42, Pattern.RANDOM).openStream(-1, 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOpenStream_BeyondEnd()
+    {
+        new GeneratedContent(100, 42, Pattern.RANDOM).openStream(95, 6);
+    }
+
+    /**
+     * Reads the given stream completely and closes it.
+     *
+     * @param in
+     *            the stream
+     * @return the bytes read
+     * @throws IOException
+     *             if reading fails
+     */
+    private static byte[] readAll(final InputStream in) throws IOException
+    {
+        try (final InputStream input = in)
+        {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[77];
+
+            int n;
+            while ((n = input.read(buffer)) >= 0)
+            {
+                out.write(buffer, 0, n);
+            }
+
+            return out.toByteArray();
+        }
+    }
+}
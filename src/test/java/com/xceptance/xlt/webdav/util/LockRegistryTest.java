@@ -0,0 +1,156 @@
+package com.xceptance.xlt.webdav.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the implementation of {@link LockRegistry}.
+ */
+public class LockRegistryTest
+{
+    /**
+     * The current time as seen by the registry.
+     */
+    private final AtomicLong now = new AtomicLong(1_000_000L);
+
+    /**
+     * The registry under test.
+     */
+    private LockRegistry registry;
+
+    @Before
+    public void setUp()
+    {
+        registry = new LockRegistry(now::get);
+    }
+
+    @Test
+    public void testGetIfHeader_NoLocks()
+    {
+        Assert.assertNull(registry.getIfHeader("http://host/dav/a.txt"));
+    }
+
+    @Test
+    public void testGetIfHeader_OwnLock()
+    {
+        registry.add("http://host/dav/a.txt", "urn:uuid:1", false, 60);
+
+        Assert.assertEquals("<http://host/dav/a.txt> (<urn:uuid:1>)", registry.getIfHeader("http://host/dav/a.txt"));
+        Assert.assertNull(registry.getIfHeader("http://host/dav/b.txt"));
+    }
+
+    @Test
+    public void testGetIfHeader_ParentLocks()
+    {
+        registry.add("http://host/dav/", "urn:uuid:root", false, 60);
+        registry.add("http://host/dav/dir/", "urn:uuid:dir", false, 60);
+
+        // the immediate parent counts even if the lock is not deep, the grandparent does not
+        Assert.assertEquals("<http://host/dav/dir/> (<urn:uuid:dir>)", registry.getIfHeader("http://host/dav/dir/a.txt"));
+
+        // a deep lock covers anything below
+        registry.add("http://host/dav/", "urn:uuid:root", true, 60);
+        Assert.assertEquals("<http://host/dav/dir/> (<urn:uuid:dir>) <http://host/dav/> (<urn:uuid:root>)",
+                            registry.getIfHeader("http://host/dav/dir/a.txt"));
+    }
+
+    @Test
+    public void testGetIfHeader_SeveralUrls()
+    {
+        registry.add("http://host/dav/a/", "urn:uuid:a", false, 60);
+        registry.add("http://host/dav/b/", "urn:uuid:b", false, 60);
+
+        // the lock of the common parent is listed once only
+        registry.add("http://host/dav/a/x.txt", "urn:uuid:x", false, 60);
+        Assert.assertEquals("<http://host/dav/a/x.txt> (<urn:uuid:x>) <http://host/dav/a/> (<urn:uuid:a>) <http://host/dav/b/> (<urn:uuid:b>)",
+                            registry.getIfHeader("http://host/dav/a/x.txt", "http://host/dav/b/x.txt"));
+        Assert.assertEquals("<http://host/dav/a/> (<urn:uuid:a>)", registry.getIfHeader("http://host/dav/a/y.txt", "http://host/dav/a/z.txt"));
+    }
+
+    @Test
+    public void testGetIfHeader_EncodedUrls()
+    {
+        registry.add("http://host/dav/my%20dir", "urn:uuid:1", true, 60);
+
+        Assert.assertEquals("<http://host/dav/my%20dir> (<urn:uuid:1>)", registry.getIfHeader("http://host/dav/my%20dir/sub/a.txt"));
+    }
+
+    @Test
+    public void testExpiry()
+    {
+        registry.add("http://host/dav/a.txt", "urn:uuid:1", false, 60);
+
+        now.addAndGet(59_999);
+        Assert.assertEquals("urn:uuid:1", registry.getToken("http://host/dav/a.txt"));
+
+        // an expired lock is skipped and forgotten
+        now.addAndGet(1);
+        Assert.assertNull(registry.getIfHeader("http://host/dav/a.txt"));
+        Assert.assertEquals(0, registry.size());
+        Assert.assertNull(registry.getToken("http://host/dav/a.txt"));
+    }
+
+    @Test
+    public void testExpiry_ParentLock()
+    {
+        registry.add("http://host/dav/dir/", "urn:uuid:dir", true, 10);
+        registry.add("http://host/dav/dir/a.txt", "urn:uuid:a", false, 20);
+
+        now.addAndGet(10_000);
+        Assert.assertEquals("<http://host/dav/dir/a.txt> (<urn:uuid:a>)", registry.getIfHeader("http://host/dav/dir/a.txt"));
+        Assert.assertEquals(1, registry.size());
+    }
+
+    @Test
+    public void testRefreshed()
+    {
+        registry.add("http://host/dav/a.txt", "urn:uuid:1", false, 60);
+
+        now.addAndGet(50_000);
+        registry.refreshed("http://host/dav/a.txt", 60);
+
+        now.addAndGet(50_000);
+        Assert.assertEquals("<http://host/dav/a.txt> (<urn:uuid:1>)", registry.getIfHeader("http://host/dav/a.txt"));
+
+        now.addAndGet(10_000);
+        Assert.assertNull(registry.getIfHeader("http://host/dav/a.txt"));
+    }
+
+    @Test
+    public void testNoTimeout()
+    {
+        registry.add("http://host/dav/a.txt", "urn:uuid:1", false, -1);
+
+        now.set(Long.MAX_VALUE - 1);
+        Assert.assertEquals("urn:uuid:1", registry.getToken("http://host/dav/a.txt"));
+    }
+
+    @Test
+    public void testDropLocksSentIn()
+    {
+        registry.add("http://host/dav/a.txt", "urn:uuid:1", false, 60);
+        registry.add("http://host/dav/b.txt", "urn:uuid:2", false, 60);
+        registry.add("http://host/dav/c.txt", "urn:uuid:3", false, 60);
+
+        registry.dropLocksSentIn(registry.getIfHeader("http://host/dav/a.txt", "http://host/dav/b.txt"));
+
+        Assert.assertEquals(1, registry.size());
+        Assert.assertEquals("urn:uuid:3", registry.getToken("http://host/dav/c.txt"));
+    }
+
+    @Test
+    public void testRemoveTree()
+    {
+        registry.add("http://host/dav/dir", "urn:uuid:dir", true, 60);
+        registry.add("http://host/dav/dir/a.txt", "urn:uuid:a", false, 60);
+        registry.add("http://host/dav/dir2/b.txt", "urn:uuid:b", false, 60);
+
+        registry.removeTree("http://host/dav/dir/");
+
+        Assert.assertEquals(1, registry.size());
+        Assert.assertEquals("urn:uuid:b", registry.getToken("http://host/dav/dir2/b.txt"));
+    }
+}
@@ -0,0 +1,176 @@
+package com.xceptance.xlt.webdav.util;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the implementation of {@link MetadataCache}.
+ */
+public class MetadataCacheTest
+{
+    /**
+     * The cache under test.
+     */
+    private MetadataCache cache;
+
+    @Before
+    public void setUp()
+    {
+        cache = new MetadataCache(100);
+
+        cache.put(directory("/dav/dir/"));
+        cache.put(file("/dav/dir/a.txt"));
+        cache.put(directory("/dav/dir/sub/"));
+        cache.put(file("/dav/dir/sub/b.txt"));
+
+        // siblings whose names start with the name of the directory, sorting before and after its members
+        cache.put(file("/dav/dir!x.txt"));
+        cache.put(file("/dav/dir-x.txt"));
+        cache.put(directory("/dav/dir0/"));
+        cache.put(file("/dav/dir0/c.txt"));
+        cache.put(file("/dav/dirz.txt"));
+    }
+
+    @Test
+    public void testLookup()
+    {
+        Assert.assertEquals(Boolean.TRUE, cache.exists("http://host/dav/dir"));
+        Assert.assertEquals(Boolean.TRUE, cache.exists("http://host/dav/dir/"));
+        Assert.assertEquals("a.txt", cache.getEntry("http://host/dav/dir/a.txt").getName());
+        Assert.assertNull(cache.exists("http://host/dav/unknown.txt"));
+
+        Assert.assertEquals(3, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testExistenceChecked()
+    {
+        cache.existenceChecked("http://host/dav/dir/a.txt", true);
+        Assert.assertNotNull("Metadata must be kept", cache.getEntry("http://host/dav/dir/a.txt"));
+
+        cache.existenceChecked("http://host/dav/new%20file.txt", true);
+        Assert.assertEquals(Boolean.TRUE, cache.exists("http://host/dav/new%20file.txt"));
+        Assert.assertNull(cache.getEntry("http://host/dav/new%20file.txt"));
+
+        cache.existenceChecked("http://host/dav/dir/sub", false);
+        Assert.assertEquals(Boolean.FALSE, cache.exists("http://host/dav/dir/sub/"));
+        Assert.assertNull(cache.exists("http://host/dav/dir/sub/b.txt"));
+    }
+
+    @Test
+    public void testModified()
+    {
+        cache.modified("http://host/dav/dir/a.txt");
+
+        Assert.assertEquals(Boolean.TRUE, cache.exists("http://host/dav/dir/a.txt"));
+        Assert.assertNull("Outdated metadata must be dropped", cache.getEntry("http://host/dav/dir/a.txt"));
+    }
+
+    @Test
+    public void testDeleted()
+    {
+        cache.deleted("http://host/dav/dir/");
+
+        Assert.assertEquals(Boolean.FALSE, cache.exists("http://host/dav/dir"));
+        Assert.assertNull(cache.exists("http://host/dav/dir/a.txt"));
+        Assert.assertNull(cache.exists("http://host/dav/dir/sub"));
+        Assert.assertNull(cache.exists("http://host/dav/dir/sub/b.txt"));
+
+        assertSiblingsKept();
+    }
+
+    @Test
+    public void testMoved()
+    {
+        cache.put(file("/dav/target/old.txt"));
+
+        cache.moved("http://host/dav/dir", "http://host/dav/target");
+
+        Assert.assertEquals(Boolean.FALSE, cache.exists("http://host/dav/dir"));
+        Assert.assertNull(cache.exists("http://host/dav/dir/sub/b.txt"));
+        Assert.assertEquals(Boolean.TRUE, cache.exists("http://host/dav/target/"));
+        Assert.assertNull("The target's former members must be dropped", cache.exists("http://host/dav/target/old.txt"));
+
+        assertSiblingsKept();
+    }
+
+    @Test
+    public void testCopied()
+    {
+        cache.copied("http://host/dav/dir0", "http://host/dav/dir");
+
+        Assert.assertEquals(Boolean.TRUE, cache.exists("http://host/dav/dir"));
+        Assert.assertNull(cache.getEntry("http://host/dav/dir"));
+        Assert.assertNull(cache.exists("http://host/dav/dir/a.txt"));
+        Assert.assertNull(cache.exists("http://host/dav/dir/sub/b.txt"));
+
+        assertSiblingsKept();
+    }
+
+    @Test
+    public void testDeleted_AfterEviction()
+    {
+        final MetadataCache smallCache = new MetadataCache(3);
+        smallCache.put(file("/dav/dir/a.txt"));
+        smallCache.put(file("/dav/dir/b.txt"));
+        smallCache.put(file("/dav/dir/c.txt"));
+
+        // evicts a.txt
+        smallCache.put(file("/dav/other.txt"));
+        Assert.assertNull(smallCache.getEntry("http://host/dav/dir/a.txt"));
+
+        smallCache.put(file("/dav/dir/a.txt"));
+        smallCache.deleted("http://host/dav/dir");
+
+        Assert.assertNull(smallCache.exists("http://host/dav/dir/a.txt"));
+        Assert.assertNull(smallCache.exists("http://host/dav/dir/c.txt"));
+        Assert.assertEquals(Boolean.FALSE, smallCache.exists("http://host/dav/dir"));
+    }
+
+    @Test
+    public void testClear()
+    {
+        cache.clear();
+
+        Assert.assertNull(cache.exists("http://host/dav/dir"));
+        Assert.assertNull(cache.exists("http://host/dav/dirz.txt"));
+    }
+
+    /**
+     * Checks that the resources next to "/dav/dir" are still known.
+     */
+    private void assertSiblingsKept()
+    {
+        Assert.assertNotNull(cache.getEntry("http://host/dav/dir!x.txt"));
+        Assert.assertNotNull(cache.getEntry("http://host/dav/dir-x.txt"));
+        Assert.assertNotNull(cache.getEntry("http://host/dav/dir0"));
+        Assert.assertNotNull(cache.getEntry("http://host/dav/dir0/c.txt"));
+        Assert.assertNotNull(cache.getEntry("http://host/dav/dirz.txt"));
+    }
+
+    /**
+     * Creates an entry for a directory.
+     *
+     * @param path
+     *            the path
+     * @return the entry
+     */
+    private static ResourceEntry directory(final String path)
+    {
+        return new ResourceEntry(path, 200, true, -1, -1, -1, "httpd/unix-directory", null, null, null);
+    }
+
+    /**
+     * Creates an entry for a file.
+     *
+     * @param path
+     *            the path
+     * @return the entry
+     */
+    private static ResourceEntry file(final String path)
+    {
+        return new ResourceEntry(path, 200, false, 100, -1, -1, "text/plain", null, null, null);
+    }
+}
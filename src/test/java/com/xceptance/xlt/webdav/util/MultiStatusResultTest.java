@@ -0,0 +1,99 @@
+package com.xceptance.xlt.webdav.util;
+
+import java.util.Collections;
+
+import javax.xml.namespace.QName;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the implementation of {@link MultiStatusResult}.
+ */
+public class MultiStatusResultTest
+{
+    @Test
+    public void testEmpty()
+    {
+        final MultiStatusResult result = new MultiStatusResult();
+
+        Assert.assertEquals(0, result.getResourceCount());
+        Assert.assertEquals(0, result.getFailureCount());
+        Assert.assertTrue(result.isSuccessful());
+    }
+
+    @Test
+    public void testAccept()
+    {
+        final MultiStatusResult result = new MultiStatusResult();
+        final ResourceStatus locked = new ResourceStatus("/dav/a/locked.txt", 423, null);
+        final ResourceStatus forbidden = new ResourceStatus("/dav/a/b.txt", -1,
+                                                            Collections.singletonMap(new QName("DAV:", "displayname"), 403));
+
+        result.accept(new ResourceStatus("/dav/a/", 204, null));
+        result.accept(locked);
+        result.accept(new ResourceStatus("/dav/a/c.txt", -1, Collections.singletonMap(new QName("DAV:", "displayname"), 200)));
+        result.accept(forbidden);
+
+        // only the failures are kept, but all resources are counted
+        Assert.assertEquals(4, result.getResourceCount());
+        Assert.assertEquals(2, result.getFailureCount());
+        Assert.assertSame(locked, result.getFailures().get(0));
+        Assert.assertSame(forbidden, result.getFailures().get(1));
+        Assert.assertFalse(result.isSuccessful());
+    }
+
+    @Test
+    public void testGetFailures_Copy()
+    {
+        final MultiStatusResult result = new MultiStatusResult();
+        result.accept(new ResourceStatus("/dav/a.txt", 423, null));
+
+        result.getFailures().clear();
+
+        Assert.assertEquals(1, result.getFailures().size());
+    }
+
+    @Test
+    public void testAddAll()
+    {
+        final MultiStatusResult result = new MultiStatusResult();
+        result.accept(new ResourceStatus("/dav/a.txt", 200, null));
+
+        final MultiStatusResult other = new MultiStatusResult();
+        other.accept(new ResourceStatus("/dav/b.txt", 200, null));
+        other.accept(new ResourceStatus("/dav/c.txt", 507, null));
+
+        result.addAll(other);
+
+        Assert.assertEquals(3, result.getResourceCount());
+        Assert.assertEquals(1, result.getFailureCount());
+        Assert.assertEquals("/dav/c.txt", result.getFailures().get(0).getPath());
+        Assert.assertEquals(2, other.getResourceCount());
+    }
+
+    @Test
+    public void testAccept_Concurrently() throws InterruptedException
+    {
+        final MultiStatusResult result = new MultiStatusResult();
+        final Thread[] threads = new Thread[4];
+
+        for (int i = 0; i < threads.length; i++)
+        {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 1000; j++)
+                {
+                    result.accept(new ResourceStatus("/dav/" + j, (j % 10 == 0) ? 423 : 204, null));
+                }
+            });
+            threads[i].start();
+        }
+        for (final Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        Assert.assertEquals(4000, result.getResourceCount());
+        Assert.assertEquals(400, result.getFailureCount());
+    }
+}
@@ -0,0 +1,174 @@
+package com.xceptance.xlt.webdav.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the implementation of {@link ResourceCatalog}.
+ */
+public class ResourceCatalogTest
+{
+    /**
+     * The catalog under test.
+     */
+    private ResourceCatalog<ResourceEntry> catalog;
+
+    @Before
+    public void setUp()
+    {
+        final ResourceCatalog.EntryBuilder builder = ResourceCatalog.builder();
+
+        builder.accept(directory("/dav/"));
+        builder.accept(file("/dav/c.txt", 300, "text/plain"));
+        builder.accept(file("/dav/a.bin", 100, "application/octet-stream"));
+        builder.accept(directory("/dav/sub/"));
+        builder.accept(file("/dav/sub/empty.txt", 0, "text/plain; charset=UTF-8"));
+        builder.accept(file("/dav/sub/b.TXT", 200, "text/plain"));
+        builder.accept(file("/dav/sub/big.bin", Long.MAX_VALUE, null));
+        builder.accept(file("/dav/sub/d.bin", 200, null));
+
+        catalog = builder.build();
+    }
+
+    @Test
+    public void testSize()
+    {
+        Assert.assertEquals(8, catalog.size());
+        Assert.assertEquals(6, catalog.getFiles().size());
+        Assert.assertEquals(2, catalog.getDirectories().size());
+    }
+
+    @Test
+    public void testGetFilesBySize()
+    {
+        Assert.assertEquals(paths("/dav/a.bin", "/dav/sub/b.TXT", "/dav/sub/d.bin"), getPaths(catalog.getFilesBySize(100, 200)));
+        Assert.assertEquals(paths("/dav/sub/b.TXT", "/dav/sub/d.bin"), getPaths(catalog.getFilesBySize(101, 299)));
+        Assert.assertEquals(paths("/dav/sub/empty.txt"), getPaths(catalog.getFilesBySize(0, 0)));
+    }
+
+    @Test
+    public void testGetFilesBySize_Unbounded()
+    {
+        // the maximum must not overflow, which would yield an empty selection
+        Assert.assertEquals(paths("/dav/c.txt", "/dav/sub/big.bin"), getPaths(catalog.getFilesBySize(300, Long.MAX_VALUE)));
+        Assert.assertEquals(6, catalog.getFilesBySize(0, Long.MAX_VALUE).size());
+        Assert.assertEquals(paths("/dav/sub/big.bin"), getPaths(catalog.getFilesBySize(Long.MAX_VALUE, Long.MAX_VALUE)));
+        Assert.assertEquals(paths("/dav/sub/big.bin"), getPaths(catalog.getFilesBySize(301, Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void testGetFilesBySize_Empty()
+    {
+        Assert.assertTrue(catalog.getFilesBySize(201, 299).isEmpty());
+        Assert.assertTrue(catalog.getFilesBySize(200, 100).isEmpty());
+        Assert.assertTrue(catalog.getFilesBySize(301, Long.MAX_VALUE - 1).isEmpty());
+    }
+
+    @Test
+    public void testGetFilesBySize_NoFiles()
+    {
+        final ResourceCatalog.EntryBuilder builder = ResourceCatalog.builder();
+        builder.accept(directory("/dav/"));
+
+        Assert.assertTrue(builder.build().getFilesBySize(0, Long.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    public void testGetFilesByEnding()
+    {
+        Assert.assertEquals(paths("/dav/c.txt", "/dav/sub/empty.txt", "/dav/sub/b.TXT"), getPaths(catalog.getFilesByEnding(".txt")));
+        Assert.assertTrue(catalog.getFilesByEnding(".doc").isEmpty());
+    }
+
+    @Test
+    public void testGetResourcesByContentType()
+    {
+        Assert.assertEquals(paths("/dav/c.txt", "/dav/sub/empty.txt", "/dav/sub/b.TXT"),
+                            getPaths(catalog.getResourcesByContentType("TEXT/plain")));
+        Assert.assertEquals(paths("/dav/", "/dav/c.txt", "/dav/a.bin", "/dav/sub/", "/dav/sub/empty.txt", "/dav/sub/b.TXT"),
+                            getPaths(catalog.getResourcesByContentType("/")));
+        Assert.assertTrue(catalog.getResourcesByContentType("image/").isEmpty());
+
+        // parameters are not kept
+        Assert.assertTrue(catalog.getResourcesByContentType("charset").isEmpty());
+    }
+
+    @Test
+    public void testGetResourcesByContentType_ExactAndContainingMatches()
+    {
+        final ResourceCatalog.EntryBuilder builder = ResourceCatalog.builder();
+        builder.accept(file("/dav/a.json", 10, "application/json-patch+json"));
+        builder.accept(file("/dav/b.json", 10, "application/json"));
+        builder.accept(file("/dav/c.json", 10, "application/jsonp"));
+        builder.accept(file("/dav/d.xml", 10, "application/xml"));
+
+        Assert.assertEquals(paths("/dav/a.json", "/dav/b.json", "/dav/c.json"),
+                            getPaths(builder.build().getResourcesByContentType("application/json")));
+    }
+
+    /**
+     * Creates an entry for a directory.
+     *
+     * @param path
+     *            the path
+     * @return the entry
+     */
+    private static ResourceEntry directory(final String path)
+    {
+        return new ResourceEntry(path, 200, true, -1, -1, -1, "httpd/unix-directory", null, null, null);
+    }
+
+    /**
+     * Creates an entry for a file.
+     *
+     * @param path
+     *            the path
+     * @param contentLength
+     *            the content length
+     * @param contentType
+     *            the content type
+     * @return the entry
+     */
+    private static ResourceEntry file(final String path, final long contentLength, final String contentType)
+    {
+        return new ResourceEntry(path, 200, false, contentLength, -1, -1, contentType, null, null, null);
+    }
+
+    /**
+     * Returns the given paths as list.
+     *
+     * @param paths
+     *            the paths
+     * @return the list
+     */
+    private static List<String> paths(final String... paths)
+    {
+        final List<String> list = new ArrayList<>();
+        Collections.addAll(list, paths);
+
+        return list;
+    }
+
+    /**
+     * Returns the paths of the given entries.
+     *
+     * @param entries
+     *            the entries
+     * @return the paths
+     */
+    private static List<String> getPaths(final List<ResourceEntry> entries)
+    {
+        final List<String> paths = new ArrayList<>();
+        for (final ResourceEntry entry : entries)
+        {
+            paths.add(entry.getPath());
+        }
+
+        return paths;
+    }
+}
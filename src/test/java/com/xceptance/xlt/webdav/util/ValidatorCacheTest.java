@@ -0,0 +1,99 @@
+package com.xceptance.xlt.webdav.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.xceptance.xlt.webdav.util.ValidatorCache.Validators;
+
+/**
+ * Tests the implementation of {@link ValidatorCache}.
+ */
+public class ValidatorCacheTest
+{
+    @Test
+    public void testPut()
+    {
+        final ValidatorCache cache = new ValidatorCache(10);
+        cache.put("http://host/dav/a.txt", "\"1\"", "Sat, 17 Oct 2026 10:00:00 GMT");
+        cache.put("http://host/dav/b.txt", null, "Sat, 17 Oct 2026 11:00:00 GMT");
+
+        final Validators a = cache.get("http://host/dav/a.txt");
+        Assert.assertEquals("\"1\"", a.getEtag());
+        Assert.assertEquals("Sat, 17 Oct 2026 10:00:00 GMT", a.getLastModified());
+
+        final Validators b = cache.get("http://host/dav/b.txt");
+        Assert.assertNull(b.getEtag());
+        Assert.assertEquals("Sat, 17 Oct 2026 11:00:00 GMT", b.getLastModified());
+
+        Assert.assertNull(cache.get("http://host/dav/c.txt"));
+        Assert.assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testPut_Replace()
+    {
+        final ValidatorCache cache = new ValidatorCache(10);
+        cache.put("http://host/dav/a.txt", "\"1\"", null);
+        cache.put("http://host/dav/a.txt", "\"2\"", null);
+
+        Assert.assertEquals("\"2\"", cache.get("http://host/dav/a.txt").getEtag());
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testPut_NoValidators()
+    {
+        final ValidatorCache cache = new ValidatorCache(10);
+        cache.put("http://host/dav/a.txt", "\"1\"", null);
+
+        // the content changed to something without validators, so the old ones must not be sent anymore
+        cache.put("http://host/dav/a.txt", null, null);
+
+        Assert.assertNull(cache.get("http://host/dav/a.txt"));
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testEviction()
+    {
+        final ValidatorCache cache = new ValidatorCache(2);
+        cache.put("http://host/dav/a.txt", "\"a\"", null);
+        cache.put("http://host/dav/b.txt", "\"b\"", null);
+
+        // looking up an entry makes it the most recently used one
+        cache.get("http://host/dav/a.txt");
+        cache.put("http://host/dav/c.txt", "\"c\"", null);
+
+        Assert.assertEquals(2, cache.size());
+        Assert.assertNotNull(cache.get("http://host/dav/a.txt"));
+        Assert.assertNull(cache.get("http://host/dav/b.txt"));
+        Assert.assertNotNull(cache.get("http://host/dav/c.txt"));
+    }
+
+    @Test
+    public void testRemoveAndClear()
+    {
+        final ValidatorCache cache = new ValidatorCache(10);
+        cache.put("http://host/dav/a.txt", "\"a\"", null);
+        cache.put("http://host/dav/b.txt", "\"b\"", null);
+
+        cache.remove("http://host/dav/a.txt");
+        Assert.assertNull(cache.get("http://host/dav/a.txt"));
+        Assert.assertEquals(1, cache.size());
+
+        cache.clear();
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testStatistics()
+    {
+        final ValidatorCache cache = new ValidatorCache(10);
+        cache.recordHit();
+        cache.recordMiss();
+        cache.recordMiss();
+
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(2, cache.getMisses());
+    }
+}